@@ -3,9 +3,15 @@ package commands;
 import filesystem.*;
 import filesystem.User;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Collectors;
 
 /**
  *
@@ -13,14 +19,31 @@ import java.util.Scanner;
  */
 public class FileSystemManager {
 
+    private static final int CAT_CHUNK_SIZE = 64 * 1024; // bytes por escritura en cat
+
     private FileSystem fs;
     private String fsFilePath;
+    private MountOptions mountOptions;
     private User currentUser;
     private String currentDirectory;
     private boolean running;
+    private boolean syncRequested; // el último comando pidió sync en lugar de commit
 
     public FileSystemManager(String fsFilePath) {
         this.fsFilePath = fsFilePath;
+        this.mountOptions = new MountOptions();
+        this.currentDirectory = "/";
+        this.running = true;
+    }
+
+    /**
+     * Sesión sobre un sistema de archivos ya montado y compartido con otras
+     * sesiones (modo servidor). Cada sesión tiene su usuario y su directorio
+     * actual.
+     */
+    public FileSystemManager(FileSystem fs) {
+        this.fs = fs;
+        this.mountOptions = new MountOptions();
         this.currentDirectory = "/";
         this.running = true;
     }
@@ -36,8 +59,21 @@ public class FileSystemManager {
 
         System.out.println("\n=== FORMATEO DEL SISTEMA DE ARCHIVOS ===\n");
 
+        System.out.print("Estrategia de asignación (1=Contigua, 2=Enlazada, 3=Indexada) [3]: ");
         int strategy = FSConstants.ALLOC_INDEXED;
-        System.out.println("El sistema de archivos usa la estrategia de asignación indexada.");
+        try {
+            String input = scanner.nextLine().trim();
+            if (!input.isEmpty()) {
+                strategy = Integer.parseInt(input);
+            }
+            if (strategy < FSConstants.ALLOC_CONTIGUOUS || strategy > FSConstants.ALLOC_INDEXED) {
+                System.out.println("Estrategia inválida, usando asignación indexada");
+                strategy = FSConstants.ALLOC_INDEXED;
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Entrada inválida, usando asignación indexada");
+            strategy = FSConstants.ALLOC_INDEXED;
+        }
 
         System.out.print("Ingrese el tamaño del bloque en KB (ej. 4, 8, 16): ");
         int blockSizeKB = 4;
@@ -67,6 +103,12 @@ public class FileSystemManager {
             throw new IOException("La contraseña no puede estar vacía");
         }
 
+        // El volumen anterior se desmonta antes de cambiar el tamaño de la
+        // imagen: con --mmap su mapeo no puede quedar abierto sobre el archivo
+        if (fs != null && fs.isMounted()) {
+            fs.unmount();
+        }
+
         fs = new FileSystem(fsFilePath);
         fs.format(sizeMB, blockSizeKB, strategy, password);
 
@@ -83,13 +125,28 @@ public class FileSystemManager {
      */
     public void mount() throws IOException {
         fs = new FileSystem(fsFilePath);
-        fs.mount();
+        fs.mount(mountOptions);
 
         // Por defecto, no hay usuario autenticado
         currentUser = null;
         currentDirectory = "/";
     }
 
+    /**
+     * Cierra la transacción del journal con los cambios del último comando, o
+     * hace sync si el comando lo pidió. Se llama después de endOperation().
+     */
+    public void commit() throws IOException {
+        if (fs != null && fs.isMounted()) {
+            if (syncRequested) {
+                syncRequested = false;
+                fs.sync();
+            } else {
+                fs.commit();
+            }
+        }
+    }
+
     /**
      * Desmonta el sistema de archivos
      */
@@ -136,16 +193,24 @@ public class FileSystemManager {
             throw new IOException("La contraseña no puede estar vacía");
         }
 
-        // Asignar nuevo ID de usuario
-        int newUserId = fs.getUserTable().size();
-
         // Crear directorio home
         String homeDir = "/user/" + username + "/home";
 
-        // Crear usuario
-        User newUser = new User(newUserId, username, password, fullName, homeDir, 1);
-        fs.getUserTable().put(newUserId, newUser);
-        fs.getUserByName().put(username, newUser);
+        // Asignar nuevo ID de usuario y registrarlo (otra sesión puede estar
+        // creando uno al mismo tiempo)
+        User newUser;
+        int newUserId;
+        synchronized (fs.getUserTable()) {
+            if (fs.getUserByName().containsKey(username)) {
+                throw new IOException("El usuario '" + username + "' ya existe");
+            }
+            newUserId = fs.getUserTable().size();
+
+            // Crear usuario
+            newUser = new User(newUserId, username, password, fullName, homeDir, 1);
+            fs.getUserTable().put(newUserId, newUser);
+            fs.getUserByName().put(username, newUser);
+        }
 
         // Crear directorio /user si no existe
         createUserStructure();
@@ -156,12 +221,14 @@ public class FileSystemManager {
         // Agregar al grupo "users" por defecto
         Group usersGroup = fs.getGroupByName().get("users");
         if (usersGroup != null) {
-            usersGroup.addMember(newUserId);
+            synchronized (fs.getGroupTable()) {
+                usersGroup.addMember(newUserId);
+            }
         }
 
         // Guardar cambios
-        fs.unmount();
-        fs.mount();
+        fs.markUsersAndGroupsDirty();
+        syncRequested = true;
 
         System.out.println("Usuario " + username + " creado exitosamente.");
         System.out.println("UID: " + newUser.getUserId());
@@ -197,20 +264,22 @@ public class FileSystemManager {
         Group newGroup = fs.getGroupByName().get(groupName);
         Group oldGroup = fs.getGroupTable().get(user.getGroupId());
 
-        // Remover del grupo anterior
-        if (oldGroup != null) {
-            oldGroup.removeMember(user.getUserId());
-        }
+        synchronized (fs.getGroupTable()) {
+            // Remover del grupo anterior
+            if (oldGroup != null) {
+                oldGroup.removeMember(user.getUserId());
+            }
 
-        // Cambiar grupo del usuario
-        user.setGroupId(newGroup.getGroupId());
+            // Cambiar grupo del usuario
+            user.setGroupId(newGroup.getGroupId());
 
-        // Agregar al nuevo grupo
-        newGroup.addMember(user.getUserId());
+            // Agregar al nuevo grupo
+            newGroup.addMember(user.getUserId());
+        }
 
         // Guardar cambios
-        fs.unmount();
-        fs.mount();
+        fs.markUsersAndGroupsDirty();
+        syncRequested = true;
 
         System.out.println("Usuario " + username + " cambiado al grupo " + groupName);
     }
@@ -221,19 +290,10 @@ public class FileSystemManager {
     private void createUserStructure() throws IOException {
         // Buscar si existe el directorio /user en la raíz
         Inode rootInode = fs.readInode(0);
-        List<DirectoryEntry> rootEntries = fs.readDirectoryEntries(rootInode);
 
-        boolean userExists = false;
-        for (DirectoryEntry entry : rootEntries) {
-            if (!entry.isFree() && entry.getName().equals("user")) {
-                userExists = true;
-                break;
-            }
-        }
-
-        if (!userExists) {
+        if (fs.lookupEntry(rootInode, "user") == null) {
             // Crear el directorio /user
-            int userInodeNum = fs.allocateInode();
+            int userInodeNum = fs.allocateInode(FSConstants.ROOT_INODE, true);
             int blockSize = fs.getSuperblock().getBlockSize();
 
             Inode userInode = new Inode(
@@ -247,7 +307,7 @@ public class FileSystemManager {
             userInode.setLinkCount(2);
 
             // Asignar bloque de datos
-            int dataBlock = fs.allocateDataBlock();
+            int dataBlock = fs.allocateDataBlock(fs.getDataGoal(userInode));
             userInode.setDirectBlock(0, dataBlock);
             fs.writeInode(userInode);
 
@@ -256,29 +316,10 @@ public class FileSystemManager {
             userEntries.add(new DirectoryEntry(userInodeNum, FSConstants.TYPE_DIRECTORY, "."));
             userEntries.add(new DirectoryEntry(0, FSConstants.TYPE_DIRECTORY, ".."));
 
-            int entriesPerBlock = blockSize / FSConstants.DIR_ENTRY_SIZE;
-            for (int i = 2; i < entriesPerBlock; i++) {
-                userEntries.add(new DirectoryEntry());
-            }
-
             fs.writeDirectoryEntries(userInode, userEntries);
 
             // Agregar entrada en el directorio raiz
-            boolean added = false;
-            for (int i = 0; i < rootEntries.size(); i++) {
-                if (rootEntries.get(i).isFree()) {
-                    rootEntries.set(i, new DirectoryEntry(userInodeNum,
-                            FSConstants.TYPE_DIRECTORY, "user"));
-                    added = true;
-                    break;
-                }
-            }
-
-            if (!added) {
-                throw new IOException("No hay espacio en el directorio raíz");
-            }
-
-            fs.writeDirectoryEntries(rootInode, rootEntries);
+            fs.addEntry(rootInode, new DirectoryEntry(userInodeNum, FSConstants.TYPE_DIRECTORY, "user"));
             rootInode.setLinkCount(rootInode.getLinkCount() + 1);
             fs.writeInode(rootInode);
 
@@ -292,25 +333,16 @@ public class FileSystemManager {
     private void createUserHomeDirectory(String username, int userId) throws IOException {
         // Leer el directorio /user
         Inode rootInode = fs.readInode(0);
-        List<DirectoryEntry> rootEntries = fs.readDirectoryEntries(rootInode);
-
-        int userDirInodeNum = -1;
-        for (DirectoryEntry entry : rootEntries) {
-            if (!entry.isFree() && entry.getName().equals("user")) {
-                userDirInodeNum = entry.getInodeNumber();
-                break;
-            }
-        }
-
-        if (userDirInodeNum == -1) {
+        DirectoryEntry userDirEntry = fs.lookupEntry(rootInode, "user");
+        if (userDirEntry == null) {
             throw new IOException("Directorio /user no encontrado");
         }
 
+        int userDirInodeNum = userDirEntry.getInodeNumber();
         Inode userDirInode = fs.readInode(userDirInodeNum);
-        List<DirectoryEntry> userDirEntries = fs.readDirectoryEntries(userDirInode);
 
         // Crear el directorio /user/{username}
-        int userNameDirInodeNum = fs.allocateInode();
+        int userNameDirInodeNum = fs.allocateInode(userDirInodeNum, true);
         int blockSize = fs.getSuperblock().getBlockSize();
 
         Inode userNameDirInode = new Inode(
@@ -325,7 +357,7 @@ public class FileSystemManager {
         userNameDirInode.setLinkCount(3); // ".", ".." y "home"
 
         // Asignar bloque de datos para /user/{username}
-        int userNameDataBlock = fs.allocateDataBlock();
+        int userNameDataBlock = fs.allocateDataBlock(fs.getDataGoal(userNameDirInode));
         userNameDirInode.setDirectBlock(0, userNameDataBlock);
         fs.writeInode(userNameDirInode);
 
@@ -336,17 +368,8 @@ public class FileSystemManager {
         userNameDirEntries.add(new DirectoryEntry(userDirInodeNum,
                 FSConstants.TYPE_DIRECTORY, ".."));
 
-        int entriesPerBlock = blockSize / FSConstants.DIR_ENTRY_SIZE;
-
-        // Reservar espacio para "home" que crearemos después
-        userNameDirEntries.add(new DirectoryEntry()); // Placeholder para "home"
-
-        for (int i = 3; i < entriesPerBlock; i++) {
-            userNameDirEntries.add(new DirectoryEntry());
-        }
-
         //Crear el directorio /user/{username}/home
-        int homeInodeNum = fs.allocateInode();
+        int homeInodeNum = fs.allocateInode(userNameDirInodeNum, true);
 
         Inode homeInode = new Inode(
                 homeInodeNum,
@@ -360,7 +383,7 @@ public class FileSystemManager {
         homeInode.setLinkCount(2); // "." y ".."
 
         // Asignar bloque de datos para /user/{username}/home
-        int homeDataBlock = fs.allocateDataBlock();
+        int homeDataBlock = fs.allocateDataBlock(fs.getDataGoal(homeInode));
         homeInode.setDirectBlock(0, homeDataBlock);
         fs.writeInode(homeInode);
 
@@ -371,33 +394,16 @@ public class FileSystemManager {
         homeEntries.add(new DirectoryEntry(userNameDirInodeNum,
                 FSConstants.TYPE_DIRECTORY, ".."));
 
-        for (int i = 2; i < entriesPerBlock; i++) {
-            homeEntries.add(new DirectoryEntry());
-        }
-
         fs.writeDirectoryEntries(homeInode, homeEntries);
 
         //Agregar entrada "home" en /user/{username}
-        userNameDirEntries.set(2, new DirectoryEntry(homeInodeNum,
+        userNameDirEntries.add(new DirectoryEntry(homeInodeNum,
                 FSConstants.TYPE_DIRECTORY, "home"));
         fs.writeDirectoryEntries(userNameDirInode, userNameDirEntries);
 
         //Agregar entrada del usuario en /user
-        boolean added = false;
-        for (int i = 0; i < userDirEntries.size(); i++) {
-            if (userDirEntries.get(i).isFree()) {
-                userDirEntries.set(i, new DirectoryEntry(userNameDirInodeNum,
-                        FSConstants.TYPE_DIRECTORY, username));
-                added = true;
-                break;
-            }
-        }
-
-        if (!added) {
-            throw new IOException("No hay espacio en el directorio /user");
-        }
-
-        fs.writeDirectoryEntries(userDirInode, userDirEntries);
+        fs.addEntry(userDirInode, new DirectoryEntry(userNameDirInodeNum,
+                FSConstants.TYPE_DIRECTORY, username));
         userDirInode.setLinkCount(userDirInode.getLinkCount() + 1);
         fs.writeInode(userDirInode);
     }
@@ -410,19 +416,21 @@ public class FileSystemManager {
             throw new IOException("Permiso denegado: solo root puede crear grupos");
         }
 
-        if (fs.getGroupByName().containsKey(groupName)) {
-            throw new IOException("El grupo '" + groupName + "' ya existe");
-        }
+        synchronized (fs.getGroupTable()) {
+            if (fs.getGroupByName().containsKey(groupName)) {
+                throw new IOException("El grupo '" + groupName + "' ya existe");
+            }
 
-        int newGroupId = fs.getGroupTable().size();
+            int newGroupId = fs.getGroupTable().size();
 
-        Group newGroup = new Group(newGroupId, groupName);
-        fs.getGroupTable().put(newGroupId, newGroup);
-        fs.getGroupByName().put(groupName, newGroup);
+            Group newGroup = new Group(newGroupId, groupName);
+            fs.getGroupTable().put(newGroupId, newGroup);
+            fs.getGroupByName().put(groupName, newGroup);
+        }
 
         // Guardar cambios
-        fs.unmount();
-        fs.mount();
+        fs.markUsersAndGroupsDirty();
+        syncRequested = true;
 
         System.out.println("Grupo '" + groupName + "' creado exitosamente");
     }
@@ -460,8 +468,8 @@ public class FileSystemManager {
         user.setPassword(password);
 
         // Guardar cambios
-        fs.unmount();
-        fs.mount();
+        fs.markUsersAndGroupsDirty();
+        syncRequested = true;
 
         System.out.println("Contraseña cambiada exitosamente");
     }
@@ -526,30 +534,21 @@ public class FileSystemManager {
         // Validar que estamos en un directorio valido
         Inode currentDirInode = resolveCurrentDirectory();
 
-        List<DirectoryEntry> entries = fs.readDirectoryEntries(currentDirInode);
-
         for (String dirName : dirNames) {
+            List<Lock> locked = lockDirectories(currentDirInode);
             try {
                 // Validar nombre del directorio
                 validateFileName(dirName);
 
                 // Verificar que no exista ya
-                if (directoryEntryExists(entries, dirName)) {
+                if (directoryEntryExists(currentDirInode, dirName)) {
                     System.err.println("mkdir: no se puede crear el directorio '" + dirName
                             + "': El archivo ya existe");
                     continue;
                 }
 
-                // Buscar entrada libre en el directorio actual
-                int freeEntryIndex = findFreeDirectoryEntry(entries);
-                if (freeEntryIndex == -1) {
-                    System.err.println("mkdir: no se puede crear el directorio '" + dirName
-                            + "': No hay espacio en el directorio padre");
-                    continue;
-                }
-
                 // Asignar nuevo inode
-                int newInodeNum = fs.allocateInode();
+                int newInodeNum = fs.allocateInode(currentDirInode.getInodeNumber(), true);
                 int blockSize = fs.getSuperblock().getBlockSize();
 
                 // Crear inode del nuevo directorio
@@ -564,7 +563,7 @@ public class FileSystemManager {
                 newDirInode.setLinkCount(2); // "." y ".."
 
                 // Asignar bloque de datos para el directorio
-                int dataBlock = fs.allocateDataBlock();
+                int dataBlock = fs.allocateDataBlock(fs.getDataGoal(newDirInode));
                 newDirInode.setDirectBlock(0, dataBlock);
                 fs.writeInode(newDirInode);
 
@@ -577,16 +576,10 @@ public class FileSystemManager {
                 newDirEntries.add(new DirectoryEntry(currentDirInode.getInodeNumber(),
                         FSConstants.TYPE_DIRECTORY, ".."));
 
-                int entriesPerBlock = blockSize / FSConstants.DIR_ENTRY_SIZE;
-                for (int i = 2; i < entriesPerBlock; i++) {
-                    newDirEntries.add(new DirectoryEntry());
-                }
-
                 fs.writeDirectoryEntries(newDirInode, newDirEntries);
 
-                entries.set(freeEntryIndex, new DirectoryEntry(newInodeNum,
+                fs.addEntry(currentDirInode, new DirectoryEntry(newInodeNum,
                         FSConstants.TYPE_DIRECTORY, dirName));
-                fs.writeDirectoryEntries(currentDirInode, entries);
 
                 currentDirInode.setLinkCount(currentDirInode.getLinkCount() + 1);
                 fs.writeInode(currentDirInode);
@@ -595,12 +588,10 @@ public class FileSystemManager {
 
             } catch (IOException e) {
                 System.err.println("mkdir: error al crear '" + dirName + "': " + e.getMessage());
+            } finally {
+                InodeLocks.unlockAll(locked);
             }
         }
-
-        // Guardar cambios
-        fs.unmount();
-        fs.mount();
     }
 
     /**
@@ -621,52 +612,50 @@ public class FileSystemManager {
 
         // Obtener directorio actual
         Inode currentDirInode = resolveCurrentDirectory();
-        List<DirectoryEntry> entries = fs.readDirectoryEntries(currentDirInode);
-
-        // Verificar existencia
-        if (directoryEntryExists(entries, filename)) {
-            throw new IOException("El archivo '" + filename + "' ya existe");
-        }
-
-        // Verificar permisos de escritura en el directorio padre
-        if (!hasPermission(currentDirInode, 2)) {
-            throw new IOException("Permiso denegado: No se puede escribir en el directorio actual.");
-        }
-
-        // Buscar espacio libre en el directorio
-        int freeEntryIndex = findFreeDirectoryEntry(entries);
-        if (freeEntryIndex == -1) {
-            throw new IOException("No hay espacio en el directorio actual para crear el archivo");
-        }
 
-        // Asignar nuevo inode
-        int newInodeNum = fs.allocateInode();
+        List<Lock> locked = lockDirectories(currentDirInode);
+        int newInodeNum;
+        try {
+            // Verificar existencia
+            if (directoryEntryExists(currentDirInode, filename)) {
+                throw new IOException("El archivo '" + filename + "' ya existe");
+            }
 
-        Inode newFileInode = new Inode(
-                newInodeNum,
-                FSConstants.TYPE_FILE,
-                FSConstants.DEFAULT_FILE_PERMS,
-                currentUser.getUserId(),
-                currentUser.getGroupId());
-        newFileInode.setName(filename);
-        newFileInode.setLinkCount(1);
+            // Verificar permisos de escritura en el directorio padre
+            if (!hasPermission(currentDirInode, 2)) {
+                throw new IOException("Permiso denegado: No se puede escribir en el directorio actual.");
+            }
 
-        if (sizeKB > 0) {
-            int totalBytes = sizeKB * 1024;
-            byte[] dummyData = new byte[totalBytes];
-            for (int i = 0; i < totalBytes; i++) {
-                dummyData[i] = (byte) ('A' + (i % 26)); // A, B, C...
+            // Asignar nuevo inode
+            newInodeNum = fs.allocateInode(currentDirInode.getInodeNumber(), false);
+
+            Inode newFileInode = new Inode(
+                    newInodeNum,
+                    FSConstants.TYPE_FILE,
+                    FSConstants.DEFAULT_FILE_PERMS,
+                    currentUser.getUserId(),
+                    currentUser.getGroupId());
+            newFileInode.setName(filename);
+            newFileInode.setLinkCount(1);
+
+            if (sizeKB > 0) {
+                int totalBytes = sizeKB * 1024;
+                byte[] dummyData = new byte[totalBytes];
+                for (int i = 0; i < totalBytes; i++) {
+                    dummyData[i] = (byte) ('A' + (i % 26)); // A, B, C...
+                }
+                fs.writeFile(newFileInode, dummyData);
+            } else {
+                newFileInode.setFileSize(0);
+                fs.writeInode(newFileInode);
             }
-            fs.writeFile(newFileInode, dummyData);
-        } else {
-            newFileInode.setFileSize(0);
-            fs.writeInode(newFileInode);
-        }
 
-        // Agregar entrada en el directorio
-        entries.set(freeEntryIndex, new DirectoryEntry(newInodeNum,
-                FSConstants.TYPE_FILE, filename));
-        fs.writeDirectoryEntries(currentDirInode, entries);
+            // Agregar entrada en el directorio
+            fs.addEntry(currentDirInode, new DirectoryEntry(newInodeNum,
+                    FSConstants.TYPE_FILE, filename));
+        } finally {
+            InodeLocks.unlockAll(locked);
+        }
 
         System.out.println("Archivo creado: " + filename + " (Inode: " + newInodeNum + ")");
     }
@@ -733,24 +722,19 @@ public class FileSystemManager {
                     name = path;
                 }
 
-                List<DirectoryEntry> entries = fs.readDirectoryEntries(parentInode);
-                DirectoryEntry targetEntry = null;
-
-                for (DirectoryEntry entry : entries) {
-                    if (!entry.isFree() && entry.getName().equals(name)) {
-                        targetEntry = entry;
-                        break;
-                    }
-                }
-
-                if (targetEntry == null) {
+                List<Lock> locked = lockForDelete(parentInode, name, recursive);
+                if (locked == null) {
                     System.err.println("rm: no se puede borrar '" + path + "': No existe el archivo o directorio");
                     continue;
                 }
-
-                // Procesar eliminacion
-                Inode targetInode = fs.readInode(targetEntry.getInodeNumber());
-                deleteRecursively(parentInode, targetInode, targetEntry.getName(), recursive);
+                try {
+                    // Procesar eliminacion
+                    DirectoryEntry targetEntry = fs.lookupEntry(parentInode, name);
+                    Inode targetInode = fs.readInode(targetEntry.getInodeNumber());
+                    deleteRecursively(parentInode, targetInode, targetEntry.getName(), recursive);
+                } finally {
+                    InodeLocks.unlockAll(locked);
+                }
 
             } catch (IOException e) {
                 System.err.println("rm: error al borrar '" + path + "': " + e.getMessage());
@@ -758,6 +742,69 @@ public class FileSystemManager {
         }
     }
 
+    /**
+     * Toma juntos, con lockAll(), el directorio padre y todos los inodes que
+     * borra rm (el destino y, con -R, todo lo que tiene adentro), así el
+     * borrado nunca toma el lock de un hijo con el del padre ya tomado. Si
+     * mientras se esperaban los locks la entrada o el árbol cambiaron, suelta
+     * todo y vuelve a empezar.
+     *
+     * @return los locks tomados, o null si la entrada ya no existe
+     */
+    private List<Lock> lockForDelete(Inode parentInode, String name, boolean recursive)
+            throws IOException {
+        while (true) {
+            int targetNum = fs.lookupInodeNumber(parentInode, name);
+            if (targetNum == -1) {
+                return null;
+            }
+            List<Integer> inodes = collectDeleted(targetNum, recursive);
+            int[] inodeNumbers = new int[inodes.size() + 1];
+            inodeNumbers[0] = parentInode.getInodeNumber();
+            for (int i = 0; i < inodes.size(); i++) {
+                inodeNumbers[i + 1] = inodes.get(i);
+            }
+
+            List<Lock> locked = fs.getInodeLocks().lockAll(inodeNumbers);
+            boolean unchanged = false;
+            try {
+                unchanged = fs.lookupInodeNumber(parentInode, name) == targetNum
+                        && collectDeleted(targetNum, recursive).equals(inodes);
+            } finally {
+                if (!unchanged) {
+                    InodeLocks.unlockAll(locked);
+                }
+            }
+            if (unchanged) {
+                return locked;
+            }
+        }
+    }
+
+    /**
+     * Lista los inodes que borra rm: el destino y, si es recursivo, todo lo
+     * que cuelga de él
+     */
+    private List<Integer> collectDeleted(int targetNum, boolean recursive) throws IOException {
+        List<Integer> inodes = new ArrayList<>();
+        inodes.add(targetNum);
+        if (!recursive) {
+            return inodes;
+        }
+        for (int i = 0; i < inodes.size(); i++) {
+            Inode inode = fs.readInode(inodes.get(i));
+            if (!inode.isDirectory()) {
+                continue;
+            }
+            for (DirectoryEntry child : fs.readDirectoryEntries(inode)) {
+                if (!child.isFree() && !child.getName().equals(".") && !child.getName().equals("..")) {
+                    inodes.add(child.getInodeNumber());
+                }
+            }
+        }
+        return inodes;
+    }
+
     private void deleteRecursively(Inode parentInode, Inode targetInode, String name, boolean recursive)
             throws IOException {
         // Verificar permisos (solo propietario o root)
@@ -803,22 +850,7 @@ public class FileSystemManager {
     }
 
     private void removeEntryFromDirectory(Inode parentInode, String name) throws IOException {
-        List<DirectoryEntry> entries = fs.readDirectoryEntries(parentInode);
-        boolean found = false;
-
-        for (int i = 0; i < entries.size(); i++) {
-            DirectoryEntry entry = entries.get(i);
-            if (!entry.isFree() && entry.getName().equals(name)) {
-                // Marcar como libre
-                entries.set(i, new DirectoryEntry());
-                found = true;
-                break;
-            }
-        }
-
-        if (found) {
-            fs.writeDirectoryEntries(parentInode, entries);
-        }
+        fs.removeEntry(parentInode, name);
     }
 
     /**
@@ -843,31 +875,17 @@ public class FileSystemManager {
                 continue;
 
             if (part.equals("..")) {
-                List<DirectoryEntry> entries = fs.readDirectoryEntries(currentInode);
-                boolean found = false;
-                for (DirectoryEntry entry : entries) {
-                    if (!entry.isFree() && entry.getName().equals("..")) {
-                        currentInode = fs.readInode(entry.getInodeNumber());
-                        found = true;
-                        break;
-                    }
-                }
-                if (!found)
+                int parent = fs.lookupInodeNumber(currentInode, "..");
+                if (parent == -1)
                     throw new IOException("Error resolviendo ruta: .. no encontrado");
+                currentInode = fs.readInode(parent);
                 continue;
             }
 
-            List<DirectoryEntry> entries = fs.readDirectoryEntries(currentInode);
-            boolean found = false;
-            for (DirectoryEntry entry : entries) {
-                if (!entry.isFree() && entry.getName().equals(part)) {
-                    currentInode = fs.readInode(entry.getInodeNumber());
-                    found = true;
-                    break;
-                }
-            }
-            if (!found)
+            int inodeNumber = fs.lookupInodeNumber(currentInode, part);
+            if (inodeNumber == -1)
                 return -1;
+            currentInode = fs.readInode(inodeNumber);
         }
 
         return currentInode.getInodeNumber();
@@ -909,8 +927,7 @@ public class FileSystemManager {
                 destParentInode = destInode;
                 newName = sourceName;
 
-                List<DirectoryEntry> destEntries = fs.readDirectoryEntries(destParentInode);
-                if (directoryEntryExists(destEntries, newName)) {
+                if (directoryEntryExists(destParentInode, newName)) {
                     System.err.println("mv: destino '" + newName + "' ya existe en '" + destPath + "'");
                     return;
                 }
@@ -936,46 +953,45 @@ public class FileSystemManager {
             }
         }
 
+        // Antes de quitar la entrada del origen, para no perderla si el
+        // nombre nuevo no entra en el directorio
+        validateFileName(newName);
 
-        removeEntryFromDirectory(sourceParentInode, sourceName);
-
-        // Agregar entrada al nuevo padre
-        // Buscar espacio libre
-        List<DirectoryEntry> destEntries = fs.readDirectoryEntries(destParentInode);
-        int freeIndex = findFreeDirectoryEntry(destEntries);
-
-        DirectoryEntry newEntry = new DirectoryEntry(sourceInodeNum,
-                fs.readInode(sourceInodeNum).getFileType(), newName);
-
-        if (freeIndex != -1) {
-            destEntries.set(freeIndex, newEntry);
-        } else {
-            if (destEntries.size() < (fs.getSuperblock().getBlockSize() / FSConstants.DIR_ENTRY_SIZE)) {
-                destEntries.add(newEntry);
-            } else {
-                throw new IOException("Directorio destino lleno (no implementada expansión en mv)");
+        // Con los dos directorios tomados, verificar de nuevo que el origen
+        // siga ahí y el destino esté libre. El origen se toma junto con
+        // ellos porque, si es un directorio, se le cambia ".."
+        List<Lock> locked = fs.getInodeLocks().lockAll(sourceParentInode.getInodeNumber(),
+                destParentInode.getInodeNumber(), sourceInodeNum);
+        try {
+            if (fs.lookupInodeNumber(sourceParentInode, sourceName) != sourceInodeNum) {
+                System.err.println("mv: no se puede mover '" + sourcePath + "': No existe el archivo o directorio");
+                return;
+            }
+            if (directoryEntryExists(destParentInode, newName)) {
+                System.err.println("mv: destino '" + newName + "' ya existe");
+                return;
             }
-        }
 
-        fs.writeDirectoryEntries(destParentInode, destEntries);
+            removeEntryFromDirectory(sourceParentInode, sourceName);
 
-        Inode sourceInode = fs.readInode(sourceInodeNum);
-        if (sourceInode.isDirectory()) {
-            List<DirectoryEntry> sourceEntries = fs.readDirectoryEntries(sourceInode);
-            for (int i = 0; i < sourceEntries.size(); i++) {
-                if (!sourceEntries.get(i).isFree() && sourceEntries.get(i).getName().equals("..")) {
-                    sourceEntries.set(i,
-                            new DirectoryEntry(destParentInode.getInodeNumber(), FSConstants.TYPE_DIRECTORY, ".."));
-                    fs.writeDirectoryEntries(sourceInode, sourceEntries);
+            // Agregar entrada al nuevo padre
+            fs.addEntry(destParentInode, new DirectoryEntry(sourceInodeNum,
+                    fs.readInode(sourceInodeNum).getFileType(), newName));
 
+            Inode sourceInode = fs.readInode(sourceInodeNum);
+            if (sourceInode.isDirectory()) {
+                boolean updated = fs.updateEntry(sourceInode, "..",
+                        new DirectoryEntry(destParentInode.getInodeNumber(), FSConstants.TYPE_DIRECTORY, ".."));
+                if (updated) {
                     sourceParentInode.setLinkCount(sourceParentInode.getLinkCount() - 1);
                     destParentInode.setLinkCount(destParentInode.getLinkCount() + 1);
 
                     fs.writeInode(sourceParentInode);
                     fs.writeInode(destParentInode);
-                    break;
                 }
             }
+        } finally {
+            InodeLocks.unlockAll(locked);
         }
 
         System.out.println("Movido '" + sourcePath + "' a '" + destPath + "/" + newName + "'");
@@ -1067,6 +1083,11 @@ public class FileSystemManager {
         System.out.println("Creación: " + new java.util.Date(inode.getCreationTime()));
         System.out.println("Última modificación: " + new java.util.Date(inode.getModificationTime()));
 
+        // Mostrar extents (asignación contigua)
+        if (inode.hasExtents()) {
+            System.out.println("Extents: " + inode.getExtents());
+        }
+
         // Mostrar bloques directos
         System.out.print("Bloques Directos: [");
         int[] directBlocks = inode.getDirectBlocks();
@@ -1108,6 +1129,14 @@ public class FileSystemManager {
                 System.out.println("  (Error leyendo punteros: " + e.getMessage() + ")");
             }
         }
+
+        // Mostrar bloques de indirección doble y triple
+        if (inode.getDoubleIndirect() != -1) {
+            System.out.println("Bloque Indirecto Doble: " + inode.getDoubleIndirect());
+        }
+        if (inode.getTripleIndirect() != -1) {
+            System.out.println("Bloque Indirecto Triple: " + inode.getTripleIndirect());
+        }
     }
 
     /**
@@ -1116,11 +1145,27 @@ public class FileSystemManager {
     public void whereis(String filename) throws IOException {
         requireAuth();
 
-        List<String> results = new ArrayList<>();
-        Inode rootInode = fs.readInode(FSConstants.ROOT_INODE);
-
-        // Iniciar búsqueda desde la raíz "/"
-        searchRecursively(rootInode, "", filename, results);
+        // Con el índice de nombres se leen solo los directorios de las
+        // coincidencias
+        List<TreeEntry> indexed = fs.findByName(filename);
+        List<String> results;
+        if (indexed != null) {
+            results = indexed.stream()
+                    .map(TreeEntry::getPath)
+                    .collect(Collectors.toList());
+        } else {
+            // Sin índice: recorre todo el árbol desde "/" en paralelo; el orden
+            // del resultado es el del recorrido
+            Inode rootInode = fs.readInode(FSConstants.ROOT_INODE);
+            try {
+                results = fs.walk(rootInode, "/").parallel()
+                        .filter(entry -> entry.getDepth() > 0 && entry.getName().equals(filename))
+                        .map(TreeEntry::getPath)
+                        .collect(Collectors.toList());
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
 
         if (results.isEmpty()) {
             System.out.println("No se encontró el archivo: " + filename);
@@ -1131,31 +1176,6 @@ public class FileSystemManager {
         }
     }
 
-    private void searchRecursively(Inode currentDir, String currentPath, String targetName, List<String> results)
-            throws IOException {
-        List<DirectoryEntry> entries = fs.readDirectoryEntries(currentDir);
-
-        for (DirectoryEntry entry : entries) {
-            if (entry.isFree())
-                continue;
-
-            String entryName = entry.getName();
-            if (entryName.equals(".") || entryName.equals(".."))
-                continue;
-
-            String fullPath = currentPath + "/" + entryName;
-
-            if (entryName.equals(targetName)) {
-                results.add(fullPath);
-            }
-
-            if (entry.getEntryType() == FSConstants.TYPE_DIRECTORY) {
-                
-                Inode childInode = fs.readInode(entry.getInodeNumber());
-                searchRecursively(childInode, fullPath, targetName, results);
-            }
-        }
-    }
 
     /**
      * Crea un enlace duro (hard link) a un archivo
@@ -1230,35 +1250,27 @@ public class FileSystemManager {
             return;
         }
 
-        // Leer entradas del directorio destino
-        List<DirectoryEntry> entries = fs.readDirectoryEntries(targetDirInode);
+        List<Lock> locked = lockDirectories(targetDirInode);
+        try {
+            // Verificar que no exista ya un archivo con ese nombre
+            if (directoryEntryExists(targetDirInode, linkName)) {
+                System.err.println("Error: Ya existe un archivo llamado '" + linkName + "' en " + targetDirPath);
+                return;
+            }
 
-        // Verificar que no exista ya un archivo con ese nombre
-        if (directoryEntryExists(entries, linkName)) {
-            System.err.println("Error: Ya existe un archivo llamado '" + linkName + "' en " + targetDirPath);
-            return;
-        }
+            // Crear la nueva entrada apuntando al mismo inodo
+            fs.addEntry(targetDirInode, new DirectoryEntry(
+                    sourceInode.getInodeNumber(),
+                    FSConstants.TYPE_FILE,
+                    linkName));
 
-        // Buscar espacio libre en el directorio
-        int freeEntryIndex = findFreeDirectoryEntry(entries);
-        if (freeEntryIndex == -1) {
-            System.err.println("Error: No hay espacio en el directorio destino.");
-            return;
+            // Incrementar el link count del inodo
+            sourceInode.setLinkCount(sourceInode.getLinkCount() + 1);
+            fs.writeInode(sourceInode);
+        } finally {
+            InodeLocks.unlockAll(locked);
         }
 
-        // Crear la nueva entrada apuntando al mismo inodo
-        entries.set(freeEntryIndex, new DirectoryEntry(
-                sourceInode.getInodeNumber(),
-                FSConstants.TYPE_FILE,
-                linkName));
-
-        // Escribir las entradas actualizadas
-        fs.writeDirectoryEntries(targetDirInode, entries);
-
-        // Incrementar el link count del inodo
-        sourceInode.setLinkCount(sourceInode.getLinkCount() + 1);
-        fs.writeInode(sourceInode);
-
         System.out.println("Enlace creado: " + targetPath + " -> " + sourcePath);
     }
 
@@ -1279,20 +1291,11 @@ public class FileSystemManager {
                 continue;
             }
 
-            List<DirectoryEntry> entries = fs.readDirectoryEntries(currentInode);
-            boolean found = false;
-
-            for (DirectoryEntry entry : entries) {
-                if (!entry.isFree() && entry.getName().equals(part)) {
-                    currentInode = fs.readInode(entry.getInodeNumber());
-                    found = true;
-                    break;
-                }
-            }
-
-            if (!found) {
+            int inodeNumber = fs.lookupInodeNumber(currentInode, part);
+            if (inodeNumber == -1) {
                 throw new IOException("Directorio no encontrado: " + currentDirectory);
             }
+            currentInode = fs.readInode(inodeNumber);
         }
 
         return currentInode;
@@ -1323,13 +1326,49 @@ public class FileSystemManager {
             return;
         }
 
-        System.out.println("Contenido de " + targetPath + ":");
-        List<DirectoryEntry> entries = fs.readDirectoryEntries(targetInode);
+        if (!recursive) {
+            System.out.print(formatListing(targetPath, targetInode));
+            return;
+        }
+
+        // Los listados de los subdirectorios se arman en paralelo y se
+        // imprimen en el orden del recorrido
+        List<String> listings;
+        try {
+            listings = fs.walk(targetInode, targetPath).parallel()
+                    .filter(TreeEntry::isDirectory)
+                    .map(dir -> {
+                        try {
+                            return formatListing(dir.getPath(), dir.getInode());
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        for (int i = 0; i < listings.size(); i++) {
+            if (i > 0) {
+                System.out.println();
+            }
+            System.out.print(listings.get(i));
+        }
+    }
+
+    /**
+     * Arma el listado de un directorio
+     */
+    private String formatListing(String path, Inode dirInode) throws IOException {
+        StringBuilder out = new StringBuilder();
+        out.append("Contenido de ").append(path).append(":").append(System.lineSeparator());
+        List<DirectoryEntry> entries = fs.readDirectoryEntries(dirInode);
 
-        System.out.printf("%-6s %-6s %-10s %-10s %-10s %-8s %s%n",
-                "INODE", "TIPO", "PERMISOS", "DUEÑO", "GRUPO", "TAMAÑO", "NOMBRE");
-        System.out.printf("%-6s %-6s %-10s %-10s %-10s %-8s %s%n",
-                "-----", "----", "--------", "-----", "-----", "------", "------");
+        out.append(String.format("%-6s %-6s %-10s %-10s %-10s %-8s %s%n",
+                "INODE", "TIPO", "PERMISOS", "DUEÑO", "GRUPO", "TAMAÑO", "NOMBRE"));
+        out.append(String.format("%-6s %-6s %-10s %-10s %-10s %-8s %s%n",
+                "-----", "----", "--------", "-----", "-----", "------", "------"));
 
         for (DirectoryEntry entry : entries) {
             if (entry.isFree())
@@ -1346,37 +1385,16 @@ public class FileSystemManager {
             Group group = fs.getGroupTable().get(entryInode.getGroupGid());
             String groupName = (group != null) ? group.getGroupName() : String.valueOf(entryInode.getGroupGid());
 
-            System.out.printf("%-6d %-6s %-10s %-10s %-10s %-8d %s%n",
+            out.append(String.format("%-6d %-6s %-10s %-10s %-10s %-8d %s%n",
                     entry.getInodeNumber(),
                     typeStr,
                     permissions,
                     ownerName,
                     groupName,
                     entryInode.getFileSize(),
-                    entry.getName());
-        }
-
-        if (recursive) {
-            for (DirectoryEntry entry : entries) {
-                if (entry.isFree())
-                    continue;
-
-                if (entry.getEntryType() == FSConstants.TYPE_DIRECTORY) {
-                    String name = entry.getName();
-                    if (!name.equals(".") && !name.equals("..")) {
-                        String newPath;
-                        if (targetPath.equals("/")) {
-                            newPath = "/" + name;
-                        } else {
-                            newPath = targetPath + "/" + name;
-                        }
-
-                        System.out.println();
-                        ls(newPath, true);
-                    }
-                }
-            }
+                    entry.getName()));
         }
+        return out.toString();
     }
 
     private String formatPermissions(int permissions) {
@@ -1425,26 +1443,16 @@ public class FileSystemManager {
             return;
         }
 
-        changeOwnerRecursively(targetInode, newUid, recursive);
+        changeOwnerRecursively(targetInode, targetPath, newUid, recursive);
         System.out.println("Propietario cambiado a " + ownerName);
     }
 
-    private void changeOwnerRecursively(Inode inode, int newUid, boolean recursive) throws IOException {
-        inode.setOwnerUid(newUid);
-        fs.writeInode(inode);
-
-        if (recursive && inode.isDirectory()) {
-            List<DirectoryEntry> entries = fs.readDirectoryEntries(inode);
-            for (DirectoryEntry entry : entries) {
-                if (entry.isFree())
-                    continue;
-                String name = entry.getName();
-                if (name.equals(".") || name.equals(".."))
-                    continue;
-
-                Inode child = fs.readInode(entry.getInodeNumber());
-                changeOwnerRecursively(child, newUid, true);
-            }
+    private void changeOwnerRecursively(Inode inode, String path, int newUid, boolean recursive)
+            throws IOException {
+        List<Inode> targets = recursive ? readTree(inode, path) : List.of(inode);
+        for (Inode target : targets) {
+            target.setOwnerUid(newUid);
+            fs.writeInode(target);
         }
     }
 
@@ -1476,26 +1484,30 @@ public class FileSystemManager {
             return;
         }
 
-        changeGroupRecursively(targetInode, newGid, recursive);
+        changeGroupRecursively(targetInode, targetPath, newGid, recursive);
         System.out.println("Grupo cambiado a " + groupName);
     }
 
-    private void changeGroupRecursively(Inode inode, int newGid, boolean recursive) throws IOException {
-        inode.setGroupGid(newGid);
-        fs.writeInode(inode);
-
-        if (recursive && inode.isDirectory()) {
-            List<DirectoryEntry> entries = fs.readDirectoryEntries(inode);
-            for (DirectoryEntry entry : entries) {
-                if (entry.isFree())
-                    continue;
-                String name = entry.getName();
-                if (name.equals(".") || name.equals(".."))
-                    continue;
+    private void changeGroupRecursively(Inode inode, String path, int newGid, boolean recursive)
+            throws IOException {
+        List<Inode> targets = recursive ? readTree(inode, path) : List.of(inode);
+        for (Inode target : targets) {
+            target.setGroupGid(newGid);
+            fs.writeInode(target);
+        }
+    }
 
-                Inode child = fs.readInode(entry.getInodeNumber());
-                changeGroupRecursively(child, newGid, true);
-            }
+    /**
+     * Inodes del subárbol de inode (incluido), leídos en paralelo. Las
+     * escrituras se hacen después, desde un solo hilo.
+     */
+    private List<Inode> readTree(Inode inode, String path) throws IOException {
+        try {
+            return fs.walk(inode, path).parallel()
+                    .map(TreeEntry::getInode)
+                    .collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
     }
 
@@ -1557,8 +1569,32 @@ public class FileSystemManager {
             return;
         }
 
-        byte[] content = fs.readFile(inode);
-        System.out.println(new String(content));
+        // Se envía por partes para no cargar el archivo completo en memoria
+        try (InputStream in = fs.openInputStream(inode)) {
+            byte[] chunk = new byte[CAT_CHUNK_SIZE];
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                System.out.write(chunk, 0, read);
+            }
+        }
+        System.out.println();
+    }
+
+    /**
+     * Guarda el texto editado reescribiendo solo desde el primer byte que
+     * cambió; si quedó más corto se recorta el final
+     */
+    private void saveNote(Inode inode, byte[] oldBytes, byte[] newBytes) throws IOException {
+        int common = 0;
+        int limit = Math.min(oldBytes.length, newBytes.length);
+        while (common < limit && oldBytes[common] == newBytes[common]) {
+            common++;
+        }
+
+        fs.write(inode, common, ByteBuffer.wrap(newBytes, common, newBytes.length - common));
+        if (newBytes.length < oldBytes.length) {
+            fs.truncate(inode, newBytes.length);
+        }
     }
 
     /**
@@ -1627,7 +1663,7 @@ public class FileSystemManager {
                 for (String line : lines) {
                     sb.append(line).append("\n");
                 }
-                fs.writeFile(inode, sb.toString().getBytes());
+                saveNote(inode, currentBytes, sb.toString().getBytes());
                 System.out.println("Cambios guardados.");
                 break;
             } else if (input.equals(":q")) {
@@ -1794,20 +1830,11 @@ public class FileSystemManager {
             if (part.isEmpty())
                 continue;
 
-            List<DirectoryEntry> entries = fs.readDirectoryEntries(currentInode);
-            boolean found = false;
-
-            for (DirectoryEntry entry : entries) {
-                if (!entry.isFree() && entry.getName().equals(part)) {
-                    currentInode = fs.readInode(entry.getInodeNumber());
-                    found = true;
-                    break;
-                }
-            }
-
-            if (!found) {
+            int inodeNumber = fs.lookupInodeNumber(currentInode, part);
+            if (inodeNumber == -1) {
                 throw new IOException("No existe el archivo o directorio: " + absolutePath);
             }
+            currentInode = fs.readInode(inodeNumber);
         }
         return currentInode;
     }
@@ -1820,8 +1847,11 @@ public class FileSystemManager {
             throw new IOException("El nombre no puede estar vacío");
         }
 
-        if (name.length() > 244) {
-            throw new IOException("El nombre es demasiado largo (máximo 244 caracteres)");
+        // El límite es de bytes en UTF-8, como lo guarda la entrada de
+        // directorio; se verifica antes de asignar el inode y los datos
+        if (name.getBytes(StandardCharsets.UTF_8).length > FSConstants.MAX_NAME_LENGTH) {
+            throw new IOException("El nombre es demasiado largo (máximo " + FSConstants.MAX_NAME_LENGTH
+                    + " bytes en UTF-8)");
         }
 
         if (name.contains("/") || name.contains("\0")) {
@@ -1837,25 +1867,21 @@ public class FileSystemManager {
     /**
      * Verifica si existe una entrada con el nombre dado
      */
-    private boolean directoryEntryExists(List<DirectoryEntry> entries, String name) {
-        for (DirectoryEntry entry : entries) {
-            if (!entry.isFree() && entry.getName().equals(name)) {
-                return true;
-            }
-        }
-        return false;
+    private boolean directoryEntryExists(Inode dirInode, String name) throws IOException {
+        return fs.lookupInodeNumber(dirInode, name) != -1;
     }
 
     /**
-     * Encuentra el índice de la primera entrada libre en un directorio
+     * Toma los locks de escritura de los directorios que cambia un comando,
+     * para que verificar un nombre y agregarlo o quitarlo no se mezcle con
+     * otra sesión
      */
-    private int findFreeDirectoryEntry(List<DirectoryEntry> entries) {
-        for (int i = 0; i < entries.size(); i++) {
-            if (entries.get(i).isFree()) {
-                return i;
-            }
+    private List<Lock> lockDirectories(Inode... dirs) {
+        int[] inodeNumbers = new int[dirs.length];
+        for (int i = 0; i < dirs.length; i++) {
+            inodeNumbers[i] = dirs[i].getInodeNumber();
         }
-        return -1;
+        return fs.getInodeLocks().lockAll(inodeNumbers);
     }
 
     /**
@@ -1907,8 +1933,70 @@ public class FileSystemManager {
         }
         System.out.println("\nEstrategia de asignación: " + strategy);
 
+        List<BlockGroup> groups = fs.getBlockGroups();
+        if (!groups.isEmpty()) {
+            System.out.println("\nGrupos de bloques: " + groups.size() + " (" + sb.getBlocksPerGroup()
+                    + " bloques y " + sb.getInodesPerGroup() + " inodes por grupo)");
+            for (int g = 0; g < groups.size(); g++) {
+                System.out.println("  Grupo " + g + ": " + groups.get(g));
+            }
+        }
+
         System.out.println("\nUsuarios registrados: " + fs.getUserTable().size());
         System.out.println("Grupos registrados: " + fs.getGroupTable().size());
+
+        BlockCache cache = fs.getBlockCache();
+        if (cache != null) {
+            System.out.println("\nCaché de bloques: " + cache.size() + "/" + cache.getCapacity()
+                    + " bloques (" + cache.dirtyCount() + " sucios)");
+            System.out.println("  Aciertos: " + cache.getHits() + ", fallos: " + cache.getMisses());
+        }
+
+        InodeCache inodeCache = fs.getInodeCache();
+        if (inodeCache != null) {
+            System.out.println("Caché de inodes: " + inodeCache.size() + "/" + inodeCache.getCapacity()
+                    + " inodes (" + inodeCache.dirtyCount() + " sucios)");
+        }
+
+        DentryCache dentryCache = fs.getDentryCache();
+        if (dentryCache != null) {
+            System.out.println("Caché de nombres: " + dentryCache.size() + "/" + dentryCache.getCapacity()
+                    + " entradas");
+            System.out.println("  Aciertos: " + dentryCache.getHits() + " (negativos: "
+                    + dentryCache.getNegativeHits() + "), fallos: " + dentryCache.getMisses());
+        }
+
+        Journal journal = fs.getJournal();
+        if (journal != null) {
+            System.out.println("Journal: " + journal.getUsedBlocks() + "/" + journal.getLength()
+                    + " bloques usados (" + journal.getPendingBlocks() + " bloques sin checkpoint)");
+            System.out.println("  Transacciones: " + journal.getCommits() + ", force: " + journal.getForces()
+                    + ", checkpoints: " + journal.getCheckpoints());
+        }
+    }
+
+    /**
+     * Escribe al disco los cambios pendientes
+     */
+    public void sync() throws IOException {
+        requireAuth();
+
+        // El sync se hace al terminar el comando, fuera de la operación
+        syncRequested = true;
+        System.out.println("Escribiendo los cambios al disco...");
+    }
+
+    /**
+     * Reconstruye el índice de nombres que usa whereis (solo root)
+     */
+    public void reindex() throws IOException {
+        requireAuth();
+        if (!isRoot()) {
+            throw new IOException("Permiso denegado: solo root puede reconstruir el índice");
+        }
+
+        int names = fs.rebuildNameIndex();
+        System.out.println("Índice de nombres reconstruido: " + names + " nombres");
     }
 
     /**
@@ -1960,6 +2048,14 @@ public class FileSystemManager {
         return currentDirectory;
     }
 
+    public MountOptions getMountOptions() {
+        return mountOptions;
+    }
+
+    public void setMountOptions(MountOptions mountOptions) {
+        this.mountOptions = mountOptions;
+    }
+
     public boolean isRunning() {
         return running;
     }
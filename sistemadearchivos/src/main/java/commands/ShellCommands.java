@@ -444,6 +444,30 @@ public class ShellCommands implements Runnable {
         }
     }
 
+    /**
+     * Escribe al disco todos los cambios pendientes sin desmontar.
+     */
+    @Command(name = "sync", description = "Escribe al disco los cambios pendientes")
+    public void sync() {
+        try {
+            fsManager.sync();
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reconstruye el índice de nombres que usa whereis.
+     */
+    @Command(name = "reindex", description = "Reconstruye el índice de nombres de whereis")
+    public void reindex() {
+        try {
+            fsManager.reindex();
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+        }
+    }
+
     /**
      * Abre un editor de texto simple para el archivo especificado.
      *
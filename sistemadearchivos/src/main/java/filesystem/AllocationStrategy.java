@@ -0,0 +1,77 @@
+package filesystem;
+
+import java.io.IOException;
+
+/**
+ * Estrategia de asignación de bloques de datos de un volumen. Traduce
+ * bloques lógicos de un inode a bloques físicos y decide cómo se reservan y
+ * liberan. Se elige al formatear y queda guardada en el superblock.
+ *
+ * @author dylan y Gadyr
+ */
+public interface AllocationStrategy {
+
+    /**
+     * Constante FSConstants.ALLOC_* de la estrategia
+     */
+    int getType();
+
+    /**
+     * Bloque físico del bloque lógico indicado, o -1 si no está asignado
+     */
+    int getBlockNumber(Inode inode, int logicalBlock) throws IOException;
+
+    /**
+     * Bloques físicos de los primeros blockCount bloques lógicos, resueltos en
+     * una sola pasada (-1 donde no hay bloque asignado)
+     */
+    int[] mapBlocks(Inode inode, int blockCount) throws IOException;
+
+    /**
+     * Bloques físicos de los bloques lógicos [firstLogicalBlock,
+     * firstLogicalBlock + count). Sirve para escrituras que tocan solo una
+     * parte del archivo sin resolver el mapa completo.
+     */
+    default int[] mapRange(Inode inode, int firstLogicalBlock, int count) throws IOException {
+        int[] blocks = new int[count];
+        for (int i = 0; i < count; i++) {
+            blocks[i] = getBlockNumber(inode, firstLogicalBlock + i);
+        }
+        return blocks;
+    }
+
+    /**
+     * Asigna count bloques nuevos a continuación de los firstLogicalBlock
+     * bloques que el inode ya tiene
+     */
+    void allocateBlocks(Inode inode, int firstLogicalBlock, int count) throws IOException;
+
+    /**
+     * Libera todos los bloques de datos del inode (incluidos los de punteros)
+     */
+    void releaseBlocks(Inode inode) throws IOException;
+
+    /**
+     * Libera los bloques lógicos desde keepBlocks en adelante, y los bloques
+     * de punteros que queden vacíos
+     */
+    void truncateBlocks(Inode inode, int keepBlocks) throws IOException;
+
+    /**
+     * Prepara las estructuras propias de la estrategia al formatear
+     */
+    default void initialize() throws IOException {
+    }
+
+    /**
+     * Carga las estructuras propias de la estrategia al montar
+     */
+    default void load() throws IOException {
+    }
+
+    /**
+     * Escribe las estructuras propias de la estrategia que cambiaron
+     */
+    default void flush() throws IOException {
+    }
+}
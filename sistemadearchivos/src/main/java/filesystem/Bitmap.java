@@ -1,14 +1,39 @@
 package filesystem;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.BitSet;
 
 public class Bitmap {
     private BitSet bits;
     private int size;
+    private int freeCount; // se mantiene en allocate/free
+    private int nextFitCursor; // donde empieza la próxima búsqueda
+    
+    // Seguimiento de bloques del bitmap modificados (0 = desactivado)
+    private int bitsPerBlock;
+    private BitSet dirtyBlocks;
+    
+    // Carga perezosa: bloques que todavía no se leyeron (null si ya están
+    // todos en memoria)
+    private BlockLoader loader;
+    private BitSet unloadedBlocks;
+    
+    /**
+     * Lee el bloque blockIndex del bitmap desde el disco
+     */
+    @FunctionalInterface
+    public interface BlockLoader {
+        byte[] load(int blockIndex) throws IOException;
+    }
     
     public Bitmap(int size) {
         this.size = size;
         this.bits = new BitSet(size);
+        this.freeCount = size;
+        this.nextFitCursor = 0;
+        this.bitsPerBlock = 0;
+        this.dirtyBlocks = new BitSet();
     }
     
     /**
@@ -16,7 +41,12 @@ public class Bitmap {
      */
     public void allocate(int index) {
         if (index >= 0 && index < size) {
+            load(index, index + 1);
+        }
+        if (index >= 0 && index < size && !bits.get(index)) {
             bits.set(index);
+            freeCount--;
+            markDirty(index);
         }
     }
     
@@ -25,8 +55,54 @@ public class Bitmap {
      */
     public void free(int index) {
         if (index >= 0 && index < size) {
+            load(index, index + 1);
+        }
+        if (index >= 0 && index < size && bits.get(index)) {
             bits.clear(index);
+            freeCount++;
+            markDirty(index);
+        }
+    }
+    
+    /**
+     * Activa el seguimiento de los bloques en disco que cambian, para poder
+     * escribir solo esos bloques en lugar del bitmap completo
+     */
+    public void trackDirtyBlocks(int blockSize) {
+        this.bitsPerBlock = blockSize * 8;
+        this.dirtyBlocks.clear();
+    }
+    
+    private void markDirty(int index) {
+        if (bitsPerBlock > 0) {
+            dirtyBlocks.set(index / bitsPerBlock);
+        }
+    }
+    
+    /**
+     * Índices (relativos al inicio del bitmap) de los bloques modificados
+     */
+    public int[] getDirtyBlocks() {
+        return dirtyBlocks.stream().toArray();
+    }
+    
+    public void clearDirtyBlocks() {
+        dirtyBlocks.clear();
+    }
+    
+    /**
+     * Serializa solo el bloque blockIndex del bitmap, con tamaño blockSize
+     */
+    public byte[] blockToBytes(int blockIndex, int blockSize) {
+        int fromBit = blockIndex * blockSize * 8;
+        int toBit = Math.min(size, fromBit + blockSize * 8);
+        byte[] block = new byte[blockSize];
+        if (fromBit < toBit) {
+            load(fromBit, toBit);
+            byte[] bytes = bits.get(fromBit, toBit).toByteArray();
+            System.arraycopy(bytes, 0, block, 0, bytes.length);
         }
+        return block;
     }
     
     /**
@@ -34,40 +110,95 @@ public class Bitmap {
      */
     public boolean isAllocated(int index) {
         if (index >= 0 && index < size) {
+            load(index, index + 1);
             return bits.get(index);
         }
         return false;
     }
     
     /**
-     * Encuentra el primer bit libre
+     * Encuentra el primer bit libre. BitSet.nextClearBit recorre el bitmap de
+     * a 64 bits por palabra en lugar de bit por bit.
      */
     public int findFirstFree() {
-        for (int i = 0; i < size; i++) {
-            if (!bits.get(i)) {
-                return i;
+        return findFreeFrom(0);
+    }
+    
+    /**
+     * Encuentra el primer bit libre a partir de start (inclusive), o -1
+     */
+    public int findFreeFrom(int start) {
+        if (start >= size || freeCount == 0) {
+            return -1;
+        }
+        int from = Math.max(0, start);
+        while (from < size) {
+            int end = chunkEnd(from);
+            load(from, end);
+            int index = bits.nextClearBit(from);
+            if (index < end) {
+                return index;
             }
+            from = end;
         }
-        return -1; // No hay espacio libre
+        return -1;
     }
     
     /**
-     * Cuenta cuántos bits están libres
+     * Encuentra el primer bit ocupado a partir de start (inclusive), o size
+     * si no hay ninguno. Junto con findFreeFrom permite recorrer los rangos
+     * libres del bitmap.
      */
-    public int countFree() {
-        int count = 0;
-        for (int i = 0; i < size; i++) {
-            if (!bits.get(i)) {
-                count++;
+    public int findAllocatedFrom(int start) {
+        int from = Math.max(0, start);
+        while (from < size) {
+            int end = chunkEnd(from);
+            load(from, end);
+            int index = bits.nextSetBit(from);
+            if (index != -1 && index < end) {
+                return index;
             }
+            from = end;
+        }
+        return size;
+    }
+
+    /**
+     * Búsqueda next-fit: continúa desde donde terminó la última asignación y
+     * da la vuelta al llegar al final, así las asignaciones consecutivas no
+     * vuelven a recorrer el prefijo ya lleno.
+     */
+    public int findNextFree() {
+        int index = findFreeFrom(nextFitCursor);
+        if (index == -1) {
+            index = findFreeFrom(0);
+        }
+        if (index != -1) {
+            nextFitCursor = index + 1 < size ? index + 1 : 0;
         }
-        return count;
+        return index;
+    }
+    
+    /**
+     * Cantidad de bits ocupados en [from, to)
+     */
+    public int countAllocated(int from, int to) {
+        load(from, Math.min(to, size));
+        return bits.get(from, Math.min(to, size)).cardinality();
+    }
+    
+    /**
+     * Cantidad de bits libres (contador mantenido, no recorre el bitmap)
+     */
+    public int countFree() {
+        return freeCount;
     }
     
     /**
      * Serializa el bitmap a bytes
      */
     public byte[] toBytes() {
+        load(0, size);
         byte[] bytes = bits.toByteArray();
         int neededSize = (size + 7) / 8; 
         if (bytes.length < neededSize) {
@@ -84,9 +215,74 @@ public class Bitmap {
     public static Bitmap fromBytes(byte[] data, int size) {
         Bitmap bitmap = new Bitmap(size);
         bitmap.bits = BitSet.valueOf(data);
+        // Ignorar bits de relleno más allá del tamaño
+        bitmap.bits.clear(size, Math.max(size, bitmap.bits.length()));
+        bitmap.freeCount = size - bitmap.bits.cardinality();
+        return bitmap;
+    }
+    
+    /**
+     * Bitmap que lee cada bloque del disco la primera vez que se usa. El
+     * contador de libres no se puede calcular sin leerlo todo, así que viene
+     * de afuera (del superblock de un volumen que se desmontó bien).
+     */
+    public static Bitmap lazy(int size, int freeCount, int blockSize, BlockLoader loader) {
+        Bitmap bitmap = new Bitmap(size);
+        bitmap.freeCount = freeCount;
+        bitmap.bitsPerBlock = blockSize * 8;
+        bitmap.loader = loader;
+        bitmap.unloadedBlocks = new BitSet();
+        bitmap.unloadedBlocks.set(0, (size + bitmap.bitsPerBlock - 1) / bitmap.bitsPerBlock);
         return bitmap;
     }
     
+    /**
+     * Cantidad de bloques que todavía no se leyeron del disco
+     */
+    public int getUnloadedBlocks() {
+        return unloadedBlocks == null ? 0 : unloadedBlocks.cardinality();
+    }
+    
+    /**
+     * Lee los bloques que faltan para tener en memoria los bits [from, to)
+     */
+    private void load(int from, int to) {
+        if (unloadedBlocks == null || from >= to) {
+            return;
+        }
+        int last = (to - 1) / bitsPerBlock;
+        for (int b = unloadedBlocks.nextSetBit(from / bitsPerBlock); b >= 0 && b <= last;
+                b = unloadedBlocks.nextSetBit(b + 1)) {
+            BitSet block;
+            try {
+                block = BitSet.valueOf(loader.load(b));
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se pudo leer el bloque " + b + " del bitmap", e);
+            }
+            int first = b * bitsPerBlock;
+            int limit = Math.min(size, first + bitsPerBlock) - first;
+            for (int i = block.nextSetBit(0); i >= 0 && i < limit; i = block.nextSetBit(i + 1)) {
+                bits.set(first + i);
+            }
+            unloadedBlocks.clear(b);
+        }
+        if (unloadedBlocks.isEmpty()) {
+            unloadedBlocks = null;
+            loader = null;
+        }
+    }
+    
+    /**
+     * Hasta dónde se puede buscar desde from sin leer otro bloque: el final
+     * de su bloque si faltan bloques, o el final del bitmap
+     */
+    private int chunkEnd(int from) {
+        if (unloadedBlocks == null) {
+            return size;
+        }
+        return Math.min(size, (from / bitsPerBlock + 1) * bitsPerBlock);
+    }
+    
     public int getSize() {
         return size;
     }
@@ -0,0 +1,250 @@
+package filesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caché de bloques write-back con desalojo LRU entre el sistema de archivos y
+ * el dispositivo. Las escrituras solo marcan el bloque como sucio; los bloques
+ * sucios se escriben al disco cuando se desalojan o en flush().
+ *
+ * Admite lectores concurrentes: en una falla la lectura del dispositivo se
+ * hace fuera del lock, así que varios hilos pueden esperar al disco a la vez.
+ * Si mientras tanto el bloque se escribe, se reemplaza o se descarta, lo leído
+ * puede ser viejo y no se guarda en el caché.
+ *
+ * @author dylan y Gadyr
+ */
+public class BlockCache {
+
+    public static final int DEFAULT_CAPACITY = 1024; // bloques
+
+    private final BlockDevice device;
+    private final int blockSize;
+    private final int capacity;
+
+    // LinkedHashMap en orden de acceso: el primero es el menos usado
+    private final LinkedHashMap<Integer, CachedBlock> blocks;
+
+    // Bloques que se están leyendo del disco en una falla
+    private final Map<Integer, Loading> loading;
+
+    private long hits;
+    private long misses;
+
+    private static class CachedBlock {
+        byte[] data;
+        boolean dirty;
+
+        CachedBlock(byte[] data, boolean dirty) {
+            this.data = data;
+            this.dirty = dirty;
+        }
+    }
+
+    private static class Loading {
+        int readers;
+        boolean stale; // el bloque cambió después de empezar la lectura
+    }
+
+    public BlockCache(BlockDevice device, int blockSize, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("La capacidad del caché debe ser positiva");
+        }
+        this.device = device;
+        this.blockSize = blockSize;
+        this.capacity = capacity;
+        this.blocks = new LinkedHashMap<>(16, 0.75f, true);
+        this.loading = new HashMap<>();
+    }
+
+    /**
+     * Devuelve el contenido de un bloque. El arreglo pertenece al caché y no
+     * debe modificarse; para modificarlo se usa una copia y write().
+     */
+    public byte[] read(int blockNumber) throws IOException {
+        Loading load;
+        synchronized (this) {
+            CachedBlock cached = blocks.get(blockNumber);
+            if (cached != null) {
+                hits++;
+                return cached.data;
+            }
+            misses++;
+            load = loading.computeIfAbsent(blockNumber, b -> new Loading());
+            load.readers++;
+        }
+
+        byte[] data = new byte[blockSize];
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            if (device.read(buffer, (long) blockNumber * blockSize) < blockSize) {
+                throw new IOException("Lectura fuera del final del disco en el bloque " + blockNumber);
+            }
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                endLoad(blockNumber, load);
+            }
+            throw e;
+        }
+
+        synchronized (this) {
+            endLoad(blockNumber, load);
+
+            // Otro hilo pudo cargarlo o escribirlo mientras se leía el disco
+            CachedBlock cached = blocks.get(blockNumber);
+            if (cached != null) {
+                return cached.data;
+            }
+            // Si cambió y ya se desalojó, lo leído puede ser anterior al
+            // cambio: se devuelve sin guardarlo
+            if (!load.stale) {
+                put(blockNumber, new CachedBlock(data, false));
+            }
+            return data;
+        }
+    }
+
+    /**
+     * Reemplaza el contenido de un bloque y lo marca como sucio. El caché se
+     * queda con el arreglo, por lo que el llamador no debe reutilizarlo.
+     */
+    public synchronized void write(int blockNumber, byte[] data) throws IOException {
+        if (data.length != blockSize) {
+            throw new IllegalArgumentException("El bloque debe tener " + blockSize + " bytes");
+        }
+        markStale(blockNumber);
+        CachedBlock cached = blocks.get(blockNumber);
+        if (cached != null) {
+            cached.data = data;
+            cached.dirty = true;
+        } else {
+            put(blockNumber, new CachedBlock(data, true));
+        }
+    }
+
+    /**
+     * Reemplaza el contenido de un bloque sin marcarlo como sucio, porque de
+     * escribirlo se encarga otro (el journal)
+     */
+    public synchronized void update(int blockNumber, byte[] data) throws IOException {
+        markStale(blockNumber);
+        CachedBlock cached = blocks.get(blockNumber);
+        if (cached != null) {
+            cached.data = data;
+        } else {
+            put(blockNumber, new CachedBlock(data, false));
+        }
+    }
+
+    /**
+     * Escribe al disco todos los bloques sucios, en orden de número de bloque
+     */
+    public synchronized void flush() throws IOException {
+        List<Map.Entry<Integer, CachedBlock>> dirty = new ArrayList<>();
+        for (Map.Entry<Integer, CachedBlock> entry : blocks.entrySet()) {
+            if (entry.getValue().dirty) {
+                dirty.add(entry);
+            }
+        }
+        dirty.sort(Map.Entry.comparingByKey());
+
+        for (Map.Entry<Integer, CachedBlock> entry : dirty) {
+            writeBack(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Indica si el bloque está en el caché (y por lo tanto su versión más
+     * reciente puede no estar en el disco todavía)
+     */
+    public synchronized boolean contains(int blockNumber) {
+        return blocks.containsKey(blockNumber);
+    }
+
+    /**
+     * Descarta un bloque sin escribirlo, porque su contenido se escribió
+     * directamente al dispositivo
+     */
+    public synchronized void invalidate(int blockNumber) {
+        markStale(blockNumber);
+        blocks.remove(blockNumber);
+    }
+
+    /**
+     * Descarta todo el contenido del caché (debe llamarse después de flush)
+     */
+    public synchronized void clear() {
+        for (Loading load : loading.values()) {
+            load.stale = true;
+        }
+        blocks.clear();
+    }
+
+    private void endLoad(int blockNumber, Loading load) {
+        if (--load.readers == 0) {
+            loading.remove(blockNumber);
+        }
+    }
+
+    private void markStale(int blockNumber) {
+        Loading load = loading.get(blockNumber);
+        if (load != null) {
+            load.stale = true;
+        }
+    }
+
+    private void put(int blockNumber, CachedBlock block) throws IOException {
+        blocks.put(blockNumber, block);
+        evictIfNeeded();
+    }
+
+    private void evictIfNeeded() throws IOException {
+        Iterator<Map.Entry<Integer, CachedBlock>> it = blocks.entrySet().iterator();
+        while (blocks.size() > capacity && it.hasNext()) {
+            Map.Entry<Integer, CachedBlock> eldest = it.next();
+            if (eldest.getValue().dirty) {
+                writeBack(eldest.getKey(), eldest.getValue());
+            }
+            it.remove();
+        }
+    }
+
+    private void writeBack(int blockNumber, CachedBlock cached) throws IOException {
+        device.write(ByteBuffer.wrap(cached.data), (long) blockNumber * blockSize);
+        cached.dirty = false;
+    }
+
+    // Estadísticas
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized int size() {
+        return blocks.size();
+    }
+
+    public synchronized int dirtyCount() {
+        int count = 0;
+        for (CachedBlock cached : blocks.values()) {
+            if (cached.dirty) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+}
@@ -0,0 +1,58 @@
+package filesystem;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Dispositivo de bloques sobre el que trabaja el sistema de archivos.
+ * Todas las operaciones son posicionales: no existe un cursor compartido,
+ * por lo que cada acceso es una sola llamada al sistema.
+ *
+ * @author dylan y Gadyr
+ */
+public interface BlockDevice extends Closeable {
+
+    /**
+     * Lee desde la posición indicada hasta llenar el buffer o llegar al final
+     * del dispositivo.
+     *
+     * @return cantidad de bytes leídos
+     */
+    int read(ByteBuffer dst, long position) throws IOException;
+
+    /**
+     * Escribe todo el contenido restante del buffer en la posición indicada
+     */
+    void write(ByteBuffer src, long position) throws IOException;
+
+    /**
+     * Devuelve una vista de solo lectura de length bytes desde la posición
+     * indicada. La implementación por defecto copia a un buffer nuevo; los
+     * dispositivos mapeados en memoria devuelven un slice sin copiar.
+     */
+    default ByteBuffer view(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        if (read(buffer, position) < length) {
+            throw new EOFException("Lectura fuera del final del disco en la posición " + position);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Tamaño actual del dispositivo en bytes
+     */
+    long size() throws IOException;
+
+    /**
+     * Cambia el tamaño del dispositivo (usado al formatear)
+     */
+    void setSize(long newSize) throws IOException;
+
+    /**
+     * Fuerza los cambios pendientes al almacenamiento físico
+     */
+    void force() throws IOException;
+}
@@ -0,0 +1,123 @@
+package filesystem;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Descriptor de un grupo de bloques, al estilo ext2: un tramo de la zona de
+ * datos (un bloque del data bitmap), un tramo de la tabla de inodes (bloques
+ * enteros) y sus contadores de libres. Los descriptores se guardan juntos en
+ * la tabla de grupos, después del índice de nombres.
+ *
+ * Los bloques son relativos a la zona de datos (índices del data bitmap).
+ *
+ * @author dylan y Gadyr
+ */
+public class BlockGroup {
+
+    public static final int DESCRIPTOR_SIZE = 32;
+
+    private int firstBlock;
+    private int blockCount;
+    private int firstInode;
+    private int inodeCount;
+    private int freeBlocks;
+    private int freeInodes;
+    private int directories;
+
+    public BlockGroup(int firstBlock, int blockCount, int firstInode, int inodeCount) {
+        this.firstBlock = firstBlock;
+        this.blockCount = blockCount;
+        this.firstInode = firstInode;
+        this.inodeCount = inodeCount;
+        this.freeBlocks = blockCount;
+        this.freeInodes = inodeCount;
+        this.directories = 0;
+    }
+
+    // Getters y setters
+    public int getFirstBlock() {
+        return firstBlock;
+    }
+
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    public int getFirstInode() {
+        return firstInode;
+    }
+
+    public int getInodeCount() {
+        return inodeCount;
+    }
+
+    public int getFreeBlocks() {
+        return freeBlocks;
+    }
+
+    public void setFreeBlocks(int freeBlocks) {
+        this.freeBlocks = freeBlocks;
+    }
+
+    public int getFreeInodes() {
+        return freeInodes;
+    }
+
+    public void setFreeInodes(int freeInodes) {
+        this.freeInodes = freeInodes;
+    }
+
+    public int getDirectories() {
+        return directories;
+    }
+
+    public void setDirectories(int directories) {
+        this.directories = directories;
+    }
+
+    /**
+     * Primer bloque (relativo) después del grupo
+     */
+    public int getEndBlock() {
+        return firstBlock + blockCount;
+    }
+
+    /**
+     * Primer inode después del grupo
+     */
+    public int getEndInode() {
+        return firstInode + inodeCount;
+    }
+
+    /**
+     * Escribe el descriptor en offset
+     */
+    void write(ByteBuffer buffer, int offset) {
+        buffer.putInt(offset, firstBlock);
+        buffer.putInt(offset + 4, blockCount);
+        buffer.putInt(offset + 8, firstInode);
+        buffer.putInt(offset + 12, inodeCount);
+        buffer.putInt(offset + 16, freeBlocks);
+        buffer.putInt(offset + 20, freeInodes);
+        buffer.putInt(offset + 24, directories);
+    }
+
+    /**
+     * Lee el descriptor que empieza en offset
+     */
+    static BlockGroup read(ByteBuffer buffer, int offset) {
+        BlockGroup group = new BlockGroup(buffer.getInt(offset), buffer.getInt(offset + 4),
+                buffer.getInt(offset + 8), buffer.getInt(offset + 12));
+        group.freeBlocks = buffer.getInt(offset + 16);
+        group.freeInodes = buffer.getInt(offset + 20);
+        group.directories = buffer.getInt(offset + 24);
+        return group;
+    }
+
+    @Override
+    public String toString() {
+        return "bloques " + firstBlock + "-" + (getEndBlock() - 1) + " (" + freeBlocks + " libres), inodes "
+                + firstInode + "-" + (getEndInode() - 1) + " (" + freeInodes + " libres), "
+                + directories + " directorios";
+    }
+}
@@ -0,0 +1,213 @@
+package filesystem;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Asignación contigua: los bloques de un archivo se describen con unos pocos
+ * extents (inicio, largo). Los directorios, que crecen de a un bloque, usan
+ * primero los punteros directos y siguen en extents; cada vez que hace falta
+ * uno nuevo se reserva de una vez tanto como el directorio ya tiene, así los
+ * extents alcanzan para directorios grandes. Lo reservado queda después del
+ * final del directorio hasta que lo necesita.
+ *
+ * @author dylan y Gadyr
+ */
+class ContiguousAllocation implements AllocationStrategy {
+
+    private final FileSystem fs;
+
+    ContiguousAllocation(FileSystem fs) {
+        this.fs = fs;
+    }
+
+    @Override
+    public int getType() {
+        return FSConstants.ALLOC_CONTIGUOUS;
+    }
+
+    @Override
+    public int getBlockNumber(Inode inode, int logicalBlock) throws IOException {
+        int remaining = logicalBlock;
+        if (usesDirectBlocks(inode)) {
+            if (logicalBlock < FSConstants.DIRECT_POINTERS) {
+                return inode.getDirectBlocks()[logicalBlock];
+            }
+            remaining -= FSConstants.DIRECT_POINTERS;
+        }
+
+        for (Extent extent : inode.getExtents()) {
+            if (remaining < extent.getLength()) {
+                return extent.getStart() + remaining;
+            }
+            remaining -= extent.getLength();
+        }
+        return -1;
+    }
+
+    @Override
+    public int[] mapBlocks(Inode inode, int blockCount) throws IOException {
+        int[] blocks = new int[blockCount];
+        Arrays.fill(blocks, -1);
+
+        int logical = 0;
+        if (usesDirectBlocks(inode)) {
+            logical = Math.min(blockCount, FSConstants.DIRECT_POINTERS);
+            System.arraycopy(inode.getDirectBlocks(), 0, blocks, 0, logical);
+        }
+
+        for (Extent extent : inode.getExtents()) {
+            for (int i = 0; i < extent.getLength() && logical < blockCount; i++) {
+                blocks[logical++] = extent.getStart() + i;
+            }
+        }
+        return blocks;
+    }
+
+    @Override
+    public void allocateBlocks(Inode inode, int firstLogicalBlock, int count) throws IOException {
+        if (usesDirectBlocks(inode)) {
+            // Los primeros bloques de un directorio van en los punteros
+            // directos, cada uno pegado al anterior si se puede
+            while (count > 0 && firstLogicalBlock < FSConstants.DIRECT_POINTERS) {
+                int previous = firstLogicalBlock > 0 ? inode.getDirectBlocks()[firstLogicalBlock - 1] : -1;
+                int goal = previous >= 0 ? previous + 1 : fs.getDataGoal(inode);
+                inode.setDirectBlock(firstLogicalBlock++, fs.allocateDataBlock(goal));
+                count--;
+            }
+            if (count == 0) {
+                return;
+            }
+
+            // Bloques que ya quedaron reservados en un crecimiento anterior
+            int reservedEnd = FSConstants.DIRECT_POINTERS + getExtentBlocks(inode);
+            if (firstLogicalBlock < reservedEnd) {
+                int reused = Math.min(count, reservedEnd - firstLogicalBlock);
+                firstLogicalBlock += reused;
+                count -= reused;
+                if (count == 0) {
+                    return;
+                }
+            }
+        }
+
+        List<Extent> current = inode.getExtents();
+        Extent last = current.isEmpty() ? null : current.get(current.size() - 1);
+
+        // Al agregar se intenta seguir justo después del último extent; un
+        // archivo nuevo empieza en el grupo de su inode
+        int goal = last == null ? -1 : last.getEnd();
+        int near = last == null ? fs.getDataGoal(inode) : goal;
+        List<Extent> extents = null;
+        if (usesDirectBlocks(inode) && firstLogicalBlock > count) {
+            // Un directorio reserva tanto como ya tiene, en un solo extent
+            // nuevo; si no hay un rango así, se asigna solo lo pedido
+            try {
+                extents = fs.allocateExtents(firstLogicalBlock, goal, near,
+                        Math.min(1, FSConstants.MAX_EXTENTS - current.size()));
+            } catch (IOException e) {
+                extents = null;
+            }
+        }
+        if (extents == null) {
+            extents = fs.allocateExtents(count, goal, near, FSConstants.MAX_EXTENTS - current.size());
+        }
+
+        // El que sigue justo después del último se une a él; los demás son
+        // extents nuevos del inode
+        int added = 0;
+        int end = last == null ? -1 : last.getEnd();
+        for (Extent extent : extents) {
+            if (extent.getStart() != end) {
+                added++;
+            }
+            end = extent.getEnd();
+        }
+        if (current.size() + added > FSConstants.MAX_EXTENTS) {
+            for (Extent extent : extents) {
+                fs.freeExtent(extent);
+            }
+            throw new IOException("El archivo no puede tener más de " + FSConstants.MAX_EXTENTS + " extents");
+        }
+
+        for (Extent extent : extents) {
+            if (last != null && last.getEnd() == extent.getStart()) {
+                last.setLength(last.getLength() + extent.getLength());
+            } else {
+                inode.addExtent(extent);
+                last = extent;
+            }
+        }
+    }
+
+    @Override
+    public void truncateBlocks(Inode inode, int keepBlocks) throws IOException {
+        List<Extent> kept = new ArrayList<>();
+        int remaining = usesDirectBlocks(inode) ? Math.max(0, keepBlocks - FSConstants.DIRECT_POINTERS) : keepBlocks;
+
+        for (Extent extent : inode.getExtents()) {
+            if (remaining >= extent.getLength()) {
+                kept.add(extent);
+                remaining -= extent.getLength();
+            } else if (remaining > 0) {
+                // Se corta este extent: se libera solo la cola
+                fs.freeExtent(new Extent(extent.getStart() + remaining, extent.getLength() - remaining));
+                kept.add(new Extent(extent.getStart(), remaining));
+                remaining = 0;
+            } else {
+                fs.freeExtent(extent);
+            }
+        }
+
+        inode.clearExtents();
+        for (Extent extent : kept) {
+            inode.addExtent(extent);
+        }
+
+        // Bloques de directorio
+        for (int i = keepBlocks; i < FSConstants.DIRECT_POINTERS; i++) {
+            int blockNum = inode.getDirectBlocks()[i];
+            if (blockNum != -1) {
+                fs.freeDataBlock(blockNum);
+                inode.setDirectBlock(i, -1);
+            }
+        }
+    }
+
+    /**
+     * Bloques que cubren los extents del inode
+     */
+    private int getExtentBlocks(Inode inode) {
+        int blocks = 0;
+        for (Extent extent : inode.getExtents()) {
+            blocks += extent.getLength();
+        }
+        return blocks;
+    }
+
+    /**
+     * Los directorios empiezan por los punteros directos
+     */
+    private boolean usesDirectBlocks(Inode inode) {
+        return inode.isDirectory();
+    }
+
+    @Override
+    public void releaseBlocks(Inode inode) throws IOException {
+        for (Extent extent : inode.getExtents()) {
+            fs.freeExtent(extent);
+        }
+        inode.clearExtents();
+
+        // Bloques de directorio
+        for (int i = 0; i < FSConstants.DIRECT_POINTERS; i++) {
+            int blockNum = inode.getDirectBlocks()[i];
+            if (blockNum != -1) {
+                fs.freeDataBlock(blockNum);
+                inode.setDirectBlock(i, -1);
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package filesystem;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Caché de nombres (dentries): (inode del directorio, nombre) -> inode de la
+ * entrada. También guarda los nombres que no existen (entradas negativas),
+ * para que buscar de nuevo un nombre ausente no lea el directorio.
+ *
+ * El sistema de archivos lo mantiene al día en cada alta, baja o cambio de
+ * entrada, así que no hace falta invalidarlo desde los comandos. Los métodos
+ * están sincronizados para los recorridos en paralelo.
+ *
+ * @author dylan y Gadyr
+ */
+public class DentryCache {
+
+    public static final int DEFAULT_CAPACITY = 8192; // nombres
+    public static final int NEGATIVE = -1;
+
+    private final int capacity;
+
+    // LinkedHashMap en orden de acceso: el primero es el menos usado
+    private final LinkedHashMap<Key, Integer> entries;
+
+    private long hits;
+    private long negativeHits;
+    private long misses;
+
+    private static final class Key {
+        final int parent;
+        final String name;
+
+        Key(int parent, String name) {
+            this.parent = parent;
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return parent == key.parent && name.equals(key.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(parent, name);
+        }
+    }
+
+    public DentryCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("La capacidad del caché debe ser positiva");
+        }
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Integer> eldest) {
+                return size() > DentryCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Inode de la entrada, NEGATIVE si se sabe que no existe, o null si el
+     * nombre no está en el caché
+     */
+    public synchronized Integer get(int parent, String name) {
+        Integer inodeNumber = entries.get(new Key(parent, name));
+        if (inodeNumber == null) {
+            misses++;
+        } else if (inodeNumber == NEGATIVE) {
+            negativeHits++;
+        } else {
+            hits++;
+        }
+        return inodeNumber;
+    }
+
+    /**
+     * Registra el resultado de una búsqueda (NEGATIVE si no existe)
+     */
+    public synchronized void put(int parent, String name, int inodeNumber) {
+        entries.put(new Key(parent, name), inodeNumber);
+    }
+
+    /**
+     * Olvida todos los nombres de un directorio (al crearlo de nuevo con un
+     * inode reutilizado)
+     */
+    public synchronized void invalidateDirectory(int parent) {
+        entries.keySet().removeIf(key -> key.parent == parent);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getNegativeHits() {
+        return negativeHits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+}
@@ -1,16 +1,26 @@
 package filesystem;
 
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
 
 /**
+ * Entrada de directorio de largo variable. En disco cada registro tiene el
+ * número de inode (4 bytes), el largo del registro (2), el tipo (1), el largo
+ * del nombre (1) y el nombre en UTF-8, alineado a 4 bytes. Los registros de un
+ * bloque se encadenan por su largo y cubren el bloque entero: lo que sobra al
+ * final de un registro queda disponible para una entrada nueva.
  *
  * @author dylan y Gadyr
  */
 public class DirectoryEntry {
 
+    public static final int HEADER_SIZE = 8;
+
     private int inodeNumber;
     private int entryType;
-    private int nameLength;
+    private int nameLength; // en bytes UTF-8
     private String name;
 
     public DirectoryEntry() {
@@ -23,8 +33,7 @@ public class DirectoryEntry {
     public DirectoryEntry(int inodeNumber, int entryType, String name) {
         this.inodeNumber = inodeNumber;
         this.entryType = entryType;
-        this.name = name;
-        this.nameLength = name.length();
+        setName(name);
     }
 
     // Getters y Setters
@@ -58,12 +67,12 @@ public class DirectoryEntry {
 
     public void setName(String name) {
         this.name = name;
-        this.nameLength = name.length();
+        this.nameLength = name.getBytes(StandardCharsets.UTF_8).length;
     }
 
     /**
      * Verifica si la entrada está libre
-     * 
+     *
      * @return
      */
     public boolean isFree() {
@@ -71,52 +80,207 @@ public class DirectoryEntry {
     }
 
     /**
-     * Serializa la entrada a bytes
-     * 
+     * Bytes mínimos que ocupa la entrada en disco
+     */
+    public int getRecordLength() {
+        return recordLength(nameLength);
+    }
+
+    /**
+     * Largo de un registro con un nombre de nameLength bytes
+     */
+    static int recordLength(int nameLength) {
+        return (HEADER_SIZE + nameLength + 3) & ~3;
+    }
+
+    /**
+     * Serializa la entrada a bytes (un registro de largo mínimo)
+     *
      * @return
      */
     public byte[] toBytes() {
-        ByteBuffer buffer = ByteBuffer.allocate(FSConstants.DIR_ENTRY_SIZE);
-
-        buffer.putInt(inodeNumber);
-        buffer.putInt(entryType);
-        buffer.putInt(nameLength);
-
-        // name (244 bytes)
-        byte[] nameBytes = new byte[244];
-        if (name != null && !name.isEmpty()) {
-            byte[] actualName = name.getBytes();
-            System.arraycopy(actualName, 0, nameBytes, 0,
-                    Math.min(actualName.length, 244));
-        }
-        buffer.put(nameBytes);
-
+        ByteBuffer buffer = ByteBuffer.allocate(getRecordLength());
+        write(buffer, 0, getRecordLength());
         return buffer.array();
     }
 
     /**
      * Deserializa una entrada desde bytes
-     * 
+     *
      * @param data
      * @return
      */
     public static DirectoryEntry fromBytes(byte[] data) {
-        ByteBuffer buffer = ByteBuffer.wrap(data);
+        return read(ByteBuffer.wrap(data), 0);
+    }
 
+    /**
+     * Escribe la entrada como un registro de recordLength bytes en offset
+     */
+    void write(ByteBuffer block, int offset, int recordLength) {
+        block.putInt(offset, inodeNumber);
+        block.putShort(offset + 4, (short) recordLength);
+        block.put(offset + 6, (byte) entryType);
+        block.put(offset + 7, (byte) nameLength);
+        block.put(offset + HEADER_SIZE, name.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Lee el registro que empieza en offset
+     */
+    static DirectoryEntry read(ByteBuffer block, int offset) {
         DirectoryEntry entry = new DirectoryEntry();
-        entry.inodeNumber = buffer.getInt();
-        entry.entryType = buffer.getInt();
-        entry.nameLength = buffer.getInt();
+        entry.inodeNumber = block.getInt(offset);
+        entry.entryType = block.get(offset + 6) & 0xFF;
+        entry.nameLength = block.get(offset + 7) & 0xFF;
+
+        byte[] nameBytes = new byte[entry.nameLength];
+        block.get(offset + HEADER_SIZE, nameBytes);
+        entry.name = new String(nameBytes, StandardCharsets.UTF_8);
+        return entry;
+    }
+
+    static int readRecordLength(ByteBuffer block, int offset) {
+        return block.getShort(offset + 4) & 0xFFFF;
+    }
+
+    // Operaciones sobre un bloque de directorio completo
+
+    /**
+     * Deja el bloque como un único registro libre
+     */
+    static void initBlock(byte[] block) {
+        Arrays.fill(block, (byte) 0);
+        new DirectoryEntry().write(ByteBuffer.wrap(block), 0, block.length);
+    }
+
+    /**
+     * Agrega al final de list las entradas ocupadas del bloque
+     */
+    static void readAll(ByteBuffer block, List<DirectoryEntry> list) {
+        for (int offset = 0; offset < block.limit(); offset = next(block, offset)) {
+            if (!isFreeRecord(block, offset)) {
+                list.add(read(block, offset));
+            }
+        }
+    }
+
+    /**
+     * Posición de la entrada ocupada con ese nombre, o -1 si no está en el
+     * bloque. Compara los bytes del nombre sin crear objetos.
+     */
+    static int find(ByteBuffer block, String name) {
+        return find(block, name.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Igual que find(ByteBuffer, String) con el nombre ya codificado en UTF-8
+     */
+    static int find(ByteBuffer block, byte[] name) {
+        for (int offset = 0; offset < block.limit(); offset = next(block, offset)) {
+            if (!isFreeRecord(block, offset) && nameEquals(block, offset, name)) {
+                return offset;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Posición del primer registro que tiene lugar para recordLength bytes
+     * más (libre, o con espacio sobrante al final), o -1 si no hay
+     */
+    static int findRoom(ByteBuffer block, int recordLength) {
+        for (int offset = 0; offset < block.limit(); offset = next(block, offset)) {
+            int available = readRecordLength(block, offset);
+            if (!isFreeRecord(block, offset)) {
+                available -= recordLength(block.get(offset + 7) & 0xFF);
+            }
+            if (available >= recordLength) {
+                return offset;
+            }
+        }
+        return -1;
+    }
 
-        byte[] nameBytes = new byte[244];
-        buffer.get(nameBytes);
+    /**
+     * Agrega la entrada en el primer lugar con espacio suficiente
+     *
+     * @return false si no entra en el bloque
+     */
+    static boolean insert(byte[] block, DirectoryEntry entry) {
+        ByteBuffer buffer = ByteBuffer.wrap(block);
+        int offset = findRoom(buffer, entry.getRecordLength());
+        if (offset == -1) {
+            return false;
+        }
 
-        if (entry.nameLength > 0 && entry.nameLength <= 244) {
-            entry.name = new String(nameBytes, 0, entry.nameLength);
+        int length = readRecordLength(buffer, offset);
+        if (isFreeRecord(buffer, offset)) {
+            entry.write(buffer, offset, length);
         } else {
-            entry.name = "";
+            // El registro ocupado se achica y la entrada usa lo que sobraba
+            int used = recordLength(buffer.get(offset + 7) & 0xFF);
+            buffer.putShort(offset + 4, (short) used);
+            entry.write(buffer, offset + used, length - used);
         }
+        return true;
+    }
 
-        return entry;
+    /**
+     * Reemplaza la entrada de offset si la nueva cabe en su registro
+     *
+     * @return false si no cabe
+     */
+    static boolean replace(byte[] block, int offset, DirectoryEntry entry) {
+        ByteBuffer buffer = ByteBuffer.wrap(block);
+        int length = readRecordLength(buffer, offset);
+        if (entry.getRecordLength() > length) {
+            return false;
+        }
+        Arrays.fill(block, offset, offset + length, (byte) 0);
+        entry.write(buffer, offset, length);
+        return true;
+    }
+
+    /**
+     * Quita la entrada de offset. Su espacio pasa al registro anterior, o
+     * queda como registro libre si es el primero del bloque.
+     */
+    static void remove(byte[] block, int offset) {
+        ByteBuffer buffer = ByteBuffer.wrap(block);
+        int previous = -1;
+        for (int current = 0; current < offset; current = next(buffer, current)) {
+            previous = current;
+        }
+
+        int length = readRecordLength(buffer, offset);
+        Arrays.fill(block, offset, offset + length, (byte) 0);
+        if (previous == -1) {
+            new DirectoryEntry().write(buffer, offset, length);
+        } else {
+            buffer.putShort(previous + 4, (short) (readRecordLength(buffer, previous) + length));
+        }
+    }
+
+    private static int next(ByteBuffer block, int offset) {
+        int length = readRecordLength(block, offset);
+        // Un largo inválido termina el recorrido del bloque
+        return length < HEADER_SIZE ? block.limit() : offset + length;
+    }
+
+    private static boolean isFreeRecord(ByteBuffer block, int offset) {
+        return block.getInt(offset) == -1 || block.get(offset + 6) == FSConstants.TYPE_FREE;
+    }
+
+    private static boolean nameEquals(ByteBuffer block, int offset, byte[] name) {
+        if ((block.get(offset + 7) & 0xFF) != name.length) {
+            return false;
+        }
+        for (int i = 0; i < name.length; i++) {
+            if (block.get(offset + HEADER_SIZE + i) != name[i]) {
+                return false;
+            }
+        }
+        return true;
     }
 }
@@ -0,0 +1,450 @@
+package filesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Índice hash de directorios grandes, al estilo htree. El primer bloque del
+ * directorio (raíz) empieza con los registros de "." y "..", y el de ".."
+ * abarca el resto del bloque, donde va una tabla ordenada de pares (hash,
+ * bloque lógico). Si la tabla se llena, la
+ * raíz pasa a apuntar a bloques de nodos con tablas iguales, que apuntan a las
+ * hojas. Las hojas son bloques de entradas comunes.
+ *
+ * Todos los nombres con un mismo hash quedan en la misma hoja, así que buscar,
+ * agregar o quitar una entrada lee la raíz, a lo sumo un nodo y una hoja. Los
+ * directorios de un solo bloque siguen siendo una lista lineal y se convierten
+ * cuando se llenan.
+ *
+ * @author dylan y Gadyr
+ */
+class DirectoryIndex {
+
+    private static final int HEADER_SIZE = 16; // magic, niveles, cantidad, reservado
+    private static final int PAIR_SIZE = 8; // hash, bloque lógico
+    private static final int DOT_RECORD = 12; // registro de "." o ".."
+    private static final int ROOT_TABLE = 2 * DOT_RECORD;
+    private static final int NODE_TABLE = 0;
+
+    private final FileSystem fs;
+
+    DirectoryIndex(FileSystem fs) {
+        this.fs = fs;
+    }
+
+    /**
+     * Camino desde la raíz hasta la hoja de un hash
+     */
+    private static class Path {
+        int rootIndex;
+        int node = -1; // bloque lógico del nodo, -1 si la raíz apunta a hojas
+        int nodeIndex;
+        int leaf;
+    }
+
+    /**
+     * Hash de un nombre (FNV-1a de 31 bits, nunca negativo)
+     */
+    static int hash(String name) {
+        return hash(name.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static int hash(byte[] name) {
+        int h = 0x811C9DC5;
+        for (byte b : name) {
+            h ^= b & 0xFF;
+            h *= 0x01000193;
+        }
+        return h & 0x7FFFFFFF;
+    }
+
+    /**
+     * Indica si el directorio usa el índice. Los indexados tienen siempre al
+     * menos dos bloques.
+     */
+    boolean isIndexed(Inode dirInode) throws IOException {
+        if (dirInode.getFileSize() <= fs.getSuperblock().getBlockSize()) {
+            return false;
+        }
+        int rootBlock = fs.getAllocationStrategy().getBlockNumber(dirInode, 0);
+        return rootBlock != -1 && isRoot(fs.readBlockView(rootBlock));
+    }
+
+    /**
+     * Indica si un primer bloque de directorio es una raíz de índice
+     */
+    static boolean isRoot(ByteBuffer block) {
+        return DirectoryEntry.readRecordLength(block, DOT_RECORD) == block.limit() - DOT_RECORD
+                && block.getInt(ROOT_TABLE) == FSConstants.DIR_INDEX_MAGIC;
+    }
+
+    /**
+     * Indica si un bloque de un directorio indexado es un nodo (y no una hoja).
+     * Una hoja empieza con un número de inode o -1, nunca con el magic.
+     */
+    static boolean isNode(ByteBuffer block) {
+        return block.getInt(NODE_TABLE) == FSConstants.DIR_INDEX_MAGIC;
+    }
+
+    /**
+     * Convierte un directorio lineal en indexado con las entradas indicadas
+     * (solo las ocupadas). El directorio queda con la raíz, una hoja inicial y
+     * las que hagan falta al repartir las entradas.
+     */
+    void build(Inode dirInode, List<DirectoryEntry> entries) throws IOException {
+        DirectoryEntry dot = new DirectoryEntry();
+        DirectoryEntry dotDot = new DirectoryEntry();
+        List<DirectoryEntry> others = new ArrayList<>();
+        for (DirectoryEntry entry : entries) {
+            if (entry.getName().equals(".")) {
+                dot = entry;
+            } else if (entry.getName().equals("..")) {
+                dotDot = entry;
+            } else {
+                others.add(entry);
+            }
+        }
+
+        // Se conserva solo el primer bloque; las hojas se asignan de nuevo
+        AllocationStrategy allocation = fs.getAllocationStrategy();
+        fs.truncateBlocks(dirInode, 1);
+        dirInode.setFileSize(fs.getSuperblock().getBlockSize());
+        int leaf = fs.appendDirectoryBlock(dirInode);
+
+        byte[] root = new byte[fs.getSuperblock().getBlockSize()];
+        ByteBuffer table = ByteBuffer.wrap(root);
+        dot.write(table, 0, DOT_RECORD);
+        dotDot.write(table, DOT_RECORD, root.length - DOT_RECORD);
+        table.putInt(ROOT_TABLE, FSConstants.DIR_INDEX_MAGIC);
+        table.putInt(ROOT_TABLE + 4, 0);
+        setCount(root, ROOT_TABLE, 0);
+        insertPair(root, ROOT_TABLE, 0, 0, leaf);
+        fs.writeBlock(allocation.getBlockNumber(dirInode, 0), root);
+        fs.writeBlock(allocation.getBlockNumber(dirInode, leaf), fs.newDirectoryBlock());
+
+        for (DirectoryEntry entry : others) {
+            add(dirInode, entry);
+        }
+    }
+
+    /**
+     * Busca una entrada por nombre
+     *
+     * @return la entrada, o null si no existe
+     */
+    DirectoryEntry lookup(Inode dirInode, String name) throws IOException {
+        ByteBuffer block = fs.readBlockView(getEntryBlock(dirInode, name));
+        int offset = DirectoryEntry.find(block, name);
+        return offset == -1 ? null : DirectoryEntry.read(block, offset);
+    }
+
+    /**
+     * Número de inode de la entrada con ese nombre (en UTF-8), o -1 si no
+     * existe. No crea objetos por entrada.
+     */
+    int lookupInodeNumber(Inode dirInode, byte[] name) throws IOException {
+        int logical = isDotEntry(name) ? 0 : findLeaf(dirInode, hash(name)).leaf;
+        ByteBuffer block = fs.readBlockView(fs.getAllocationStrategy().getBlockNumber(dirInode, logical));
+        int offset = DirectoryEntry.find(block, name);
+        return offset == -1 ? -1 : block.getInt(offset);
+    }
+
+    /**
+     * Reemplaza la entrada con el nombre indicado. Si la nueva no entra en el
+     * registro de la anterior, se quita y se agrega en la hoja de su hash.
+     *
+     * @return false si no existe una entrada con ese nombre
+     */
+    boolean update(Inode dirInode, String name, DirectoryEntry replacement) throws IOException {
+        int blockNumber = getEntryBlock(dirInode, name);
+        byte[] block = fs.readBlock(blockNumber);
+        int offset = DirectoryEntry.find(ByteBuffer.wrap(block), name);
+        if (offset == -1) {
+            return false;
+        }
+
+        if (isDotEntry(name)) {
+            // "." y ".." no pueden cambiar de lugar ni de largo en la raíz
+            if (replacement.getRecordLength() > DOT_RECORD) {
+                throw new IOException("Entrada inválida para " + name + " en un directorio indexado");
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(block);
+            replacement.write(buffer, offset, DirectoryEntry.readRecordLength(buffer, offset));
+            fs.writeBlock(blockNumber, block);
+            return true;
+        }
+
+        if (DirectoryEntry.replace(block, offset, replacement)) {
+            fs.writeBlock(blockNumber, block);
+        } else {
+            DirectoryEntry.remove(block, offset);
+            fs.writeBlock(blockNumber, block);
+            add(dirInode, replacement);
+        }
+        return true;
+    }
+
+    /**
+     * Quita una entrada de su hoja. "." y ".." no se pueden quitar.
+     *
+     * @return false si no existe una entrada con ese nombre
+     */
+    boolean remove(Inode dirInode, String name) throws IOException {
+        if (isDotEntry(name)) {
+            return false;
+        }
+        int blockNumber = getEntryBlock(dirInode, name);
+        byte[] block = fs.readBlock(blockNumber);
+        int offset = DirectoryEntry.find(ByteBuffer.wrap(block), name);
+        if (offset == -1) {
+            return false;
+        }
+        DirectoryEntry.remove(block, offset);
+        fs.writeBlock(blockNumber, block);
+        return true;
+    }
+
+    /**
+     * Agrega una entrada en la hoja de su hash. Si la hoja está llena se
+     * divide en dos y el índice gana un par.
+     */
+    void add(Inode dirInode, DirectoryEntry entry) throws IOException {
+        Path path = findLeaf(dirInode, hash(entry.getName()));
+        int leafBlock = fs.getAllocationStrategy().getBlockNumber(dirInode, path.leaf);
+        byte[] leaf = fs.readBlock(leafBlock);
+
+        if (DirectoryEntry.insert(leaf, entry)) {
+            fs.writeBlock(leafBlock, leaf);
+            return;
+        }
+        splitLeaf(dirInode, path, leafBlock, leaf, entry);
+    }
+
+    /**
+     * Reparte las entradas de una hoja llena, más la nueva, entre la hoja y
+     * una hoja nueva al final del directorio. El corte se hace entre dos
+     * hashes distintos para que cada hash siga en una sola hoja.
+     */
+    private void splitLeaf(Inode dirInode, Path path, int leafBlock, byte[] leaf, DirectoryEntry entry)
+            throws IOException {
+        List<DirectoryEntry> entries = new ArrayList<>();
+        DirectoryEntry.readAll(ByteBuffer.wrap(leaf), entries);
+        entries.add(entry);
+        entries.sort((a, b) -> Integer.compare(hash(a.getName()), hash(b.getName())));
+
+        int split = findSplit(entries, leaf.length);
+        if (split == -1) {
+            throw new IOException("Demasiados nombres con el mismo hash en el directorio");
+        }
+
+        byte[] left = fs.newDirectoryBlock();
+        byte[] right = fs.newDirectoryBlock();
+        for (int i = 0; i < entries.size(); i++) {
+            DirectoryEntry.insert(i < split ? left : right, entries.get(i));
+        }
+
+        int newLeaf = fs.appendDirectoryBlock(dirInode);
+        fs.writeBlock(leafBlock, left);
+        fs.writeBlock(fs.getAllocationStrategy().getBlockNumber(dirInode, newLeaf), right);
+        addPair(dirInode, path, hash(entries.get(split).getName()), newLeaf);
+    }
+
+    /**
+     * Posición de corte entre dos hashes distintos que deja los bytes de las
+     * dos mitades más parejos (y cada una dentro de un bloque), o -1 si no hay
+     */
+    private static int findSplit(List<DirectoryEntry> entries, int blockSize) {
+        int total = 0;
+        for (DirectoryEntry entry : entries) {
+            total += entry.getRecordLength();
+        }
+
+        int best = -1;
+        int bestDistance = Integer.MAX_VALUE;
+        int prefix = 0;
+        for (int i = 1; i < entries.size(); i++) {
+            prefix += entries.get(i - 1).getRecordLength();
+            if (prefix > blockSize || total - prefix > blockSize
+                    || hash(entries.get(i - 1).getName()) == hash(entries.get(i).getName())) {
+                continue;
+            }
+            int distance = Math.abs(2 * prefix - total);
+            if (distance < bestDistance) {
+                best = i;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Agrega el par (hash, bloque lógico) de una hoja nueva a continuación del
+     * par que llevó a la hoja dividida
+     */
+    private void addPair(Inode dirInode, Path path, int hash, int logicalBlock) throws IOException {
+        AllocationStrategy allocation = fs.getAllocationStrategy();
+        int rootBlock = allocation.getBlockNumber(dirInode, 0);
+        byte[] root = fs.readBlock(rootBlock);
+        boolean rootChanged = false;
+
+        if (path.node == -1) {
+            if (getCount(root, ROOT_TABLE) < getCapacity(ROOT_TABLE)) {
+                insertPair(root, ROOT_TABLE, path.rootIndex + 1, hash, logicalBlock);
+                fs.writeBlock(rootBlock, root);
+                return;
+            }
+
+            // Raíz llena: su tabla pasa a un nodo y la raíz apunta a él
+            int node = fs.appendDirectoryBlock(dirInode);
+            byte[] nodeData = new byte[fs.getSuperblock().getBlockSize()];
+            ByteBuffer.wrap(nodeData).putInt(NODE_TABLE, FSConstants.DIR_INDEX_MAGIC);
+            int count = getCount(root, ROOT_TABLE);
+            System.arraycopy(root, ROOT_TABLE + HEADER_SIZE, nodeData, NODE_TABLE + HEADER_SIZE, count * PAIR_SIZE);
+            setCount(nodeData, NODE_TABLE, count);
+
+            ByteBuffer.wrap(root).putInt(ROOT_TABLE + 4, 1);
+            setCount(root, ROOT_TABLE, 0);
+            insertPair(root, ROOT_TABLE, 0, 0, node);
+            fs.writeBlock(allocation.getBlockNumber(dirInode, node), nodeData);
+
+            path.nodeIndex = path.rootIndex;
+            path.rootIndex = 0;
+            path.node = node;
+            rootChanged = true;
+        }
+
+        int nodeBlock = allocation.getBlockNumber(dirInode, path.node);
+        byte[] node = fs.readBlock(nodeBlock);
+        if (getCount(node, NODE_TABLE) < getCapacity(NODE_TABLE)) {
+            insertPair(node, NODE_TABLE, path.nodeIndex + 1, hash, logicalBlock);
+            fs.writeBlock(nodeBlock, node);
+            if (rootChanged) {
+                fs.writeBlock(rootBlock, root);
+            }
+            return;
+        }
+
+        // Nodo lleno: la mitad superior de su tabla pasa a un nodo nuevo
+        if (getCount(root, ROOT_TABLE) >= getCapacity(ROOT_TABLE)) {
+            throw new IOException("El índice del directorio está lleno");
+        }
+        int count = getCount(node, NODE_TABLE);
+        int half = count / 2;
+        byte[] upper = new byte[fs.getSuperblock().getBlockSize()];
+        ByteBuffer.wrap(upper).putInt(NODE_TABLE, FSConstants.DIR_INDEX_MAGIC);
+        System.arraycopy(node, pairOffset(NODE_TABLE, half), upper, pairOffset(NODE_TABLE, 0),
+                (count - half) * PAIR_SIZE);
+        setCount(upper, NODE_TABLE, count - half);
+        setCount(node, NODE_TABLE, half);
+        Arrays.fill(node, pairOffset(NODE_TABLE, half), pairOffset(NODE_TABLE, count), (byte) 0);
+
+        if (path.nodeIndex + 1 <= half) {
+            insertPair(node, NODE_TABLE, path.nodeIndex + 1, hash, logicalBlock);
+        } else {
+            insertPair(upper, NODE_TABLE, path.nodeIndex + 1 - half, hash, logicalBlock);
+        }
+
+        int newNode = fs.appendDirectoryBlock(dirInode);
+        fs.writeBlock(nodeBlock, node);
+        fs.writeBlock(allocation.getBlockNumber(dirInode, newNode), upper);
+        insertPair(root, ROOT_TABLE, path.rootIndex + 1, getHash(upper, NODE_TABLE, 0), newNode);
+        fs.writeBlock(rootBlock, root);
+    }
+
+    /**
+     * Baja desde la raíz hasta la hoja que corresponde a un hash
+     */
+    private Path findLeaf(Inode dirInode, int hash) throws IOException {
+        AllocationStrategy allocation = fs.getAllocationStrategy();
+        ByteBuffer root = fs.readBlockView(allocation.getBlockNumber(dirInode, 0));
+        if (!isRoot(root)) {
+            throw new IOException("Índice de directorio dañado (inode " + dirInode.getInodeNumber() + ")");
+        }
+
+        Path path = new Path();
+        path.rootIndex = search(root, ROOT_TABLE, hash);
+        int target = root.getInt(pairOffset(ROOT_TABLE, path.rootIndex) + 4);
+
+        if (root.getInt(ROOT_TABLE + 4) == 0) {
+            path.leaf = target;
+            return path;
+        }
+
+        ByteBuffer node = fs.readBlockView(allocation.getBlockNumber(dirInode, target));
+        if (!isNode(node)) {
+            throw new IOException("Índice de directorio dañado (inode " + dirInode.getInodeNumber() + ")");
+        }
+        path.node = target;
+        path.nodeIndex = search(node, NODE_TABLE, hash);
+        path.leaf = node.getInt(pairOffset(NODE_TABLE, path.nodeIndex) + 4);
+        return path;
+    }
+
+    /**
+     * Bloque físico donde está (o estaría) la entrada con ese nombre
+     */
+    private int getEntryBlock(Inode dirInode, String name) throws IOException {
+        int logical = isDotEntry(name) ? 0 : findLeaf(dirInode, hash(name)).leaf;
+        return fs.getAllocationStrategy().getBlockNumber(dirInode, logical);
+    }
+
+    /**
+     * Último par de la tabla con hash menor o igual al buscado (búsqueda
+     * binaria; el primer par tiene siempre hash 0)
+     */
+    private static int search(ByteBuffer block, int table, int hash) {
+        int low = 0;
+        int high = block.getInt(table + 8) - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (block.getInt(pairOffset(table, middle)) <= hash) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    private static void insertPair(byte[] block, int table, int index, int hash, int logicalBlock) {
+        int count = getCount(block, table);
+        System.arraycopy(block, pairOffset(table, index), block, pairOffset(table, index + 1),
+                (count - index) * PAIR_SIZE);
+        ByteBuffer buffer = ByteBuffer.wrap(block);
+        buffer.putInt(pairOffset(table, index), hash);
+        buffer.putInt(pairOffset(table, index) + 4, logicalBlock);
+        setCount(block, table, count + 1);
+    }
+
+    private static int getCount(byte[] block, int table) {
+        return ByteBuffer.wrap(block).getInt(table + 8);
+    }
+
+    private static void setCount(byte[] block, int table, int count) {
+        ByteBuffer.wrap(block).putInt(table + 8, count);
+    }
+
+    private static int getHash(byte[] block, int table, int index) {
+        return ByteBuffer.wrap(block).getInt(pairOffset(table, index));
+    }
+
+    private static int pairOffset(int table, int index) {
+        return table + HEADER_SIZE + index * PAIR_SIZE;
+    }
+
+    private int getCapacity(int table) {
+        return (fs.getSuperblock().getBlockSize() - table - HEADER_SIZE) / PAIR_SIZE;
+    }
+
+    private static boolean isDotEntry(String name) {
+        return name.equals(".") || name.equals("..");
+    }
+
+    private static boolean isDotEntry(byte[] name) {
+        return (name.length == 1 || name.length == 2) && name[0] == '.' && name[name.length - 1] == '.';
+    }
+}
@@ -0,0 +1,46 @@
+package filesystem;
+
+/**
+ * Rango de bloques físicos consecutivos: [start, start + length)
+ *
+ * @author dylan y Gadyr
+ */
+public class Extent {
+
+    private int start;
+    private int length;
+
+    public Extent(int start, int length) {
+        this.start = start;
+        this.length = length;
+    }
+
+    // Getters y setters
+    public int getStart() {
+        return start;
+    }
+
+    public void setStart(int start) {
+        this.start = start;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public void setLength(int length) {
+        this.length = length;
+    }
+
+    /**
+     * Primer bloque después del extent
+     */
+    public int getEnd() {
+        return start + length;
+    }
+
+    @Override
+    public String toString() {
+        return start + "-" + (getEnd() - 1);
+    }
+}
@@ -8,10 +8,12 @@ public class FSConstants {
     // Tamaños y configuración básica
     public static final int DEFAULT_BLOCK_SIZE = 4096; // 4 KB por defecto
     public static final int INODE_SIZE = 256; // Tamaño fijo de cada inode
-    public static final int DIR_ENTRY_SIZE = 256; // Tamaño de cada entrada de directorio
+    public static final int MAX_BLOCK_SIZE = 32768; // el largo de un registro de directorio usa 2 bytes
+    public static final int MAX_NAME_LENGTH = 255; // bytes UTF-8 por nombre
 
     // Magic number para el FS
     public static final int MAGIC_NUMBER = 0x5346594D; // "MYFS" en hex
+    public static final int FS_VERSION = 2; // 2: entradas de directorio de largo variable
 
     // Tipos de archivo
     public static final int TYPE_FREE = 0;
@@ -27,6 +29,24 @@ public class FSConstants {
     // Punteros en inode indexado
     public static final int DIRECT_POINTERS = 12;
 
+    // Extents (inicio, largo) por inode en asignación contigua
+    public static final int MAX_EXTENTS = 6;
+
+    // Journal de metadatos
+    public static final int JOURNAL_MAGIC = 0x4A524E4C; // "JRNL"
+    public static final int MIN_JOURNAL_BLOCKS = 128;
+    public static final int MAX_JOURNAL_BLOCKS = 4096;
+
+    // Índice hash de directorios grandes
+    public static final int DIR_INDEX_MAGIC = 0x48545245; // "HTRE"
+
+    // Índice de nombres (whereis): bytes reservados por inode
+    public static final int NAME_INDEX_BYTES_PER_INODE = 48;
+
+    // Bitmaps de más bloques que esto se leen por bloque al usarlos, si el
+    // volumen se desmontó bien
+    public static final int LAZY_BITMAP_BLOCKS = 64;
+
     // IDs especiales
     public static final int ROOT_INODE = 0;
     public static final int ROOT_UID = 0;
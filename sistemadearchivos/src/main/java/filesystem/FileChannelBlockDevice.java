@@ -0,0 +1,65 @@
+package filesystem;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Dispositivo de bloques respaldado por un archivo, usando E/S posicional de
+ * FileChannel (pread/pwrite) en lugar de seek + read/write.
+ *
+ * @author dylan y Gadyr
+ */
+public class FileChannelBlockDevice implements BlockDevice {
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+
+    public FileChannelBlockDevice(String path) throws IOException {
+        this.file = new RandomAccessFile(path, "rw");
+        this.channel = file.getChannel();
+    }
+
+    @Override
+    public int read(ByteBuffer dst, long position) throws IOException {
+        int total = 0;
+        while (dst.hasRemaining()) {
+            int n = channel.read(dst, position + total);
+            if (n < 0) {
+                break; // Fin del archivo
+            }
+            total += n;
+        }
+        return total;
+    }
+
+    @Override
+    public void write(ByteBuffer src, long position) throws IOException {
+        long offset = position;
+        while (src.hasRemaining()) {
+            offset += channel.write(src, offset);
+        }
+    }
+
+    @Override
+    public long size() throws IOException {
+        return channel.size();
+    }
+
+    @Override
+    public void setSize(long newSize) throws IOException {
+        file.setLength(newSize);
+    }
+
+    @Override
+    public void force() throws IOException {
+        channel.force(true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+        file.close();
+    }
+}
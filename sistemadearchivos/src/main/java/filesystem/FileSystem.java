@@ -1,14 +1,26 @@
 package filesystem;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  *
@@ -16,11 +28,36 @@ import java.util.Map;
  */
 public class FileSystem {
 
+    private static final int MAX_RUN_BLOCKS = 256; // bloques por escritura directa
+
     private String fsFilePath;
-    private RandomAccessFile fsFile;
+    private BlockDevice device;
+    private BlockCache cache; // null si el caché está desactivado
+    private InodeCache inodeCache; // null si el caché está desactivado
+    private DentryCache dentryCache; // null si el caché está desactivado
     private Superblock superblock;
     private Bitmap inodeBitmap;
     private Bitmap dataBlockBitmap;
+    private FreeExtentIndex freeExtents; // se construye al primer uso
+    private AllocationStrategy allocation; // según el superblock
+    private Journal journal; // null si el volumen no tiene journal
+    private final DirectoryIndex directoryIndex; // directorios de más de un bloque
+    private NameIndex nameIndex; // null si el volumen no tiene índice de nombres
+    private BlockGroup[] groups; // null si el volumen no tiene grupos de bloques
+    private final BitSet dirtyGroupBlocks = new BitSet(); // bloques de la tabla de grupos
+    private boolean superblockDirty; // contadores pendientes de escribir
+    private volatile boolean usersDirty; // tablas de usuarios y grupos cambiadas
+
+    // Concurrencia: locks por inode (directorios y contenido de archivos), un
+    // lock para la asignación (bitmaps, FAT, contadores del superblock), uno
+    // para la tabla de inodes y uno para las tablas de usuarios. Se toman en
+    // ese orden. Las operaciones comparten el lock de operación, y commit()
+    // lo toma exclusivo para cerrar la transacción entre operaciones.
+    private final InodeLocks inodeLocks;
+    private final Object allocationLock = new Object();
+    private final Object inodeTableLock = new Object();
+    private final Object usersLock = new Object();
+    private final ReentrantReadWriteLock operationLock = new ReentrantReadWriteLock();
 
     // Tablas en memoria
     private Map<Integer, User> userTable; // userID -> User
@@ -33,11 +70,13 @@ public class FileSystem {
 
     public FileSystem(String fsFilePath) {
         this.fsFilePath = fsFilePath;
-        this.userTable = new HashMap<>();
-        this.userByName = new HashMap<>();
-        this.groupTable = new HashMap<>();
-        this.groupByName = new HashMap<>();
-        this.openFileTable = new HashMap<>();
+        this.userTable = new ConcurrentHashMap<>();
+        this.userByName = new ConcurrentHashMap<>();
+        this.groupTable = new ConcurrentHashMap<>();
+        this.groupByName = new ConcurrentHashMap<>();
+        this.openFileTable = new ConcurrentHashMap<>();
+        this.inodeLocks = new InodeLocks();
+        this.directoryIndex = new DirectoryIndex(this);
     }
 
     /**
@@ -50,48 +89,135 @@ public class FileSystem {
     /**
      * Lee un bloque completo del disco
      */
-    private byte[] readBlock(int blockNumber) throws IOException {
+    byte[] readBlock(int blockNumber) throws IOException {
+        byte[] logged = journal != null ? journal.lookup(blockNumber) : null;
+        if (logged != null) {
+            return logged.clone();
+        }
+        if (cache != null) {
+            return cache.read(blockNumber).clone();
+        }
+
         int blockSize = superblock.getBlockSize();
         byte[] block = new byte[blockSize];
-        fsFile.seek(getBlockOffset(blockNumber));
-        fsFile.readFully(block);
+        readFully(block, getBlockOffset(blockNumber));
 
         return block;
     }
 
     /**
-     * Escribe un bloque completo al disco
+     * Devuelve una vista de solo lectura de un bloque. Con el caché activo es
+     * el bloque cacheado; con el disco mapeado en memoria es un slice del
+     * mapeo. En ningún caso se copia nada.
      */
-    private void writeBlock(int blockNumber, byte[] data) throws IOException {
+    ByteBuffer readBlockView(int blockNumber) throws IOException {
+        byte[] logged = journal != null ? journal.lookup(blockNumber) : null;
+        if (logged != null) {
+            return ByteBuffer.wrap(logged).asReadOnlyBuffer();
+        }
+        if (cache != null) {
+            return ByteBuffer.wrap(cache.read(blockNumber)).asReadOnlyBuffer();
+        }
+        return device.view(getBlockOffset(blockNumber), superblock.getBlockSize());
+    }
+
+    /**
+     * Escribe un bloque completo al disco (o al caché, que lo escribirá más
+     * tarde). Con journal, el bloque pasa a la transacción en curso y llega a
+     * su lugar en el checkpoint. El arreglo no debe reutilizarse después de
+     * la llamada.
+     */
+    void writeBlock(int blockNumber, byte[] data) throws IOException {
         int blockSize = superblock.getBlockSize();
         if (data.length != blockSize) {
             throw new IllegalArgumentException("El bloque debe tener " + blockSize + " bytes");
         }
-        fsFile.seek(getBlockOffset(blockNumber));
-        fsFile.write(data);
+        if (journal != null) {
+            // Una transacción muy grande se cierra antes de tiempo solo si no
+            // hay operaciones en curso; si no, se mezclarían sus cambios a
+            // medias. Tampoco mientras commit() o sync() vuelcan el estado
+            // (ya tienen el lock de escritura): ese volcado va entero en una
+            // transacción. Dentro de una operación crece hasta lo que entra
+            // en el journal y, si no alcanza, la operación falla.
+            if (journal.isRunningFull() && operationLock.getReadHoldCount() == 0
+                    && !operationLock.isWriteLockedByCurrentThread()
+                    && operationLock.writeLock().tryLock()) {
+                try {
+                    journal.commit();
+                } finally {
+                    operationLock.writeLock().unlock();
+                }
+            } else if (!journal.hasRoomFor(blockNumber)) {
+                throw new IOException("La operación modifica demasiados bloques de metadatos para el journal");
+            }
+            journal.record(blockNumber, data);
+            if (cache != null) {
+                cache.update(blockNumber, data);
+            }
+            return;
+        }
+        if (cache != null) {
+            cache.write(blockNumber, data);
+            return;
+        }
+        device.write(ByteBuffer.wrap(data), getBlockOffset(blockNumber));
+    }
+
+    /**
+     * Lee exactamente data.length bytes desde la posición indicada
+     */
+    private void readFully(byte[] data, long position) throws IOException {
+        int read = device.read(ByteBuffer.wrap(data), position);
+        if (read < data.length) {
+            throw new EOFException("Lectura fuera del final del disco en la posición " + position);
+        }
     }
 
     /**
-     * Lee un inode de la tabla
+     * Lee un inode. Con el caché de inodes activo, todas las lecturas de un
+     * mismo inode devuelven la misma instancia.
      */
     public Inode readInode(int inodeNumber) throws IOException {
         if (inodeNumber < 0 || inodeNumber >= superblock.getTotalInodes()) {
             throw new IllegalArgumentException("Número de inode inválido: " + inodeNumber);
         }
 
-        // offset
-        long inodeTableOffset = getBlockOffset(superblock.getInodeTableStart());
-        long inodeOffset = inodeTableOffset + (inodeNumber * FSConstants.INODE_SIZE);
+        if (inodeCache == null) {
+            return loadInode(inodeNumber);
+        }
+
+        Inode inode = inodeCache.get(inodeNumber);
+        if (inode == null) {
+            inode = inodeCache.put(loadInode(inodeNumber));
+        }
+        return inode;
+    }
+
+    /**
+     * Lee un inode de la tabla en disco
+     */
+    private Inode loadInode(int inodeNumber) throws IOException {
+        Inode inode;
+        if (cache != null || journal != null) {
+            ByteBuffer block = readBlockView(getInodeBlock(inodeNumber));
+            block.position(getInodeOffsetInBlock(inodeNumber));
+            inode = Inode.fromBuffer(block);
+        } else {
+            // offset
+            long inodeTableOffset = getBlockOffset(superblock.getInodeTableStart());
+            long inodeOffset = inodeTableOffset + ((long) inodeNumber * FSConstants.INODE_SIZE);
 
-        byte[] inodeData = new byte[FSConstants.INODE_SIZE];
-        fsFile.seek(inodeOffset);
-        fsFile.readFully(inodeData);
+            inode = Inode.fromBuffer(device.view(inodeOffset, FSConstants.INODE_SIZE));
+        }
 
-        return Inode.fromBytes(inodeData);
+        // Un inode que nunca se escribió tiene ceros, también en su número
+        inode.setInodeNumber(inodeNumber);
+        return inode;
     }
 
     /**
-     * Escribe un inode en la tabla
+     * Escribe un inode. Con el caché de inodes activo solo se marca como sucio;
+     * se escribe al disco en lote con flushInodes().
      */
     public void writeInode(Inode inode) throws IOException {
         int inodeNumber = inode.getInodeNumber();
@@ -99,28 +225,189 @@ public class FileSystem {
             throw new IllegalArgumentException("Número de inode inválido: " + inodeNumber);
         }
 
-        long inodeTableOffset = getBlockOffset(superblock.getInodeTableStart());
-        long inodeOffset = inodeTableOffset + (inodeNumber * FSConstants.INODE_SIZE);
+        if (inodeCache == null) {
+            storeInode(inode);
+            return;
+        }
 
-        fsFile.seek(inodeOffset);
-        fsFile.write(inode.toBytes());
+        inodeCache.putDirty(inode);
+        if (inodeCache.dirtyCount() >= inodeCache.getCapacity() / 2) {
+            flushInodes();
+        }
     }
 
     /**
-     * Asigna un inode libre
+     * Escribe los inodes sucios del caché, agrupados por bloque de la tabla:
+     * cada bloque se lee y se escribe una sola vez aunque contenga varios
+     * inodes modificados.
+     */
+    private void flushInodes() throws IOException {
+        if (inodeCache == null || inodeCache.dirtyCount() == 0) {
+            return;
+        }
+
+        synchronized (inodeTableLock) {
+            // Los inodes sucios vienen ordenados, así que los de un mismo
+            // bloque quedan contiguos
+            List<Inode> dirtyInodes = inodeCache.beginFlush();
+            try {
+                int i = 0;
+                while (i < dirtyInodes.size()) {
+                    int blockNumber = getInodeBlock(dirtyInodes.get(i).getInodeNumber());
+                    byte[] block = readBlock(blockNumber);
+
+                    while (i < dirtyInodes.size()
+                            && getInodeBlock(dirtyInodes.get(i).getInodeNumber()) == blockNumber) {
+                        Inode inode = dirtyInodes.get(i);
+                        System.arraycopy(inode.toBytes(), 0, block,
+                                getInodeOffsetInBlock(inode.getInodeNumber()), FSConstants.INODE_SIZE);
+                        i++;
+                    }
+                    writeBlock(blockNumber, block);
+                }
+            } finally {
+                inodeCache.endFlush();
+            }
+        }
+    }
+
+    /**
+     * Escribe un inode en la tabla en disco
+     */
+    private void storeInode(Inode inode) throws IOException {
+        synchronized (inodeTableLock) {
+            int inodeNumber = inode.getInodeNumber();
+            if (cache != null || journal != null) {
+                // Leer-modificar-escribir el bloque de la tabla en el caché o el
+                // journal
+                int blockNumber = getInodeBlock(inodeNumber);
+                byte[] block = readBlock(blockNumber);
+                System.arraycopy(inode.toBytes(), 0, block,
+                        getInodeOffsetInBlock(inodeNumber), FSConstants.INODE_SIZE);
+                writeBlock(blockNumber, block);
+                return;
+            }
+
+            long inodeTableOffset = getBlockOffset(superblock.getInodeTableStart());
+            long inodeOffset = inodeTableOffset + ((long) inodeNumber * FSConstants.INODE_SIZE);
+
+            device.write(ByteBuffer.wrap(inode.toBytes()), inodeOffset);
+        }
+    }
+
+    /**
+     * Bloque de la tabla de inodes que contiene al inode indicado
+     */
+    private int getInodeBlock(int inodeNumber) {
+        long byteOffset = (long) inodeNumber * FSConstants.INODE_SIZE;
+        return superblock.getInodeTableStart() + (int) (byteOffset / superblock.getBlockSize());
+    }
+
+    /**
+     * Posición del inode dentro de su bloque de la tabla
+     */
+    private int getInodeOffsetInBlock(int inodeNumber) {
+        long byteOffset = (long) inodeNumber * FSConstants.INODE_SIZE;
+        return (int) (byteOffset % superblock.getBlockSize());
+    }
+
+    /**
+     * Asigna un inode libre, sin preferencia de lugar
      */
     public int allocateInode() throws IOException {
-        int inodeNumber = inodeBitmap.findFirstFree();
-        if (inodeNumber == -1) {
-            throw new IOException("No hay inodes disponibles");
+        return allocateInode(FSConstants.ROOT_INODE, false);
+    }
+
+    /**
+     * Asigna un inode libre para una entrada del directorio parentInode. Con
+     * grupos de bloques, un archivo va al grupo de su directorio; un
+     * directorio también, salvo que cuelgue de la raíz o que ese grupo tenga
+     * menos lugar que el promedio: ahí se reparte hacia el grupo con menos
+     * directorios (la política de Orlov de ext2/ext3, simplificada).
+     */
+    public int allocateInode(int parentInode, boolean directory) throws IOException {
+        synchronized (allocationLock) {
+            int inodeNumber = -1;
+            if (groups != null) {
+                inodeNumber = findInodeFrom(chooseInodeGroup(parentInode, directory));
+            }
+            if (inodeNumber == -1) {
+                inodeNumber = inodeBitmap.findNextFree();
+            }
+            if (inodeNumber == -1) {
+                throw new IOException("No hay inodes disponibles");
+            }
+
+            inodeBitmap.allocate(inodeNumber);
+            superblock.setFreeInodes(superblock.getFreeInodes() - 1);
+            superblockDirty = true;
+
+            if (groups != null) {
+                int g = groupOfInode(inodeNumber);
+                groups[g].setFreeInodes(groups[g].getFreeInodes() - 1);
+                if (directory) {
+                    groups[g].setDirectories(groups[g].getDirectories() + 1);
+                }
+                markGroupDirty(g);
+            }
+
+            return inodeNumber;
         }
+    }
 
-        inodeBitmap.allocate(inodeNumber);
-        superblock.setFreeInodes(superblock.getFreeInodes() - 1);
-        writeSuperblock();
-        writeInodeBitmap();
+    /**
+     * Grupo donde conviene buscar un inode nuevo
+     */
+    private int chooseInodeGroup(int parentInode, boolean directory) {
+        int parentGroup = parentInode >= 0 && parentInode < superblock.getTotalInodes()
+                ? groupOfInode(parentInode) : 0;
+        if (!directory) {
+            return parentGroup;
+        }
+
+        int averageFreeInodes = superblock.getFreeInodes() / groups.length;
+        int averageFreeBlocks = superblock.getFreeBlocks() / groups.length;
+        BlockGroup group = groups[parentGroup];
+        if (parentInode != FSConstants.ROOT_INODE && group.getFreeInodes() >= averageFreeInodes
+                && group.getFreeBlocks() >= averageFreeBlocks) {
+            return parentGroup;
+        }
+
+        // Repartir: entre los grupos con inodes libres sobre el promedio, el
+        // de menos directorios y, a igualdad, el de más bloques libres
+        int best = parentGroup;
+        for (int g = 0; g < groups.length; g++) {
+            BlockGroup candidate = groups[g];
+            if (candidate.getFreeInodes() == 0 || candidate.getFreeInodes() < averageFreeInodes) {
+                continue;
+            }
+            BlockGroup current = groups[best];
+            if (current.getFreeInodes() < averageFreeInodes || current.getFreeInodes() == 0
+                    || candidate.getDirectories() < current.getDirectories()
+                    || (candidate.getDirectories() == current.getDirectories()
+                            && candidate.getFreeBlocks() > current.getFreeBlocks())) {
+                best = g;
+            }
+        }
+        return best;
+    }
 
-        return inodeNumber;
+    /**
+     * Primer inode libre empezando por el grupo first y siguiendo por los
+     * demás en orden, o -1
+     */
+    private int findInodeFrom(int first) {
+        for (int i = 0; i < groups.length; i++) {
+            BlockGroup group = groups[(first + i) % groups.length];
+            if (group.getFreeInodes() == 0) {
+                continue;
+            }
+            int inodeNumber = inodeBitmap.findFreeFrom(group.getFirstInode());
+            if (inodeNumber != -1 && inodeNumber < group.getEndInode()) {
+                return inodeNumber;
+            }
+        }
+        return -1;
     }
 
     /**
@@ -130,97 +417,429 @@ public class FileSystem {
         if (inodeNumber < 0 || inodeNumber >= superblock.getTotalInodes()) {
             return;
         }
+        // El tipo se mira antes de tomar el lock de asignación
+        boolean directory = groups != null && readInode(inodeNumber).isDirectory();
 
-        inodeBitmap.free(inodeNumber);
-        superblock.setFreeInodes(superblock.getFreeInodes() + 1);
-        writeSuperblock();
-        writeInodeBitmap();
+        synchronized (allocationLock) {
+            if (!inodeBitmap.isAllocated(inodeNumber)) {
+                return;
+            }
+
+            inodeBitmap.free(inodeNumber);
+            superblock.setFreeInodes(superblock.getFreeInodes() + 1);
+            superblockDirty = true;
+
+            if (groups != null) {
+                int g = groupOfInode(inodeNumber);
+                groups[g].setFreeInodes(groups[g].getFreeInodes() + 1);
+                if (directory && groups[g].getDirectories() > 0) {
+                    groups[g].setDirectories(groups[g].getDirectories() - 1);
+                }
+                markGroupDirty(g);
+            }
+        }
     }
 
     /**
-     * Asigna un bloque de datos libre
+     * Asigna un bloque de datos libre, sin preferencia de lugar
      */
     public int allocateDataBlock() throws IOException {
-        int blockNumber = dataBlockBitmap.findFirstFree();
-        if (blockNumber == -1) {
-            throw new IOException("No hay bloques disponibles");
+        return allocateDataBlock(-1);
+    }
+
+    /**
+     * Asigna un bloque de datos libre lo más cerca posible de goal (bloque
+     * absoluto, o -1 sin preferencia): desde goal hasta el final de su grupo,
+     * después el resto del grupo y después los grupos siguientes
+     */
+    public int allocateDataBlock(int goal) throws IOException {
+        synchronized (allocationLock) {
+            int blockNumber = -1;
+            if (groups != null && goal >= 0) {
+                blockNumber = findBlockNear(goal - superblock.getDataBlocksStart());
+            }
+            if (blockNumber == -1) {
+                blockNumber = dataBlockBitmap.findNextFree();
+            }
+            if (blockNumber == -1) {
+                throw new IOException("No hay bloques disponibles");
+            }
+
+            dataBlockBitmap.allocate(blockNumber);
+            if (freeExtents != null) {
+                freeExtents.allocate(blockNumber, 1);
+            }
+            superblock.setFreeBlocks(superblock.getFreeBlocks() - 1);
+            superblockDirty = true;
+            adjustGroupBlocks(blockNumber, -1);
+
+            return superblock.getDataBlocksStart() + blockNumber;
         }
+    }
 
-        dataBlockBitmap.allocate(blockNumber);
-        superblock.setFreeBlocks(superblock.getFreeBlocks() - 1);
-        writeSuperblock();
-        writeDataBlockBitmap();
+    /**
+     * Primer bloque libre (relativo) cerca de relativeGoal, o -1
+     */
+    private int findBlockNear(int relativeGoal) {
+        int size = dataBlockBitmap.getSize();
+        if (relativeGoal < 0 || relativeGoal >= size) {
+            return -1;
+        }
+        int first = relativeGoal / superblock.getBlocksPerGroup();
+        for (int i = 0; i < groups.length; i++) {
+            BlockGroup group = groups[(first + i) % groups.length];
+            if (group.getFreeBlocks() == 0) {
+                continue;
+            }
+            int from = i == 0 ? relativeGoal : group.getFirstBlock();
+            int blockNumber = dataBlockBitmap.findFreeFrom(from);
+            if (blockNumber != -1 && blockNumber < group.getEndBlock()) {
+                return blockNumber;
+            }
+            if (i == 0 && from > group.getFirstBlock()) {
+                blockNumber = dataBlockBitmap.findFreeFrom(group.getFirstBlock());
+                if (blockNumber != -1 && blockNumber < group.getEndBlock()) {
+                    return blockNumber;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Bloque absoluto donde conviene empezar los datos de un inode: el
+     * comienzo de la zona de datos de su grupo, o -1 si no hay grupos
+     */
+    public int getDataGoal(Inode inode) {
+        if (groups == null) {
+            return -1;
+        }
+        return superblock.getDataBlocksStart() + groups[groupOfInode(inode.getInodeNumber())].getFirstBlock();
+    }
+
+    private int groupOfInode(int inodeNumber) {
+        return Math.min(inodeNumber / superblock.getInodesPerGroup(), groups.length - 1);
+    }
 
-        return superblock.getDataBlocksStart() + blockNumber;
+    /**
+     * Suma delta a los bloques libres del grupo de un bloque (relativo)
+     */
+    private void adjustGroupBlocks(int relativeBlock, int delta) {
+        if (groups != null) {
+            int g = Math.min(relativeBlock / superblock.getBlocksPerGroup(), groups.length - 1);
+            groups[g].setFreeBlocks(groups[g].getFreeBlocks() + delta);
+            markGroupDirty(g);
+        }
+    }
+
+    private void markGroupDirty(int group) {
+        dirtyGroupBlocks.set(group * BlockGroup.DESCRIPTOR_SIZE / superblock.getBlockSize());
+    }
+
+    /**
+     * Asigna count bloques de datos en la menor cantidad posible de rangos
+     * contiguos: se usa el rango libre más chico donde quepa todo (best fit)
+     * y, si ninguno alcanza, se toma el más grande y se repite con el resto.
+     *
+     * @param goal       bloque absoluto donde se prefiere empezar (el final del
+     *                   archivo al agregar), o -1
+     * @param maxExtents cantidad máxima de extents, sin contar el que empieza
+     *                   en goal
+     * @return los extents asignados, con números de bloque absolutos
+     */
+    public List<Extent> allocateExtents(int count, int goal, int maxExtents) throws IOException {
+        return allocateExtents(count, goal, goal, maxExtents);
+    }
+
+    /**
+     * Igual que allocateExtents(count, goal, maxExtents), pero con grupos de
+     * bloques lo que no entra en goal va primero al primer rango libre del
+     * grupo de near (bloque absoluto, o -1) que alcance para todo
+     */
+    public List<Extent> allocateExtents(int count, int goal, int near, int maxExtents) throws IOException {
+        synchronized (allocationLock) {
+            if (count > dataBlockBitmap.countFree()) {
+                throw new IOException("No hay bloques disponibles");
+            }
+
+            FreeExtentIndex index = getFreeExtentIndex();
+            List<Extent> extents = new ArrayList<>();
+            int remaining = count;
+
+            if (goal >= 0) {
+                int relativeGoal = goal - superblock.getDataBlocksStart();
+                int available = index.getLengthAt(relativeGoal);
+                if (available > 0) {
+                    int length = Math.min(available, remaining);
+                    extents.add(allocateRange(index, relativeGoal, length));
+                    remaining -= length;
+                    maxExtents++;
+                }
+            }
+
+            if (groups != null && near >= 0 && remaining > 0 && extents.size() < maxExtents) {
+                int relativeNear = Math.min(near - superblock.getDataBlocksStart(), dataBlockBitmap.getSize() - 1);
+                if (relativeNear >= 0) {
+                    int g = Math.min(relativeNear / superblock.getBlocksPerGroup(), groups.length - 1);
+                    int start = index.findFitIn(relativeNear, groups[g].getEndBlock(), remaining);
+                    if (start != -1) {
+                        extents.add(allocateRange(index, start, remaining));
+                        remaining = 0;
+                    }
+                }
+            }
+
+            while (remaining > 0) {
+                if (extents.size() == maxExtents) {
+                    for (Extent extent : extents) {
+                        freeExtent(extent);
+                    }
+                    throw new IOException("Espacio libre demasiado fragmentado para " + count
+                            + " bloques en " + maxExtents + " extents");
+                }
+
+                int start = index.findBestFit(remaining);
+                int length = remaining;
+                if (start == -1) {
+                    Extent largest = index.getLargest();
+                    start = largest.getStart();
+                    length = largest.getLength();
+                }
+
+                extents.add(allocateRange(index, start, length));
+                remaining -= length;
+            }
+
+            return extents;
+        }
+    }
+
+    /**
+     * Marca como ocupado un rango libre (relativo a la zona de datos)
+     */
+    private Extent allocateRange(FreeExtentIndex index, int start, int length) {
+        for (int i = start; i < start + length; i++) {
+            dataBlockBitmap.allocate(i);
+            adjustGroupBlocks(i, -1);
+        }
+        index.allocate(start, length);
+        superblock.setFreeBlocks(superblock.getFreeBlocks() - length);
+        superblockDirty = true;
+        return new Extent(superblock.getDataBlocksStart() + start, length);
+    }
+
+    /**
+     * Libera los bloques de un extent (números absolutos)
+     */
+    public void freeExtent(Extent extent) {
+        synchronized (allocationLock) {
+            int relativeStart = extent.getStart() - superblock.getDataBlocksStart();
+            for (int i = relativeStart; i < relativeStart + extent.getLength(); i++) {
+                dataBlockBitmap.free(i);
+                adjustGroupBlocks(i, 1);
+            }
+            if (freeExtents != null) {
+                freeExtents.free(relativeStart, extent.getLength());
+            }
+            superblock.setFreeBlocks(superblock.getFreeBlocks() + extent.getLength());
+            superblockDirty = true;
+        }
+    }
+
+    /**
+     * Índice de rangos libres del data bitmap. Se construye la primera vez que
+     * se necesita (solo lo usa la asignación contigua)
+     */
+    private FreeExtentIndex getFreeExtentIndex() {
+        if (freeExtents == null) {
+            freeExtents = FreeExtentIndex.fromBitmap(dataBlockBitmap);
+        }
+        return freeExtents;
     }
 
     /**
      * Libera un bloque de datos
      */
     public void freeDataBlock(int absoluteBlockNumber) throws IOException {
-        int relativeBlock = absoluteBlockNumber - superblock.getDataBlocksStart();
+        synchronized (allocationLock) {
+            int relativeBlock = absoluteBlockNumber - superblock.getDataBlocksStart();
 
-        if (relativeBlock < 0 || relativeBlock >= dataBlockBitmap.getSize()) {
-            return;
-        }
+            if (relativeBlock < 0 || relativeBlock >= dataBlockBitmap.getSize()
+                    || !dataBlockBitmap.isAllocated(relativeBlock)) {
+                return;
+            }
 
-        dataBlockBitmap.free(relativeBlock);
-        superblock.setFreeBlocks(superblock.getFreeBlocks() + 1);
-        writeSuperblock();
-        writeDataBlockBitmap();
+            dataBlockBitmap.free(relativeBlock);
+            if (freeExtents != null) {
+                freeExtents.free(relativeBlock, 1);
+            }
+            adjustGroupBlocks(relativeBlock, 1);
+            superblock.setFreeBlocks(superblock.getFreeBlocks() + 1);
+            superblockDirty = true;
+        }
     }
 
     /**
-     * Libera todos los bloques de datos asociados a un inode
+     * Libera todos los bloques de datos asociados a un inode, que queda vacío
      */
     public void releaseInodeBlocks(Inode inode) throws IOException {
-        // 1. Liberar bloques directos
-        for (int i = 0; i < FSConstants.DIRECT_POINTERS; i++) {
-            int blockNum = inode.getDirectBlocks()[i];
-            if (blockNum != -1) {
-                freeDataBlock(blockNum);
-                inode.setDirectBlock(i, -1);
+        Lock lock = inodeLocks.writeLock(inode.getInodeNumber());
+        lock.lock();
+        try {
+            synchronized (allocationLock) {
+                allocation.releaseBlocks(inode);
             }
+            inode.setFileSize(0);
+            writeInode(inode);
+            flushAllocationState();
+        } finally {
+            lock.unlock();
         }
+    }
 
-        // 2. Liberar indirección simple
-        if (inode.getSingleIndirect() != -1) {
-            freeIndirectBlock(inode.getSingleIndirect(), 0); // 0 indicates leaf pointers
-            inode.setSingleIndirect(-1);
+    /**
+     * Asigna count bloques al inode desde el bloque lógico first. La
+     * estrategia toca estado compartido (bitmaps, FAT), así que se llama con
+     * el lock de asignación.
+     */
+    void allocateBlocks(Inode inode, int first, int count) throws IOException {
+        synchronized (allocationLock) {
+            allocation.allocateBlocks(inode, first, count);
         }
+    }
 
-        writeInode(inode);
+    /**
+     * Libera los bloques del inode después de los primeros keep
+     */
+    void truncateBlocks(Inode inode, int keep) throws IOException {
+        synchronized (allocationLock) {
+            allocation.truncateBlocks(inode, keep);
+        }
+    }
+
+    /**
+     * Escribe el superblock al disco
+     */
+    private void writeSuperblock() throws IOException {
+        writeBlock(0, superblock.toBytes());
+        superblockDirty = false;
+    }
+
+    /**
+     * Escribe el estado de asignación pendiente: solo los bloques de los
+     * bitmaps que cambiaron y el superblock si sus contadores cambiaron.
+     * Se llama una vez por operación o en sync(), no en cada asignación.
+     */
+    private void flushAllocationState() throws IOException {
+        synchronized (allocationLock) {
+            int blockSize = superblock.getBlockSize();
+
+            if (allocation != null) {
+                allocation.flush();
+            }
+
+            for (int i : inodeBitmap.getDirtyBlocks()) {
+                writeBlock(superblock.getInodeBitmapStart() + i, inodeBitmap.blockToBytes(i, blockSize));
+            }
+            inodeBitmap.clearDirtyBlocks();
+
+            for (int i : dataBlockBitmap.getDirtyBlocks()) {
+                writeBlock(superblock.getDataBitmapStart() + i, dataBlockBitmap.blockToBytes(i, blockSize));
+            }
+            dataBlockBitmap.clearDirtyBlocks();
+
+            if (groups != null) {
+                for (int b = dirtyGroupBlocks.nextSetBit(0); b >= 0; b = dirtyGroupBlocks.nextSetBit(b + 1)) {
+                    writeGroupTableBlock(b);
+                }
+                dirtyGroupBlocks.clear();
+            }
+
+            if (superblockDirty) {
+                writeSuperblock();
+            }
+        }
     }
 
     /**
-     * Libera recursivamente bloques indirectos
+     * Arma los descriptores de los grupos contando los bitmaps (al formatear)
      */
-    private void freeIndirectBlock(int blockNum, int level) throws IOException {
-        // Leer bloque de punteros
-        byte[] blockData = readBlock(blockNum);
-        ByteBuffer buffer = ByteBuffer.wrap(blockData);
+    private void buildGroups() {
+        int blocksPerGroup = superblock.getBlocksPerGroup();
+        int inodesPerGroup = superblock.getInodesPerGroup();
+        int dataBlocks = dataBlockBitmap.getSize();
+        int totalInodes = superblock.getTotalInodes();
+
+        groups = new BlockGroup[superblock.getGroupCount()];
+        for (int g = 0; g < groups.length; g++) {
+            int firstBlock = g * blocksPerGroup;
+            int blockCount = Math.min(blocksPerGroup, dataBlocks - firstBlock);
+            int firstInode = Math.min(g * inodesPerGroup, totalInodes);
+            int inodeCount = Math.min(inodesPerGroup, totalInodes - firstInode);
+
+            BlockGroup group = new BlockGroup(firstBlock, blockCount, firstInode, inodeCount);
+            group.setFreeBlocks(blockCount - dataBlockBitmap.countAllocated(firstBlock, firstBlock + blockCount));
+            group.setFreeInodes(inodeCount - inodeBitmap.countAllocated(firstInode, firstInode + inodeCount));
+            groups[g] = group;
+        }
+    }
+
+    /**
+     * Lee la tabla de grupos (al montar)
+     */
+    private void loadGroups() throws IOException {
+        // Los descriptores quedan seguidos también entre bloques, porque el
+        // tamaño de bloque es múltiplo del de un descriptor
+        ByteBuffer table = ByteBuffer.wrap(readBlocks(superblock.getGroupTableStart(),
+                superblock.getGroupTableBlocks()));
+        groups = new BlockGroup[superblock.getGroupCount()];
+        for (int g = 0; g < groups.length; g++) {
+            groups[g] = BlockGroup.read(table, g * BlockGroup.DESCRIPTOR_SIZE);
+        }
+        dirtyGroupBlocks.clear();
+    }
 
-        int pointersPerBlock = superblock.getBlockSize() / 4;
-        for (int i = 0; i < pointersPerBlock; i++) {
-            int ptr = buffer.getInt();
-            if (ptr != -1 && ptr != 0) { // 0 might be default empty in some contexts, but -1 is standard
-                if (level == 0) {
-                    freeDataBlock(ptr);
-                } else {
-                    freeIndirectBlock(ptr, level - 1);
+    /**
+     * Recalcula los contadores de libres del superblock y de los grupos desde
+     * los bitmaps, que tienen que estar enteros en memoria (al montar un
+     * volumen que no se desmontó bien)
+     */
+    private void recountFreeSpace() {
+        synchronized (allocationLock) {
+            superblock.setFreeInodes(inodeBitmap.countFree());
+            superblock.setFreeBlocks(dataBlockBitmap.countFree());
+            superblockDirty = true;
+
+            if (groups != null) {
+                // Los directorios por grupo no salen de los bitmaps; se
+                // conservan los guardados
+                BlockGroup[] saved = groups;
+                buildGroups();
+                for (int g = 0; g < groups.length; g++) {
+                    groups[g].setDirectories(saved[g].getDirectories());
                 }
+                dirtyGroupBlocks.set(0, superblock.getGroupTableBlocks());
             }
         }
+    }
 
-        // Liberar el bloque de punteros actual
-        freeDataBlock(blockNum);
+    private void writeGroupTableBlock(int b) throws IOException {
+        int perBlock = superblock.getBlockSize() / BlockGroup.DESCRIPTOR_SIZE;
+        byte[] data = new byte[superblock.getBlockSize()];
+        ByteBuffer block = ByteBuffer.wrap(data);
+        for (int i = 0; i < perBlock && b * perBlock + i < groups.length; i++) {
+            groups[b * perBlock + i].write(block, i * BlockGroup.DESCRIPTOR_SIZE);
+        }
+        writeBlock(superblock.getGroupTableStart() + b, data);
     }
 
     /**
-     * Escribe el superblock al disco
+     * Descriptores de los grupos de bloques (vacío si el volumen no tiene)
      */
-    private void writeSuperblock() throws IOException {
-        writeBlock(0, superblock.toBytes());
+    public List<BlockGroup> getBlockGroups() {
+        synchronized (allocationLock) {
+            return groups == null ? List.of() : List.of(groups);
+        }
     }
 
     /**
@@ -262,75 +881,488 @@ public class FileSystem {
     }
 
     /**
-     * Lee las entradas de un directorio
+     * Lee las entradas ocupadas de un directorio, en el orden en que están en
+     * sus bloques. En un directorio indexado se saltean los nodos del índice.
      */
     public List<DirectoryEntry> readDirectoryEntries(Inode dirInode) throws IOException {
-        if (!dirInode.isDirectory()) {
-            throw new IllegalArgumentException("El inode no es un directorio");
+        Lock lock = inodeLocks.readLock(dirInode.getInodeNumber());
+        lock.lock();
+        try {
+            checkDirectory(dirInode);
+
+            List<DirectoryEntry> entries = new ArrayList<>();
+            for (int blockNumber : getDirectoryBlocks(dirInode)) {
+                if (blockNumber == -1) {
+                    continue;
+                }
+                ByteBuffer blockData = readBlockView(blockNumber);
+                if (!DirectoryIndex.isNode(blockData)) {
+                    DirectoryEntry.readAll(blockData, entries);
+                }
+            }
+
+            return entries;
+        } finally {
+            lock.unlock();
         }
+    }
 
-        List<DirectoryEntry> entries = new ArrayList<>();
+    /**
+     * Recorre en preorden el subárbol que empieza en root (incluido), cuya
+     * ruta es path. El Stream es secuencial; con parallel() los directorios
+     * se reparten entre los hilos y el orden se mantiene si se recolecta en
+     * orden. Los errores de E/S salen como UncheckedIOException.
+     */
+    public Stream<TreeEntry> walk(Inode root, String path) {
+        return StreamSupport.stream(new TreeWalker(this, root, path), false);
+    }
 
-        // SOLO LEE DEL PRIMER BLOQUE DIRECTO
-        int blockNumber = dirInode.getDirectBlocks()[0];
-        if (blockNumber == -1) {
-            return entries; // Directorio vacío
+    /**
+     * Busca en el índice de nombres todas las entradas con ese nombre, sin
+     * recorrer el árbol. Cada resultado se confirma contra su directorio y
+     * su ruta se arma subiendo por "..". Los resultados van ordenados por
+     * ruta.
+     *
+     * @return las entradas, o null si el volumen no tiene un índice válido
+     */
+    public List<TreeEntry> findByName(String name) throws IOException {
+        if (nameIndex == null || !superblock.isNameIndexValid()) {
+            return null;
         }
 
-        byte[] blockData = readBlock(blockNumber);
-        int blockSize = superblock.getBlockSize();
-        int entriesPerBlock = blockSize / FSConstants.DIR_ENTRY_SIZE;
+        Map<Integer, String> paths = new HashMap<>();
+        paths.put(FSConstants.ROOT_INODE, "/");
 
-        for (int i = 0; i < entriesPerBlock; i++) {
-            int offset = i * FSConstants.DIR_ENTRY_SIZE;
-            byte[] entryData = new byte[FSConstants.DIR_ENTRY_SIZE];
-            // Verificar si hay suficientes bytes restantes en el bloque
-            if (offset + FSConstants.DIR_ENTRY_SIZE > blockSize) {
-                break;
+        List<TreeEntry> found = new ArrayList<>();
+        for (int[] location : nameIndex.lookup(name)) {
+            Inode dirInode = readInode(location[0]);
+            if (!dirInode.isDirectory() || lookupInodeNumber(dirInode, name) != location[1]) {
+                continue;
+            }
+            String dirPath = pathOf(location[0], paths);
+            if (dirPath == null) {
+                continue;
             }
-            System.arraycopy(blockData, offset, entryData, 0, FSConstants.DIR_ENTRY_SIZE);
+            String path = dirPath.equals("/") ? "/" + name : dirPath + "/" + name;
+            int depth = (int) path.chars().filter(c -> c == '/').count();
+            found.add(new TreeEntry(path, name, depth, readInode(location[1])));
+        }
+        found.sort(Comparator.comparing(TreeEntry::getPath));
+        return found;
+    }
 
-            DirectoryEntry entry = DirectoryEntry.fromBytes(entryData);
-            entries.add(entry);
+    /**
+     * Ruta de un directorio, subiendo por ".." y buscando su nombre en cada
+     * padre. Las rutas ya armadas quedan en paths.
+     *
+     * @return la ruta, o null si el directorio no está colgado de la raíz
+     */
+    private String pathOf(int dirInodeNumber, Map<Integer, String> paths) throws IOException {
+        Deque<Integer> chain = new ArrayDeque<>();
+        Deque<String> names = new ArrayDeque<>();
+        int current = dirInodeNumber;
+        while (!paths.containsKey(current)) {
+            if (chain.size() > superblock.getTotalInodes()) {
+                return null;
+            }
+            int parent = lookupInodeNumber(readInode(current), "..");
+            if (parent < 0) {
+                return null;
+            }
+            String name = null;
+            for (DirectoryEntry entry : readDirectoryEntries(readInode(parent))) {
+                if (!entry.isFree() && entry.getInodeNumber() == current
+                        && !NameIndex.isDotName(entry.getName())) {
+                    name = entry.getName();
+                    break;
+                }
+            }
+            if (name == null) {
+                return null;
+            }
+            chain.push(current);
+            names.push(name);
+            current = parent;
         }
 
-        return entries;
+        String path = paths.get(current);
+        while (!chain.isEmpty()) {
+            path = (path.equals("/") ? "/" : path + "/") + names.pop();
+            paths.put(chain.pop(), path);
+        }
+        return path;
     }
 
     /**
-     * Escribe las entradas de un directorio
+     * Vuelve a armar el índice de nombres recorriendo todo el árbol
+     *
+     * @return cantidad de nombres registrados
+     */
+    public int rebuildNameIndex() throws IOException {
+        if (nameIndex == null) {
+            throw new IOException("El volumen no tiene índice de nombres; vuelva a formatear el disco");
+        }
+        return nameIndex.rebuild();
+    }
+
+    /**
+     * Marca el índice de nombres como válido o no (lo usa NameIndex si se
+     * llena); el superblock se escribe con el próximo commit
+     */
+    void setNameIndexValid(boolean valid) {
+        synchronized (allocationLock) {
+            superblock.setNameIndexValid(valid);
+            superblockDirty = true;
+        }
+    }
+
+    /**
+     * Escribe la lista completa de entradas de un directorio, empaquetadas en
+     * tantos bloques como haga falta, sin índice. Las entradas libres de la
+     * lista se ignoran. Se usa al crear directorios; para agregar o quitar una
+     * sola entrada están addEntry() y removeEntry(), que escriben solo el
+     * bloque afectado.
      */
     public void writeDirectoryEntries(Inode dirInode, List<DirectoryEntry> entries)
             throws IOException {
-        if (!dirInode.isDirectory()) {
-            throw new IllegalArgumentException("El inode no es un directorio");
+        Lock lock = inodeLocks.writeLock(dirInode.getInodeNumber());
+        lock.lock();
+        try {
+            checkDirectory(dirInode);
+            if (dentryCache != null) {
+                // El inode puede ser de un directorio borrado con otros nombres
+                dentryCache.invalidateDirectory(dirInode.getInodeNumber());
+            }
+
+            List<byte[]> blocks = new ArrayList<>();
+            byte[] blockData = newDirectoryBlock();
+            blocks.add(blockData);
+            for (DirectoryEntry entry : entries) {
+                if (entry.isFree()) {
+                    continue;
+                }
+                checkName(entry);
+                if (!DirectoryEntry.insert(blockData, entry)) {
+                    blockData = newDirectoryBlock();
+                    blocks.add(blockData);
+                    DirectoryEntry.insert(blockData, entry);
+                }
+            }
+
+            int[] blockNumbers = ensureDirectoryBlocks(dirInode, blocks.size());
+            for (int b = 0; b < blocks.size(); b++) {
+                writeBlock(blockNumbers[b], blocks.get(b));
+            }
+
+            if (nameIndex != null) {
+                for (DirectoryEntry entry : entries) {
+                    if (!entry.isFree() && !NameIndex.isDotName(entry.getName())) {
+                        nameIndex.put(dirInode.getInodeNumber(), entry.getName(), entry.getInodeNumber());
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Busca una entrada por nombre. En un directorio indexado se lee solo la
+     * hoja de su hash; en uno lineal los bloques se leen de a uno y la
+     * búsqueda termina en el que contiene la entrada.
+     *
+     * @return la entrada, o null si no existe
+     */
+    public DirectoryEntry lookupEntry(Inode dirInode, String name) throws IOException {
+        Lock lock = inodeLocks.readLock(dirInode.getInodeNumber());
+        lock.lock();
+        try {
+            checkDirectory(dirInode);
+            if (directoryIndex.isIndexed(dirInode)) {
+                return directoryIndex.lookup(dirInode, name);
+            }
+
+            for (int blockNumber : getDirectoryBlocks(dirInode)) {
+                if (blockNumber == -1) {
+                    continue;
+                }
+                ByteBuffer blockData = readBlockView(blockNumber);
+                int offset = DirectoryEntry.find(blockData, name);
+                if (offset != -1) {
+                    return DirectoryEntry.read(blockData, offset);
+                }
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Número de inode de la entrada con ese nombre, o -1 si no existe. Se
+     * resuelve primero en el caché de nombres, que recuerda también los
+     * nombres ausentes.
+     */
+    public int lookupInodeNumber(Inode dirInode, String name) throws IOException {
+        Lock lock = inodeLocks.readLock(dirInode.getInodeNumber());
+        lock.lock();
+        try {
+            checkDirectory(dirInode);
+            if (dentryCache == null) {
+                return scanInodeNumber(dirInode, name);
+            }
+
+            Integer cached = dentryCache.get(dirInode.getInodeNumber(), name);
+            if (cached != null) {
+                return cached;
+            }
+            int inodeNumber = scanInodeNumber(dirInode, name);
+            dentryCache.put(dirInode.getInodeNumber(), name, inodeNumber);
+            return inodeNumber;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Busca el nombre en los bloques del directorio. A diferencia de
+     * lookupEntry() no crea objetos por entrada: el nombre se codifica una vez
+     * y sus bytes se comparan directamente sobre el bloque.
+     */
+    private int scanInodeNumber(Inode dirInode, String name) throws IOException {
+        byte[] target = name.getBytes(StandardCharsets.UTF_8);
+        if (directoryIndex.isIndexed(dirInode)) {
+            return directoryIndex.lookupInodeNumber(dirInode, target);
+        }
+
+        for (int blockNumber : getDirectoryBlocks(dirInode)) {
+            if (blockNumber == -1) {
+                continue;
+            }
+            ByteBuffer blockData = readBlockView(blockNumber);
+            int offset = DirectoryEntry.find(blockData, target);
+            if (offset != -1) {
+                return blockData.getInt(offset);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Agrega una entrada, escribiendo solo el bloque que la recibe. En un
+     * directorio lineal va al primer bloque con lugar; si ninguno tiene, el
+     * directorio pasa a usar el índice hash.
+     */
+    public void addEntry(Inode dirInode, DirectoryEntry entry) throws IOException {
+        Lock lock = inodeLocks.writeLock(dirInode.getInodeNumber());
+        lock.lock();
+        try {
+            checkDirectory(dirInode);
+            checkName(entry);
+            insertEntry(dirInode, entry);
+            if (dentryCache != null) {
+                dentryCache.put(dirInode.getInodeNumber(), entry.getName(), entry.getInodeNumber());
+            }
+            if (nameIndex != null && !NameIndex.isDotName(entry.getName())) {
+                nameIndex.put(dirInode.getInodeNumber(), entry.getName(), entry.getInodeNumber());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void insertEntry(Inode dirInode, DirectoryEntry entry) throws IOException {
+        if (directoryIndex.isIndexed(dirInode)) {
+            directoryIndex.add(dirInode, entry);
+            return;
+        }
+
+        for (int blockNumber : getDirectoryBlocks(dirInode)) {
+            if (blockNumber != -1
+                    && DirectoryEntry.findRoom(readBlockView(blockNumber), entry.getRecordLength()) != -1) {
+                byte[] blockData = readBlock(blockNumber);
+                DirectoryEntry.insert(blockData, entry);
+                writeBlock(blockNumber, blockData);
+                return;
+            }
+        }
+
+        List<DirectoryEntry> entries = readDirectoryEntries(dirInode);
+        entries.add(entry);
+        directoryIndex.build(dirInode, entries);
+    }
+
+    /**
+     * Reemplaza la entrada con el nombre indicado. Si la nueva no entra en el
+     * registro de la anterior, se quita y se agrega de nuevo.
+     *
+     * @return false si no existe una entrada con ese nombre
+     */
+    public boolean updateEntry(Inode dirInode, String name, DirectoryEntry replacement) throws IOException {
+        Lock lock = inodeLocks.writeLock(dirInode.getInodeNumber());
+        lock.lock();
+        try {
+            checkDirectory(dirInode);
+            checkName(replacement);
+            boolean updated = replaceEntry(dirInode, name, replacement);
+            if (updated && dentryCache != null) {
+                dentryCache.put(dirInode.getInodeNumber(), name, DentryCache.NEGATIVE);
+                dentryCache.put(dirInode.getInodeNumber(), replacement.getName(), replacement.getInodeNumber());
+            }
+            if (updated && nameIndex != null) {
+                if (!NameIndex.isDotName(name) && !name.equals(replacement.getName())) {
+                    nameIndex.remove(dirInode.getInodeNumber(), name);
+                }
+                if (!NameIndex.isDotName(replacement.getName())) {
+                    nameIndex.put(dirInode.getInodeNumber(), replacement.getName(), replacement.getInodeNumber());
+                }
+            }
+            return updated;
+        } finally {
+            lock.unlock();
         }
+    }
 
+    private boolean replaceEntry(Inode dirInode, String name, DirectoryEntry replacement) throws IOException {
+        if (directoryIndex.isIndexed(dirInode)) {
+            return directoryIndex.update(dirInode, name, replacement);
+        }
+
+        for (int blockNumber : getDirectoryBlocks(dirInode)) {
+            if (blockNumber == -1) {
+                continue;
+            }
+            int offset = DirectoryEntry.find(readBlockView(blockNumber), name);
+            if (offset == -1) {
+                continue;
+            }
+
+            byte[] blockData = readBlock(blockNumber);
+            if (DirectoryEntry.replace(blockData, offset, replacement)) {
+                writeBlock(blockNumber, blockData);
+            } else {
+                DirectoryEntry.remove(blockData, offset);
+                writeBlock(blockNumber, blockData);
+                addEntry(dirInode, replacement);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Elimina la entrada con el nombre indicado. Su espacio se suma al
+     * registro anterior del bloque y queda disponible para otra.
+     *
+     * @return false si no existe una entrada con ese nombre
+     */
+    public boolean removeEntry(Inode dirInode, String name) throws IOException {
+        Lock lock = inodeLocks.writeLock(dirInode.getInodeNumber());
+        lock.lock();
+        try {
+            checkDirectory(dirInode);
+            boolean removed = deleteEntry(dirInode, name);
+            if (dentryCache != null) {
+                dentryCache.put(dirInode.getInodeNumber(), name, DentryCache.NEGATIVE);
+            }
+            if (removed && nameIndex != null) {
+                nameIndex.remove(dirInode.getInodeNumber(), name);
+            }
+            return removed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean deleteEntry(Inode dirInode, String name) throws IOException {
+        if (directoryIndex.isIndexed(dirInode)) {
+            return directoryIndex.remove(dirInode, name);
+        }
+
+        for (int blockNumber : getDirectoryBlocks(dirInode)) {
+            if (blockNumber == -1) {
+                continue;
+            }
+            int offset = DirectoryEntry.find(readBlockView(blockNumber), name);
+            if (offset != -1) {
+                byte[] blockData = readBlock(blockNumber);
+                DirectoryEntry.remove(blockData, offset);
+                writeBlock(blockNumber, blockData);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Bloques físicos del directorio, en orden
+     */
+    private int[] getDirectoryBlocks(Inode dirInode) throws IOException {
         int blockSize = superblock.getBlockSize();
-        int entriesPerBlock = blockSize / FSConstants.DIR_ENTRY_SIZE;
+        int count = (int) ((dirInode.getFileSize() + blockSize - 1) / blockSize);
+        return allocation.mapBlocks(dirInode, count);
+    }
 
-        if (entries.size() > entriesPerBlock) {
-            throw new IOException("Demasiadas entradas para un solo bloque (máximo " + entriesPerBlock + ")");
+    /**
+     * Se asegura de que el directorio tenga al menos count bloques, asignando
+     * los que falten al final
+     *
+     * @return los bloques físicos del directorio
+     */
+    private int[] ensureDirectoryBlocks(Inode dirInode, int count) throws IOException {
+        int blockSize = superblock.getBlockSize();
+        int current = (int) ((dirInode.getFileSize() + blockSize - 1) / blockSize);
+        if (current > 0 && allocation.getBlockNumber(dirInode, 0) == -1) {
+            current = 0; // tamaño fijado pero todavía sin bloques
         }
 
-        int blockNumber = dirInode.getDirectBlocks()[0];
-        if (blockNumber == -1) {
-            // Necesitamos asignar un bloque
-            blockNumber = allocateDataBlock();
-            dirInode.setDirectBlock(0, blockNumber);
-            dirInode.setFileSize(blockSize);
+        if (count > current) {
+            allocateBlocks(dirInode, current, count - current);
+            dirInode.setFileSize((long) count * blockSize);
+            dirInode.setModificationTime(System.currentTimeMillis());
             writeInode(dirInode);
+            flushAllocationState();
         }
+        return allocation.mapBlocks(dirInode, Math.max(count, current));
+    }
+
+    /**
+     * Agrega un bloque al final del directorio
+     *
+     * @return su número de bloque lógico
+     */
+    int appendDirectoryBlock(Inode dirInode) throws IOException {
+        int blockSize = superblock.getBlockSize();
+        int logical = (int) ((dirInode.getFileSize() + blockSize - 1) / blockSize);
+
+        allocateBlocks(dirInode, logical, 1);
+        dirInode.setFileSize((long) (logical + 1) * blockSize);
+        dirInode.setModificationTime(System.currentTimeMillis());
+        writeInode(dirInode);
+        flushAllocationState();
+        return logical;
+    }
 
-        byte[] blockData = new byte[blockSize];
+    /**
+     * Bloque de directorio vacío (un único registro libre)
+     */
+    byte[] newDirectoryBlock() {
+        byte[] blockData = new byte[superblock.getBlockSize()];
+        DirectoryEntry.initBlock(blockData);
+        return blockData;
+    }
 
-        for (int i = 0; i < entries.size() && i < entriesPerBlock; i++) {
-            byte[] entryData = entries.get(i).toBytes();
-            System.arraycopy(entryData, 0, blockData,
-                    i * FSConstants.DIR_ENTRY_SIZE, FSConstants.DIR_ENTRY_SIZE);
+    private void checkName(DirectoryEntry entry) throws IOException {
+        if (entry.getNameLength() > FSConstants.MAX_NAME_LENGTH) {
+            throw new IOException("Nombre demasiado largo (máximo " + FSConstants.MAX_NAME_LENGTH
+                    + " bytes): " + entry.getName());
         }
+    }
 
-        writeBlock(blockNumber, blockData);
+    private void checkDirectory(Inode dirInode) {
+        if (!dirInode.isDirectory()) {
+            throw new IllegalArgumentException("El inode no es un directorio");
+        }
     }
 
     // Getters
@@ -338,6 +1370,30 @@ public class FileSystem {
         return superblock;
     }
 
+    public BlockCache getBlockCache() {
+        return cache;
+    }
+
+    public Journal getJournal() {
+        return journal;
+    }
+
+    public InodeCache getInodeCache() {
+        return inodeCache;
+    }
+
+    public DentryCache getDentryCache() {
+        return dentryCache;
+    }
+
+    public InodeLocks getInodeLocks() {
+        return inodeLocks;
+    }
+
+    public AllocationStrategy getAllocationStrategy() {
+        return allocation;
+    }
+
     public Bitmap getInodeBitmap() {
         return inodeBitmap;
     }
@@ -395,6 +1451,9 @@ public class FileSystem {
         System.out.println("Estrategia: " + getStrategyName(allocationStrategy));
 
         int blockSize = blockSizeKB * 1024;
+        if (blockSize > FSConstants.MAX_BLOCK_SIZE) {
+            throw new IOException("El tamaño de bloque máximo es " + FSConstants.MAX_BLOCK_SIZE / 1024 + " KB");
+        }
 
         // Paso 1: Calcular estructuras
         long totalBytes = (long) sizeMB * 1024 * 1024;
@@ -417,13 +1476,48 @@ public class FileSystem {
         int metadataBlocksWithoutDataBitmap = 1 + inodeBitmapBlocks + inodeTableBlocks;
         int provisionalDataBlocks = totalBlocks - metadataBlocksWithoutDataBitmap;
 
-        // Calcular bloques para data bitmap
-        int dataBitmapBits = provisionalDataBlocks;
-        int dataBitmapBytes = (dataBitmapBits + 7) / 8;
-        int dataBitmapBlocks = (dataBitmapBytes + blockSize - 1) / blockSize;
+        // Calcular bloques para data bitmap
+        int dataBitmapBits = provisionalDataBlocks;
+        int dataBitmapBytes = (dataBitmapBits + 7) / 8;
+        int dataBitmapBlocks = (dataBitmapBytes + blockSize - 1) / blockSize;
+
+        // Calcular bloques para la tabla de siguientes (solo asignación enlazada)
+        int fatBlocks = 0;
+        if (allocationStrategy == FSConstants.ALLOC_LINKED) {
+            fatBlocks = (int) (((long) provisionalDataBlocks * 4 + blockSize - 1) / blockSize);
+        }
+
+        // Calcular bloques para el journal de metadatos (1/32 del disco, con
+        // límites; los discos muy chicos no llevan journal)
+        int journalBlocks = Math.min(FSConstants.MAX_JOURNAL_BLOCKS,
+                Math.max(FSConstants.MIN_JOURNAL_BLOCKS, totalBlocks / 32));
+        if (journalBlocks > totalBlocks / 8) {
+            journalBlocks = 0;
+        }
+
+        // Calcular bloques para el índice de nombres (según la cantidad de
+        // inodes; igual que el journal, no se reserva en discos muy chicos)
+        int nameIndexBlocks = NameIndex.blocksFor(totalInodes, blockSize);
+        if (nameIndexBlocks > totalBlocks / 8) {
+            nameIndexBlocks = 0;
+        }
+
+        // Grupos de bloques como en ext2: cada grupo abarca lo que cubre un
+        // bloque del data bitmap, y su tabla de descriptores va después del
+        // índice de nombres
+        int blocksPerGroup = blockSize * 8;
+        int groupTableBlocks = (int) (((long) (provisionalDataBlocks + blocksPerGroup - 1) / blocksPerGroup
+                * BlockGroup.DESCRIPTOR_SIZE + blockSize - 1) / blockSize);
 
         // Calcular bloques de datos reales
-        int actualDataBlocks = totalBlocks - 1 - inodeBitmapBlocks - dataBitmapBlocks - inodeTableBlocks;
+        int actualDataBlocks = totalBlocks - 1 - inodeBitmapBlocks - dataBitmapBlocks - inodeTableBlocks
+                - fatBlocks - journalBlocks - nameIndexBlocks - groupTableBlocks;
+
+        // Cada grupo se queda con bloques enteros de la tabla de inodes
+        int groupCount = (actualDataBlocks + blocksPerGroup - 1) / blocksPerGroup;
+        int inodesPerBlock = blockSize / FSConstants.INODE_SIZE;
+        int inodesPerGroup = (totalInodes + groupCount - 1) / groupCount;
+        inodesPerGroup = (inodesPerGroup + inodesPerBlock - 1) / inodesPerBlock * inodesPerBlock;
 
         System.out.println("\nCálculos del sistema de archivos:");
         System.out.println("  Total de bloques: " + totalBlocks);
@@ -431,6 +1525,17 @@ public class FileSystem {
         System.out.println("  Bloques para inode bitmap: " + inodeBitmapBlocks);
         System.out.println("  Bloques para data bitmap: " + dataBitmapBlocks);
         System.out.println("  Bloques para tabla de inodes: " + inodeTableBlocks);
+        if (fatBlocks > 0) {
+            System.out.println("  Bloques para tabla de asignación enlazada: " + fatBlocks);
+        }
+        if (journalBlocks > 0) {
+            System.out.println("  Bloques para journal: " + journalBlocks);
+        }
+        if (nameIndexBlocks > 0) {
+            System.out.println("  Bloques para índice de nombres: " + nameIndexBlocks);
+        }
+        System.out.println("  Grupos de bloques: " + groupCount + " (" + blocksPerGroup + " bloques y "
+                + inodesPerGroup + " inodes por grupo)");
         System.out.println("  Bloques de datos: " + actualDataBlocks);
 
         // Paso 2: Crear el archivo
@@ -439,8 +1544,12 @@ public class FileSystem {
             System.out.println("\nAdvertencia: El archivo ya existe. Será sobreescrito.");
         }
 
-        fsFile = new RandomAccessFile(fsFilePath, "rw");
-        fsFile.setLength(totalBytes);
+        device = new FileChannelBlockDevice(fsFilePath);
+        device.setSize(totalBytes);
+        freeExtents = null;
+        journal = null;
+        nameIndex = null;
+        groups = null;
 
         // Paso 3: Crear y escribir el superblock
         System.out.println("\nCreando Superblock...");
@@ -458,7 +1567,32 @@ public class FileSystem {
         superblock.setInodeBitmapStart(1);
         superblock.setDataBitmapStart(1 + inodeBitmapBlocks);
         superblock.setInodeTableStart(1 + inodeBitmapBlocks + dataBitmapBlocks);
-        superblock.setDataBlocksStart(1 + inodeBitmapBlocks + dataBitmapBlocks + inodeTableBlocks);
+        superblock.setFatStart(1 + inodeBitmapBlocks + dataBitmapBlocks + inodeTableBlocks);
+        superblock.setFatBlocks(fatBlocks);
+        superblock.setJournalStart(1 + inodeBitmapBlocks + dataBitmapBlocks + inodeTableBlocks + fatBlocks);
+        superblock.setJournalBlocks(journalBlocks);
+        superblock.setNameIndexStart(1 + inodeBitmapBlocks + dataBitmapBlocks + inodeTableBlocks + fatBlocks
+                + journalBlocks);
+        superblock.setNameIndexBlocks(nameIndexBlocks);
+        superblock.setNameIndexValid(nameIndexBlocks > 0);
+        superblock.setGroupCount(groupCount);
+        superblock.setBlocksPerGroup(blocksPerGroup);
+        superblock.setInodesPerGroup(inodesPerGroup);
+        superblock.setGroupTableStart(superblock.getNameIndexStart() + nameIndexBlocks);
+        superblock.setGroupTableBlocks(groupTableBlocks);
+        superblock.setDataBlocksStart(1 + inodeBitmapBlocks + dataBitmapBlocks + inodeTableBlocks + fatBlocks
+                + journalBlocks + nameIndexBlocks + groupTableBlocks);
+
+        cache = new BlockCache(device, blockSize, BlockCache.DEFAULT_CAPACITY);
+        inodeCache = new InodeCache(InodeCache.DEFAULT_CAPACITY);
+        dentryCache = new DentryCache(DentryCache.DEFAULT_CAPACITY);
+
+        // Índice de nombres vacío; las entradas de los directorios iniciales
+        // se registran al escribirlas
+        if (nameIndexBlocks > 0) {
+            nameIndex = new NameIndex(this, superblock.getNameIndexStart(), nameIndexBlocks);
+            nameIndex.clear();
+        }
 
         // OJO: writeSuperblock usa 'superblock.blockSize' para el buffer.
         // Como 'superblock' ya está inicializado con el nuevo blockSize, esto funciona.
@@ -474,6 +1608,7 @@ public class FileSystem {
         inodeBitmap.allocate(2);
         inodeBitmap.allocate(3);
         writeInodeBitmap();
+        inodeBitmap.trackDirtyBlocks(blockSize);
         System.out.println(" Inode Bitmap escrito");
 
         // Paso 5: inicializar Data Block Bitmap
@@ -484,9 +1619,27 @@ public class FileSystem {
         dataBlockBitmap.allocate(1);
         dataBlockBitmap.allocate(2);
         dataBlockBitmap.allocate(3);
+        // 4 y 5 reservados para las tablas de usuarios y grupos
+        dataBlockBitmap.allocate(4);
+        dataBlockBitmap.allocate(5);
+        superblock.setFreeBlocks(superblock.getFreeBlocks() - 2);
+        writeSuperblock();
         writeDataBlockBitmap();
+        dataBlockBitmap.trackDirtyBlocks(blockSize);
         System.out.println(" Data Block Bitmap escrito");
 
+        // Los cuatro directorios iniciales quedan en el primer grupo
+        buildGroups();
+        groups[0].setDirectories(4);
+        for (int b = 0; b < groupTableBlocks; b++) {
+            writeGroupTableBlock(b);
+        }
+        dirtyGroupBlocks.clear();
+        System.out.println(" Tabla de grupos escrita (" + groupCount + " grupos)");
+
+        allocation = createAllocationStrategy(allocationStrategy);
+        allocation.initialize();
+
         // Paso 6: Crear inode del directorio raíz "/"
         System.out.println("\nCreando directorio raíz '/'...");
         Inode rootInode = new Inode(
@@ -516,12 +1669,6 @@ public class FileSystem {
         // Entrada "user" (apunta al directorio /user)
         rootEntries.add(new DirectoryEntry(1, FSConstants.TYPE_DIRECTORY, "user"));
 
-        // Rellenar con entradas vacías
-        int entriesPerBlock = blockSize / FSConstants.DIR_ENTRY_SIZE;
-        for (int i = 3; i < entriesPerBlock; i++) {
-            rootEntries.add(new DirectoryEntry());
-        }
-
         writeDirectoryEntries(rootInode, rootEntries);
         System.out.println("  Entradas de directorio escritas");
 
@@ -553,11 +1700,6 @@ public class FileSystem {
         // Entrada "root" (apunta al directorio /user/root)
         userDirEntries.add(new DirectoryEntry(2, FSConstants.TYPE_DIRECTORY, "root"));
 
-        // Rellenar con entradas vacías
-        for (int i = 3; i < entriesPerBlock; i++) {
-            userDirEntries.add(new DirectoryEntry());
-        }
-
         writeDirectoryEntries(userDirInode, userDirEntries);
         System.out.println("  Entradas de directorio escritas");
 
@@ -589,11 +1731,6 @@ public class FileSystem {
         // Entrada "home" (apunta al directorio /user/root/home)
         userRootDirEntries.add(new DirectoryEntry(3, FSConstants.TYPE_DIRECTORY, "home"));
 
-        // Rellenar con entradas vacías
-        for (int i = 3; i < entriesPerBlock; i++) {
-            userRootDirEntries.add(new DirectoryEntry());
-        }
-
         writeDirectoryEntries(userRootDirInode, userRootDirEntries);
         System.out.println("  Entradas de directorio escritas");
 
@@ -622,11 +1759,6 @@ public class FileSystem {
         // Entrada ".." (apunta al directorio padre "/user/root")
         rootHomeEntries.add(new DirectoryEntry(2, FSConstants.TYPE_DIRECTORY, ".."));
 
-        // Rellenar con entradas vacías
-        for (int i = 2; i < entriesPerBlock; i++) {
-            rootHomeEntries.add(new DirectoryEntry());
-        }
-
         writeDirectoryEntries(rootHomeInode, rootHomeEntries);
         System.out.println("  Entradas de directorio escritas");
 
@@ -662,12 +1794,38 @@ public class FileSystem {
         saveUsersAndGroups();
 
         // Paso 17: Sincronizar y cerrar
-        fsFile.getFD().sync();
+        sync();
+
+        // Paso 18: Activar el journal; desde aquí los metadatos pasan por él
+        if (journalBlocks > 0) {
+            Journal.format(device, blockSize, superblock.getJournalStart(), journalBlocks);
+            journal = new Journal(device, blockSize, superblock.getJournalStart(), journalBlocks);
+            System.out.println("\nJournal de metadatos inicializado (" + journalBlocks + " bloques)");
+        }
         System.out.println("\n¡Sistema de archivos formateado exitosamente!");
         System.out.println("Archivo: " + fsFilePath);
         System.out.println("Usuario root creado con directorio home: /user/root/home");
     }
 
+    /**
+     * Indica que las tablas de usuarios o grupos cambiaron y deben guardarse
+     * en el próximo sync()
+     */
+    public void markUsersAndGroupsDirty() {
+        usersDirty = true;
+    }
+
+    /**
+     * Guarda las tablas de usuarios y grupos solo si cambiaron
+     */
+    private void flushUsersAndGroups() throws IOException {
+        synchronized (usersLock) {
+            if (usersDirty) {
+                saveUsersAndGroups();
+            }
+        }
+    }
+
     /**
      * Guarda las tablas de usuarios y grupos en bloques especiales del FS
      * (Bloques reservados despúes de los metadatos)
@@ -684,12 +1842,7 @@ public class FileSystem {
         // Bloque especial para grupos
         int groupBlockNumber = superblock.getDataBlocksStart() + 5;
 
-        // Marcar estos bloques como ocupados
-        dataBlockBitmap.allocate(4);
-        dataBlockBitmap.allocate(5);
-        superblock.setFreeBlocks(superblock.getFreeBlocks() - 2);
-        writeSuperblock();
-        writeDataBlockBitmap();
+        // Estos bloques quedan marcados como ocupados desde format()
 
         // Guardar usuarios
         byte[] userBlock = new byte[blockSize];
@@ -730,12 +1883,20 @@ public class FileSystem {
 
         writeBlock(groupBlockNumber, groupBlock);
         System.out.println("  Grupos guardados en bloque " + groupBlockNumber);
+        usersDirty = false;
     }
 
     /**
      * Monta un sistema de archivos existente
      */
     public void mount() throws IOException {
+        mount(new MountOptions());
+    }
+
+    /**
+     * Monta un sistema de archivos existente con las opciones indicadas
+     */
+    public void mount(MountOptions options) throws IOException {
         System.out.println("Montando sistema de archivos: " + fsFilePath);
 
         File fsFileObj = new File(fsFilePath);
@@ -743,7 +1904,9 @@ public class FileSystem {
             throw new IOException("El archivo del sistema de archivos no existe: " + fsFilePath);
         }
 
-        fsFile = new RandomAccessFile(fsFilePath, "rw");
+        device = openDevice(options);
+        freeExtents = null;
+        journal = null;
 
         // Leer Superblock. Para esto necesitamos saber el tamaño.
         // El Superblock siempre se lee del offset 0, pero necesitamos saber cuánto
@@ -757,8 +1920,7 @@ public class FileSystem {
 
         // Leemos temporalmente con tamaño por defecto para obtener el verdadero
         byte[] tempBlock = new byte[FSConstants.DEFAULT_BLOCK_SIZE];
-        fsFile.seek(0);
-        fsFile.read(tempBlock); // read parcial si es más pequeño
+        device.read(ByteBuffer.wrap(tempBlock), 0); // read parcial si es más pequeño
 
         superblock = Superblock.fromBytes(tempBlock);
 
@@ -766,9 +1928,46 @@ public class FileSystem {
         if (!superblock.isValid()) {
             throw new IOException("Sistema de archivos inválido o corrupto (magic number incorrecto)");
         }
+        if (superblock.getFsVersion() != FSConstants.FS_VERSION) {
+            throw new IOException("Versión de formato no soportada (" + superblock.getFsVersion()
+                    + "); vuelva a formatear el disco");
+        }
 
         int blockSize = superblock.getBlockSize();
 
+        // Reaplicar lo que haya quedado en el journal antes de leer el resto
+        if (superblock.getJournalBlocks() > 0) {
+            journal = new Journal(device, blockSize, superblock.getJournalStart(),
+                    superblock.getJournalBlocks());
+            int recovered = journal.recover();
+            if (recovered > 0) {
+                System.out.println("  Journal: " + recovered + " transacciones recuperadas");
+                device.read(ByteBuffer.wrap(tempBlock), 0);
+                superblock = Superblock.fromBytes(tempBlock);
+            }
+        }
+
+        if (options.getCacheBlocks() > 0) {
+            cache = new BlockCache(device, blockSize, options.getCacheBlocks());
+        } else {
+            cache = null;
+        }
+        if (options.getInodeCacheSize() > 0) {
+            inodeCache = new InodeCache(options.getInodeCacheSize());
+        } else {
+            inodeCache = null;
+        }
+        if (options.getDentryCacheSize() > 0) {
+            dentryCache = new DentryCache(options.getDentryCacheSize());
+        } else {
+            dentryCache = null;
+        }
+        if (superblock.getNameIndexBlocks() > 0) {
+            nameIndex = new NameIndex(this, superblock.getNameIndexStart(), superblock.getNameIndexBlocks());
+        } else {
+            nameIndex = null;
+        }
+
         System.out.println("  Sistema de archivos: " + superblock.getFsName());
         System.out.println("  Versión: " + superblock.getFsVersion());
         System.out.println("  Tamaño de bloque: " + blockSize);
@@ -777,51 +1976,134 @@ public class FileSystem {
         System.out.println("  Total de inodes: " + superblock.getTotalInodes());
         System.out.println("  Inodes libres: " + superblock.getFreeInodes());
 
-        // Actualizar last mount time
+        // Con un desmontaje limpio los contadores del superblock y de los
+        // grupos son exactos; si no, se recuentan desde los bitmaps
+        boolean clean = superblock.isCleanUnmount();
+
+        // Actualizar last mount time. Hasta desmontar, el volumen queda
+        // marcado como no desmontado bien; la marca llega al disco antes que
+        // cualquier otro cambio
         superblock.setLastMountTime(System.currentTimeMillis());
+        superblock.setCleanUnmount(false);
         writeSuperblock();
+        if (journal != null) {
+            journal.commit();
+        } else {
+            if (cache != null) {
+                cache.flush();
+            }
+            device.force();
+        }
 
         // Leer Inode Bitmap
         System.out.println("\nCargando Inode Bitmap...");
-        int inodeBitmapBytes = (superblock.getTotalInodes() + 7) / 8;
-        int inodeBitmapBlocks = (inodeBitmapBytes + blockSize - 1)
-                / blockSize;
-
-        byte[] inodeBitmapData = new byte[inodeBitmapBytes];
-        for (int i = 0; i < inodeBitmapBlocks; i++) {
-            byte[] block = readBlock(superblock.getInodeBitmapStart() + i);
-            int copyLength = Math.min(blockSize,
-                    inodeBitmapBytes - i * blockSize);
-            System.arraycopy(block, 0, inodeBitmapData,
-                    i * blockSize, copyLength);
-        }
-        inodeBitmap = Bitmap.fromBytes(inodeBitmapData, superblock.getTotalInodes());
+        inodeBitmap = loadBitmap(superblock.getInodeBitmapStart(), superblock.getTotalInodes(),
+                superblock.getFreeInodes(), clean);
         System.out.println("  Inode Bitmap cargado");
 
         // Leer Data Block Bitmap
         System.out.println("\nCargando Data Block Bitmap...");
         int dataBlocks = superblock.getTotalBlocks() - superblock.getDataBlocksStart();
-        int dataBitmapBytes = (dataBlocks + 7) / 8;
-        int dataBitmapBlocks = (dataBitmapBytes + blockSize - 1)
-                / blockSize;
+        dataBlockBitmap = loadBitmap(superblock.getDataBitmapStart(), dataBlocks,
+                superblock.getFreeBlocks(), clean);
+        System.out.println("  Data Block Bitmap cargado");
 
-        byte[] dataBitmapData = new byte[dataBitmapBytes];
-        for (int i = 0; i < dataBitmapBlocks; i++) {
-            byte[] block = readBlock(superblock.getDataBitmapStart() + i);
-            int copyLength = Math.min(blockSize,
-                    dataBitmapBytes - i * blockSize);
-            System.arraycopy(block, 0, dataBitmapData,
-                    i * blockSize, copyLength);
+        // Los volúmenes formateados antes de los grupos de bloques no tienen
+        // tabla y asignan como siempre
+        if (superblock.getGroupCount() > 0) {
+            loadGroups();
+        } else {
+            groups = null;
+        }
+
+        if (!clean) {
+            System.out.println("  El volumen no se desmontó bien: recontando bloques e inodes libres");
+            recountFreeSpace();
+            // Sin journal, el índice de nombres pudo quedar a medio actualizar
+            if (journal == null && nameIndex != null && superblock.isNameIndexValid()) {
+                setNameIndexValid(false);
+                System.out.println("  Índice de nombres marcado para reconstruir (use reindex)");
+            }
         }
-        dataBlockBitmap = Bitmap.fromBytes(dataBitmapData, dataBlocks);
-        System.out.println("  Data Block Bitmap cargado");
+
+        allocation = createAllocationStrategy(superblock.getAllocationStrategy());
+        allocation.load();
 
         // Cargar usuarios y grupos
         loadUsersAndGroups();
 
+        // Las transacciones escritas llegan al disco aunque no haya más commits
+        if (journal != null) {
+            journal.start();
+        }
+
         System.out.println("\n¡Sistema de archivos montado exitosamente!");
     }
 
+    /**
+     * Lee un bitmap de bits bits que empieza en el bloque start. Si el volumen
+     * se desmontó bien y el bitmap es grande, cada bloque se lee recién al
+     * usarlo y el contador de libres es free; si no, se lee entero de una vez.
+     */
+    private Bitmap loadBitmap(int start, int bits, int free, boolean clean) throws IOException {
+        int blockSize = superblock.getBlockSize();
+        int blocks = ((bits + 7) / 8 + blockSize - 1) / blockSize;
+
+        Bitmap bitmap;
+        if (clean && blocks > FSConstants.LAZY_BITMAP_BLOCKS) {
+            bitmap = Bitmap.lazy(bits, free, blockSize, b -> readBlock(start + b));
+            System.out.println("  " + blocks + " bloques, se leen al usarlos");
+        } else {
+            bitmap = Bitmap.fromBytes(readBlocks(start, blocks), bits);
+        }
+        bitmap.trackDirtyBlocks(blockSize);
+        return bitmap;
+    }
+
+    /**
+     * Lee count bloques seguidos con una sola lectura del disco. Solo sirve
+     * al montar, cuando ni el journal ni el caché tienen bloques de esas
+     * zonas.
+     */
+    private byte[] readBlocks(int firstBlock, int count) throws IOException {
+        byte[] data = new byte[count * superblock.getBlockSize()];
+        readFully(data, getBlockOffset(firstBlock));
+        return data;
+    }
+
+    /**
+     * Crea la estrategia de asignación guardada en el superblock. Los volúmenes
+     * sin una estrategia conocida usan la indexada.
+     */
+    private AllocationStrategy createAllocationStrategy(int strategy) {
+        switch (strategy) {
+            case FSConstants.ALLOC_CONTIGUOUS:
+                return new ContiguousAllocation(this);
+            case FSConstants.ALLOC_LINKED:
+                return new LinkedAllocation(this);
+            default:
+                return new IndexedAllocation(this);
+        }
+    }
+
+    /**
+     * Abre el dispositivo de bloques según las opciones de montaje. Si no se
+     * puede mapear la imagen en memoria se usa E/S posicional normal.
+     */
+    private BlockDevice openDevice(MountOptions options) throws IOException {
+        if (options.isMemoryMapped()) {
+            try {
+                BlockDevice mapped = new MappedBlockDevice(fsFilePath);
+                System.out.println("  Imagen mapeada en memoria");
+                return mapped;
+            } catch (IOException | OutOfMemoryError e) {
+                System.out.println("  No se pudo mapear la imagen (" + e.getMessage()
+                        + "), usando E/S posicional");
+            }
+        }
+        return new FileChannelBlockDevice(fsFilePath);
+    }
+
     /**
      * Carga las tablas de usuarios y grupos desde el disco
      */
@@ -832,8 +2114,10 @@ public class FileSystem {
         int groupBlockNumber = superblock.getDataBlocksStart() + 5;
 
         // Cargar usuarios
-        byte[] userBlock = readBlock(userBlockNumber);
-        ByteBuffer userBuffer = ByteBuffer.wrap(userBlock);
+        // Las dos tablas están en bloques seguidos: se leen de una vez
+        int blockSize = superblock.getBlockSize();
+        byte[] tables = readBlocks(userBlockNumber, groupBlockNumber - userBlockNumber + 1);
+        ByteBuffer userBuffer = ByteBuffer.wrap(tables, 0, blockSize);
 
         int userCount = userBuffer.getInt();
         System.out.println("  Cargando " + userCount + " usuarios...");
@@ -854,8 +2138,7 @@ public class FileSystem {
         }
 
         // Cargar grupos
-        byte[] groupBlock = readBlock(groupBlockNumber);
-        ByteBuffer groupBuffer = ByteBuffer.wrap(groupBlock);
+        ByteBuffer groupBuffer = ByteBuffer.wrap(tables, (groupBlockNumber - userBlockNumber) * blockSize, blockSize);
 
         int groupCount = groupBuffer.getInt();
         System.out.println("  Cargando " + groupCount + " grupos...");
@@ -880,161 +2163,448 @@ public class FileSystem {
      * Desmonta el sistema de archivos
      */
     public void unmount() throws IOException {
-        if (fsFile != null) {
+        if (device != null) {
             System.out.println("Desmontando sistema de archivos...");
 
             // Guardar usuarios y grupos
             saveUsersAndGroups();
 
             // Sincronizar cambios
-            fsFile.getFD().sync();
+            sync();
+
+            // Con todo en el disco, el próximo montaje puede confiar en los
+            // contadores
+            superblock.setCleanUnmount(true);
+            writeSuperblock();
+            sync();
 
             // Cerrar archivo
-            fsFile.close();
-            fsFile = null;
+            if (journal != null) {
+                journal.stop();
+            }
+            device.close();
+            device = null;
+            cache = null;
+            inodeCache = null;
+            dentryCache = null;
+            nameIndex = null;
+            groups = null;
+            allocation = null;
+            journal = null;
 
             System.out.println("Sistema de archivos desmontado correctamente");
         }
     }
 
     /**
-     * Lee todo el contenido de un archivo
+     * Persiste en disco los cambios pendientes sin desmontar: escribe los
+     * inodes y bloques sucios de los cachés y fuerza el dispositivo
      */
-    public byte[] readFile(Inode inode) throws IOException {
-        long fileSize = inode.getFileSize();
-        if (fileSize == 0)
-            return new byte[0];
+    public void sync() throws IOException {
+        if (device == null) {
+            return;
+        }
+        lockOperations();
+        try {
+            flushUsersAndGroups();
+            flushAllocationState();
+            flushInodes();
+            if (journal != null) {
+                journal.commit();
+                journal.checkpoint();
+            }
+            if (cache != null) {
+                cache.flush();
+            }
+            device.force();
+        } finally {
+            operationLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Cierra la operación en curso: sus metadatos pendientes se escriben como
+     * una transacción del journal, sin esperar a que llegue al disco (el
+     * force() se comparte entre varias operaciones). Sin journal no hace nada
+     * y los cambios quedan en los cachés hasta sync().
+     */
+    public void commit() throws IOException {
+        if (device == null || journal == null) {
+            return;
+        }
+        lockOperations();
+        try {
+            flushUsersAndGroups();
+            flushAllocationState();
+            flushInodes();
+            journal.commit();
+        } finally {
+            operationLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Marca el comienzo de una operación (un comando). Las operaciones
+     * pueden correr a la vez; commit() y sync() esperan a que no haya
+     * ninguna en curso, para que la transacción no se cierre a la mitad de
+     * una.
+     */
+    public void beginOperation() {
+        operationLock.readLock().lock();
+    }
+
+    public void endOperation() {
+        operationLock.readLock().unlock();
+    }
 
-        // Bloques necesarios
-        long blockSize = superblock.getBlockSize(); // 1KB = 1024 bytes (ejemplo)
-        int numBlocks = (int) ((fileSize + blockSize - 1) / blockSize);
+    /**
+     * Toma el lock de operación exclusivo. Desde dentro de una operación no
+     * se puede: habría que esperar a que termine la propia, y cerrar ahí la
+     * transacción cortaría a las demás a la mitad. Los comandos piden el
+     * commit o el sync a quien los ejecuta, después de endOperation().
+     */
+    private void lockOperations() throws IOException {
+        if (operationLock.getReadHoldCount() > 0) {
+            throw new IOException("commit() y sync() no se pueden llamar dentro de una operación");
+        }
+        operationLock.writeLock().lock();
+    }
 
-        ByteBuffer fileContent = ByteBuffer.allocate((int) fileSize);
+    /**
+     * Lee todo el contenido de un archivo. Para archivos grandes conviene
+     * openInputStream(), que no carga el archivo completo en memoria.
+     */
+    public byte[] readFile(Inode inode) throws IOException {
+        Lock lock = inodeLocks.readLock(inode.getInodeNumber());
+        lock.lock();
+        try {
+            long fileSize = inode.getFileSize();
+            if (fileSize == 0)
+                return new byte[0];
+            if (fileSize > Integer.MAX_VALUE - 8) {
+                throw new IOException("El archivo es demasiado grande para leerlo completo en memoria");
+            }
 
-        // Helper para leer N bloques lógicos
-        for (int i = 0; i < numBlocks; i++) {
-            int blockNum = getBlockNumber(inode, i); // Obtener bloque físico
-            if (blockNum == -1)
-                break; // Error o fin
+            // Resolver todos los bloques físicos de una vez y leerlos por tramos
+            int blockSize = superblock.getBlockSize();
+            int numBlocks = (int) ((fileSize + blockSize - 1) / blockSize);
+            int[] blockMap = allocation.mapBlocks(inode, numBlocks);
 
-            byte[] blockData = readDataBlock(blockNum);
+            ByteBuffer fileContent = ByteBuffer.allocate((int) fileSize);
+            readRuns(blockMap, 0, fileContent);
+            return fileContent.array();
+        } finally {
+            lock.unlock();
+        }
+    }
 
-            // Si es el último bloque, solo tomamos lo necesario
-            int bytesToRead = (int) blockSize;
-            if (i == numBlocks - 1) {
-                bytesToRead = (int) (fileSize % blockSize);
-                if (bytesToRead == 0 && fileSize > 0)
-                    bytesToRead = (int) blockSize;
+    /**
+     * Lee desde la posición indicada del archivo hasta llenar dst o llegar al
+     * final. Los bloques sin asignar se leen como ceros.
+     *
+     * @return bytes leídos, o -1 si position está en el final del archivo
+     */
+    public int read(Inode inode, long position, ByteBuffer dst) throws IOException {
+        Lock lock = inodeLocks.readLock(inode.getInodeNumber());
+        lock.lock();
+        try {
+            long fileSize = inode.getFileSize();
+            if (position >= fileSize) {
+                return -1;
             }
 
-            fileContent.put(blockData, 0, bytesToRead);
+            int blockSize = superblock.getBlockSize();
+            int length = (int) Math.min(fileSize - position, dst.remaining());
+            int firstBlock = (int) (position / blockSize);
+            int lastBlock = (int) ((position + length - 1) / blockSize);
+            int[] blockMap = allocation.mapRange(inode, firstBlock, lastBlock - firstBlock + 1);
+
+            ByteBuffer target = dst.slice(dst.position(), length);
+            readRuns(blockMap, (int) (position - (long) firstBlock * blockSize), target);
+            dst.position(dst.position() + length);
+            return length;
+        } finally {
+            lock.unlock();
         }
+    }
 
-        return fileContent.array();
+    /**
+     * Indica si la versión más reciente de un bloque está en memoria (caché o
+     * journal) y puede no coincidir con el disco
+     */
+    private boolean isBuffered(int blockNum) {
+        return (cache != null && cache.contains(blockNum)) || (journal != null && journal.contains(blockNum));
     }
 
     /**
-     * Escribe contenido a un archivo (sobrescribe)
+     * Llena dst con el contenido de los bloques de blockMap desde el byte
+     * offset del primero. Los bloques físicos consecutivos se leen del disco
+     * con una sola lectura; los que están en el caché o el journal se copian
+     * de ahí, porque pueden tener cambios que aún no se escriben, y los -1 se
+     * leen como ceros.
      */
-    public void writeFile(Inode inode, byte[] data) throws IOException {
-        long newSize = data.length;
-        long blockSize = superblock.getBlockSize(); // 1KB = 1024
-        int neededBlocks = (int) ((newSize + blockSize - 1) / blockSize);
-        if (newSize == 0)
-            neededBlocks = 0;
+    private void readRuns(int[] blockMap, int offset, ByteBuffer dst) throws IOException {
+        int blockSize = superblock.getBlockSize();
+        int index = 0;
+
+        while (dst.hasRemaining()) {
+            int blockNum = blockMap[index];
+            int length = Math.min(blockSize - offset, dst.remaining());
+
+            if (blockNum == -1) {
+                for (int i = 0; i < length; i++) {
+                    dst.put((byte) 0);
+                }
+                index++;
+            } else if (isBuffered(blockNum)) {
+                ByteBuffer block = readBlockView(blockNum);
+                block.limit(offset + length).position(offset);
+                dst.put(block);
+                index++;
+            } else {
+                // Extender el tramo mientras los bloques sigan contiguos
+                int run = 1;
+                while (length < dst.remaining() && index + run < blockMap.length
+                        && blockMap[index + run] == blockNum + run
+                        && !isBuffered(blockNum + run)) {
+                    length = Math.min(length + blockSize, dst.remaining());
+                    run++;
+                }
 
-        // Liberar bloques anteriores (simplificación: liberar todo y reasignar)
-        // En un sistema real optimizaríamos, pero para este proyecto es más seguro
-        // resetear
-        releaseInodeBlocks(inode);
+                ByteBuffer target = dst.slice(dst.position(), length);
+                if (device.read(target, getBlockOffset(blockNum) + offset) < length) {
+                    throw new EOFException("Lectura fuera del final del disco en el bloque " + blockNum);
+                }
+                dst.position(dst.position() + length);
+                index += run;
+            }
+            offset = 0;
+        }
+    }
 
-        // Asignar nuevos bloques y escribir
-        for (int i = 0; i < neededBlocks; i++) {
-            int blockNum = allocateDataBlock();
-            // Asignar bloque físico al bloque lógico i del inode
-            setBlockNumber(inode, i, blockNum);
+    /**
+     * Abre un canal de lectura sobre el archivo, con cursor propio
+     */
+    public InodeChannel openChannel(Inode inode) {
+        return new InodeChannel(this, inode);
+    }
 
-            // Preparar datos del bloque
-            byte[] blockData = new byte[(int) blockSize];
-            int start = i * (int) blockSize;
-            int length = Math.min((int) blockSize, data.length - start);
-            System.arraycopy(data, start, blockData, 0, length);
+    /**
+     * Abre un InputStream sobre el archivo que lo lee bloque a bloque
+     */
+    public InputStream openInputStream(Inode inode) {
+        return Channels.newInputStream(openChannel(inode));
+    }
 
-            writeDataBlock(blockNum, blockData);
+    /**
+     * Escribe contenido a un archivo (sobrescribe). Reutiliza los bloques que
+     * ya tiene, asigna solo los que falten y libera los que sobren.
+     */
+    public void writeFile(Inode inode, byte[] data) throws IOException {
+        Lock lock = inodeLocks.writeLock(inode.getInodeNumber());
+        lock.lock();
+        try {
+            write(inode, 0, ByteBuffer.wrap(data));
+            if (data.length < inode.getFileSize()) {
+                truncate(inode, data.length);
+            }
+        } finally {
+            lock.unlock();
         }
+    }
 
-        inode.setFileSize(newSize);
-        inode.setModificationTime(System.currentTimeMillis());
-        writeInode(inode);
+    /**
+     * Escribe src en la posición indicada del archivo. Solo se leen y
+     * escriben los bloques afectados y solo se asignan los bloques nuevos del
+     * final. Si position está después del final, el hueco queda en ceros.
+     *
+     * @return bytes escritos
+     */
+    public int write(Inode inode, long position, ByteBuffer src) throws IOException {
+        Lock lock = inodeLocks.writeLock(inode.getInodeNumber());
+        lock.lock();
+        try {
+            if (position < 0) {
+                throw new IllegalArgumentException("Posición negativa: " + position);
+            }
+            int length = src.remaining();
+            if (length == 0) {
+                return 0;
+            }
+
+            writeData(inode, position, src);
+            return length;
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
-     * Obtiene el número de bloque físico dado un índice lógico
+     * Agrega src al final del archivo
+     *
+     * @return bytes escritos
      */
-    private int getBlockNumber(Inode inode, int logicalBlockIndex) throws IOException {
-        // Directos
-        if (logicalBlockIndex < FSConstants.DIRECT_POINTERS) {
-            return inode.getDirectBlocks()[logicalBlockIndex];
+    public int append(Inode inode, ByteBuffer src) throws IOException {
+        Lock lock = inodeLocks.writeLock(inode.getInodeNumber());
+        lock.lock();
+        try {
+            return write(inode, inode.getFileSize(), src);
+        } finally {
+            lock.unlock();
         }
+    }
 
-        // Indirecto Simple (apunta a 1 bloque que contiene punteros)
-        // Capacidad: BlockSize / 4 bytes (int)
-        int blockSize = superblock.getBlockSize();
-        int ptrsPerBlock = blockSize / 4;
+    /**
+     * Cambia el tamaño del archivo. Al achicarlo se liberan solo los bloques
+     * después del nuevo final; al agrandarlo se agregan ceros.
+     */
+    public void truncate(Inode inode, long newSize) throws IOException {
+        Lock lock = inodeLocks.writeLock(inode.getInodeNumber());
+        lock.lock();
+        try {
+            if (newSize < 0) {
+                throw new IllegalArgumentException("Tamaño negativo: " + newSize);
+            }
 
-        int indirectIndex = logicalBlockIndex - FSConstants.DIRECT_POINTERS;
+            long oldSize = inode.getFileSize();
+            if (newSize > oldSize) {
+                writeData(inode, newSize, ByteBuffer.allocate(0));
+                return;
+            }
 
-        if (indirectIndex < ptrsPerBlock) {
-            int indirectBlock = inode.getSingleIndirect();
-            if (indirectBlock == -1)
-                return -1;
+            if (newSize < oldSize) {
+                int blockSize = superblock.getBlockSize();
+                int keepBlocks = (int) ((newSize + blockSize - 1) / blockSize);
+                truncateBlocks(inode, keepBlocks);
+
+                // Borrar la cola del último bloque, para que al volver a crecer
+                // no reaparezcan datos viejos
+                int tail = (int) (newSize % blockSize);
+                if (tail != 0) {
+                    int blockNum = allocation.getBlockNumber(inode, keepBlocks - 1);
+                    byte[] block = readBlock(blockNum);
+                    Arrays.fill(block, tail, blockSize, (byte) 0);
+                    writeDataRun(blockNum, block);
+                }
+            }
 
-            byte[] data = readDataBlock(indirectBlock);
-            ByteBuffer buffer = ByteBuffer.wrap(data);
-            return buffer.getInt(indirectIndex * 4);
+            inode.setFileSize(newSize);
+            inode.setModificationTime(System.currentTimeMillis());
+            writeInode(inode);
+            flushAllocationState();
+        } finally {
+            lock.unlock();
         }
-
-        // Indirecto Doble y Triple aquí si fuera necesario
-        return -1; // No implementado fully o fuera de rango
     }
 
     /**
-     * Asigna un bloque físico a un índice lógico
+     * Escribe src en position, rellenando con ceros desde el final anterior
+     * si position está después de él
      */
-    private void setBlockNumber(Inode inode, int logicalBlockIndex, int physicalBlock) throws IOException {
-        // Directos
-        if (logicalBlockIndex < FSConstants.DIRECT_POINTERS) {
-            inode.setDirectBlock(logicalBlockIndex, physicalBlock);
-            return;
+    private void writeData(Inode inode, long position, ByteBuffer src) throws IOException {
+        int blockSize = superblock.getBlockSize();
+        long oldSize = inode.getFileSize();
+        long end = position + src.remaining();
+        long from = Math.min(position, oldSize);
+
+        // Asignar solo los bloques nuevos del final
+        int oldBlocks = (int) ((oldSize + blockSize - 1) / blockSize);
+        int newBlocks = (int) ((Math.max(end, oldSize) + blockSize - 1) / blockSize);
+        if (newBlocks > oldBlocks) {
+            allocateBlocks(inode, oldBlocks, newBlocks - oldBlocks);
         }
 
-        int blockSize = superblock.getBlockSize();
-        int ptrsPerBlock = blockSize / 4;
-        int indirectIndex = logicalBlockIndex - FSConstants.DIRECT_POINTERS;
+        int firstBlock = (int) (from / blockSize);
+        int lastBlock = (int) ((end - 1) / blockSize);
+        int[] blockMap = allocation.mapRange(inode, firstBlock, lastBlock - firstBlock + 1);
+
+        // Una escritura por tramo de bloques físicos consecutivos
+        int i = 0;
+        while (i < blockMap.length) {
+            int runStart = i;
+            while (i + 1 < blockMap.length && i + 1 - runStart < MAX_RUN_BLOCKS
+                    && blockMap[i + 1] == blockMap[i] + 1) {
+                i++;
+            }
+            i++;
 
-        if (indirectIndex < ptrsPerBlock) {
-            int indirectBlock = inode.getSingleIndirect();
-            if (indirectBlock == -1) {
-                indirectBlock = allocateDataBlock();
-                inode.setSingleIndirect(indirectBlock);
-                // Inicializar con -1
-                byte[] initData = new byte[blockSize];
-                ByteBuffer buf = ByteBuffer.wrap(initData);
-                for (int j = 0; j < ptrsPerBlock; j++)
-                    buf.putInt(-1);
-                writeDataBlock(indirectBlock, initData);
+            long runFrom = (long) (firstBlock + runStart) * blockSize;
+            long runTo = (long) (firstBlock + i) * blockSize;
+            byte[] run = new byte[(int) (runTo - runFrom)];
+
+            // Bloques tocados solo en parte: conservar lo que ya tenían
+            if (runFrom < from && runFrom < oldSize) {
+                copyBlock(blockMap[runStart], run, 0);
+            }
+            if (runTo > end && runTo - blockSize < oldSize && (i - 1 > runStart || runFrom >= from)) {
+                copyBlock(blockMap[i - 1], run, run.length - blockSize);
             }
 
-            // Leer bloque indirecto
-            byte[] data = readDataBlock(indirectBlock);
-            ByteBuffer buffer = ByteBuffer.wrap(data);
+            // Hueco entre el final anterior y position: ceros
+            long zeroFrom = Math.max(runFrom, from);
+            long zeroTo = Math.min(runTo, position);
+            if (zeroFrom < zeroTo) {
+                Arrays.fill(run, (int) (zeroFrom - runFrom), (int) (zeroTo - runFrom), (byte) 0);
+            }
+
+            // Datos nuevos
+            long dataFrom = Math.max(runFrom, position);
+            long dataTo = Math.min(runTo, end);
+            if (dataFrom < dataTo) {
+                src.get(run, (int) (dataFrom - runFrom), (int) (dataTo - dataFrom));
+            }
 
-            // Actualizar puntero
-            buffer.putInt(indirectIndex * 4, physicalBlock);
+            writeDataRun(blockMap[runStart], run);
+        }
 
-            // Escribir cambios
-            writeDataBlock(indirectBlock, buffer.array());
-            return;
+        inode.setFileSize(Math.max(oldSize, end));
+        inode.setModificationTime(System.currentTimeMillis());
+        writeInode(inode);
+        flushAllocationState();
+    }
+
+    /**
+     * Copia el contenido actual de un bloque en dst
+     */
+    private void copyBlock(int blockNum, byte[] dst, int offset) throws IOException {
+        readBlockView(blockNum).get(dst, offset, superblock.getBlockSize());
+    }
+
+    /**
+     * Escribe bloques de datos consecutivos directo al dispositivo y descarta
+     * del caché las copias viejas de esos bloques
+     */
+    private void writeDataRun(int firstBlock, byte[] data) throws IOException {
+        int blocks = data.length / superblock.getBlockSize();
+        if (journal != null) {
+            // Un bloque que fue de metadatos no debe volver a escribirse
+            // encima de los datos en el checkpoint
+            for (int block = firstBlock; block < firstBlock + blocks; block++) {
+                journal.revoke(block);
+            }
+        }
+        device.write(ByteBuffer.wrap(data), getBlockOffset(firstBlock));
+        if (cache != null) {
+            for (int block = firstBlock; block < firstBlock + blocks; block++) {
+                cache.invalidate(block);
+            }
+        }
+    }
+
+    /**
+     * Lee un bloque lógico de un archivo (acceso aleatorio)
+     */
+    public byte[] readFileBlock(Inode inode, int logicalBlock) throws IOException {
+        Lock lock = inodeLocks.readLock(inode.getInodeNumber());
+        lock.lock();
+        try {
+            int blockNum = allocation.getBlockNumber(inode, logicalBlock);
+            if (blockNum == -1) {
+                throw new IOException("El bloque " + logicalBlock + " no está asignado");
+            }
+            return readBlock(blockNum);
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -1058,60 +2628,54 @@ public class FileSystem {
      * Verifica si el sistema de archivos está montado
      */
     public boolean isMounted() {
-        return fsFile != null;
+        return device != null;
     }
 
     /**
      * Lee un bloque de datos físico
      */
     private byte[] readDataBlock(int blockNum) throws IOException {
-        int blockSize = superblock.getBlockSize();
-        byte[] buffer = new byte[blockSize]; // Usamos el tamaño de bloque real
-        long offset = (long) blockNum * blockSize;
-
-        fsFile.seek(offset);
-        fsFile.read(buffer);
-
-        return buffer;
+        return readBlock(blockNum);
     }
 
     /**
-     * Escribe un bloque de datos físico
+     * Obtiene la lista de bloques físicos asignados a un inodo
      */
-    private void writeDataBlock(int blockNum, byte[] data) throws IOException {
-        int blockSize = superblock.getBlockSize();
-        long offset = (long) blockNum * blockSize;
+    public List<Integer> getAllocatedBlocks(Inode inode) throws IOException {
+        Lock lock = inodeLocks.readLock(inode.getInodeNumber());
+        lock.lock();
+        try {
+            List<Integer> blocks = new ArrayList<>();
+
+            int blockSize = superblock.getBlockSize();
+            int numBlocks = (int) ((inode.getFileSize() + blockSize - 1) / blockSize);
+            for (int block : allocation.mapBlocks(inode, numBlocks)) {
+                if (block != -1) {
+                    blocks.add(block);
+                }
+            }
 
-        fsFile.seek(offset);
-        // Si data es menor que blockSize, rellenar ceros? No necesariamente,
-        // fsFile.write escribe lo que hay.
-        // Pero para consistencia de bloques, mejor escribir blockSize.
-        if (data.length != blockSize) {
-            byte[] buffer = new byte[blockSize];
-            System.arraycopy(data, 0, buffer, 0, Math.min(data.length, blockSize));
-            fsFile.write(buffer);
-        } else {
-            fsFile.write(data);
+            return blocks;
+        } finally {
+            lock.unlock();
         }
     }
 
     /**
-     * Obtiene la lista de bloques físicos asignados a un inodo
+     * Obtiene los punteros almacenados en el bloque indirecto simple
      */
-    public List<Integer> getAllocatedBlocks(Inode inode) throws IOException {
-        List<Integer> blocks = new ArrayList<>();
+    public List<Integer> getIndirectBlockPointers(Inode inode) throws IOException {
+        Lock lock = inodeLocks.readLock(inode.getInodeNumber());
+        lock.lock();
+        try {
+            List<Integer> pointers = new ArrayList<>();
 
-        // Bloques directos
-        for (int block : inode.getDirectBlocks()) {
-            if (block != -1) {
-                blocks.add(block);
+            int indirectBlock = inode.getSingleIndirect();
+            if (indirectBlock == -1) {
+                return pointers; // No hay bloque indirecto
             }
-        }
 
-        // Bloque indirecto simple
-        int indirectBlock = inode.getSingleIndirect();
-        if (indirectBlock != -1) {
-            // Leemos el bloque indirecto para sacar los punteros
+            // Leer el bloque indirecto
             byte[] data = readDataBlock(indirectBlock);
             ByteBuffer buffer = ByteBuffer.wrap(data);
             int ptrsPerBlock = superblock.getBlockSize() / 4;
@@ -1119,37 +2683,13 @@ public class FileSystem {
             for (int i = 0; i < ptrsPerBlock; i++) {
                 int ptr = buffer.getInt();
                 if (ptr != -1) {
-                    blocks.add(ptr);
+                    pointers.add(ptr);
                 }
             }
-        }
-
-        return blocks;
-    }
-
-    /**
-     * Obtiene los punteros almacenados en el bloque indirecto simple
-     */
-    public List<Integer> getIndirectBlockPointers(Inode inode) throws IOException {
-        List<Integer> pointers = new ArrayList<>();
-
-        int indirectBlock = inode.getSingleIndirect();
-        if (indirectBlock == -1) {
-            return pointers; // No hay bloque indirecto
-        }
-
-        // Leer el bloque indirecto
-        byte[] data = readDataBlock(indirectBlock);
-        ByteBuffer buffer = ByteBuffer.wrap(data);
-        int ptrsPerBlock = superblock.getBlockSize() / 4;
 
-        for (int i = 0; i < ptrsPerBlock; i++) {
-            int ptr = buffer.getInt();
-            if (ptr != -1) {
-                pointers.add(ptr);
-            }
+            return pointers;
+        } finally {
+            lock.unlock();
         }
-
-        return pointers;
     }
 }
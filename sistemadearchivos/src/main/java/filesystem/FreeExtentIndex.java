@@ -0,0 +1,155 @@
+package filesystem;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Índice de los rangos libres del data bitmap, para asignar bloques
+ * contiguos sin recorrer el bitmap en cada asignación. Los números de bloque
+ * son relativos al inicio de la zona de datos (índices del bitmap).
+ *
+ * Se construye una vez desde el bitmap y luego se mantiene con allocate/free.
+ *
+ * @author dylan y Gadyr
+ */
+public class FreeExtentIndex {
+
+    private final TreeMap<Integer, Integer> byStart; // inicio -> largo
+    private final TreeMap<Integer, TreeSet<Integer>> byLength; // largo -> inicios
+
+    public FreeExtentIndex() {
+        this.byStart = new TreeMap<>();
+        this.byLength = new TreeMap<>();
+    }
+
+    /**
+     * Construye el índice recorriendo los rangos libres del bitmap
+     */
+    public static FreeExtentIndex fromBitmap(Bitmap bitmap) {
+        FreeExtentIndex index = new FreeExtentIndex();
+        int start = bitmap.findFreeFrom(0);
+        while (start != -1) {
+            int end = bitmap.findAllocatedFrom(start);
+            index.add(start, end - start);
+            start = bitmap.findFreeFrom(end);
+        }
+        return index;
+    }
+
+    /**
+     * Best fit: el rango libre más pequeño con al menos length bloques
+     *
+     * @return el inicio del rango o -1 si ninguno alcanza
+     */
+    public int findBestFit(int length) {
+        Map.Entry<Integer, TreeSet<Integer>> entry = byLength.ceilingEntry(length);
+        return entry == null ? -1 : entry.getValue().first();
+    }
+
+    /**
+     * First fit desde from: el primer rango libre que empieza en [from, to)
+     * con al menos length bloques (puede seguir después de to). Un rango que
+     * empieza antes de from cuenta desde from.
+     *
+     * @return el inicio o -1 si ninguno alcanza
+     */
+    public int findFitIn(int from, int to, int length) {
+        Map.Entry<Integer, Integer> first = byStart.floorEntry(from);
+        if (first != null && first.getKey() + first.getValue() - from >= length) {
+            return from;
+        }
+        for (Map.Entry<Integer, Integer> entry : byStart.subMap(from, false, to, false).entrySet()) {
+            if (entry.getValue() >= length) {
+                return entry.getKey();
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Largo del rango libre que empieza exactamente en start, o 0
+     */
+    public int getLengthAt(int start) {
+        Integer length = byStart.get(start);
+        return length == null ? 0 : length;
+    }
+
+    /**
+     * Rango libre más grande, o null si no hay bloques libres
+     */
+    public Extent getLargest() {
+        if (byLength.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Integer, TreeSet<Integer>> entry = byLength.lastEntry();
+        return new Extent(entry.getValue().first(), entry.getKey());
+    }
+
+    /**
+     * Marca como ocupados los bloques [start, start + length), que deben estar
+     * libres
+     */
+    public void allocate(int start, int length) {
+        Map.Entry<Integer, Integer> free = byStart.floorEntry(start);
+        if (free == null || free.getKey() + free.getValue() < start + length) {
+            throw new IllegalStateException("El rango " + start + "+" + length + " no está libre");
+        }
+
+        int freeStart = free.getKey();
+        int freeEnd = freeStart + free.getValue();
+        remove(freeStart, free.getValue());
+        if (start > freeStart) {
+            add(freeStart, start - freeStart);
+        }
+        if (start + length < freeEnd) {
+            add(start + length, freeEnd - start - length);
+        }
+    }
+
+    /**
+     * Marca como libres los bloques [start, start + length), uniéndolos con
+     * los rangos libres vecinos
+     */
+    public void free(int start, int length) {
+        int newStart = start;
+        int newEnd = start + length;
+
+        Map.Entry<Integer, Integer> before = byStart.floorEntry(start);
+        if (before != null && before.getKey() + before.getValue() >= start) {
+            newStart = before.getKey();
+            newEnd = Math.max(newEnd, before.getKey() + before.getValue());
+            remove(before.getKey(), before.getValue());
+        }
+
+        Map.Entry<Integer, Integer> after = byStart.ceilingEntry(start);
+        while (after != null && after.getKey() <= newEnd) {
+            newEnd = Math.max(newEnd, after.getKey() + after.getValue());
+            remove(after.getKey(), after.getValue());
+            after = byStart.ceilingEntry(start);
+        }
+
+        add(newStart, newEnd - newStart);
+    }
+
+    /**
+     * Cantidad de rangos libres (una medida de la fragmentación)
+     */
+    public int getExtentCount() {
+        return byStart.size();
+    }
+
+    private void add(int start, int length) {
+        byStart.put(start, length);
+        byLength.computeIfAbsent(length, k -> new TreeSet<>()).add(start);
+    }
+
+    private void remove(int start, int length) {
+        byStart.remove(start);
+        TreeSet<Integer> starts = byLength.get(length);
+        starts.remove(start);
+        if (starts.isEmpty()) {
+            byLength.remove(length);
+        }
+    }
+}
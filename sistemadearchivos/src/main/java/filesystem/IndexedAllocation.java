@@ -0,0 +1,448 @@
+package filesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Asignación indexada: 12 punteros directos en el inode y bloques de punteros
+ * de indirección simple, doble y triple
+ *
+ * @author dylan y Gadyr
+ */
+class IndexedAllocation implements AllocationStrategy {
+
+    private final FileSystem fs;
+
+    IndexedAllocation(FileSystem fs) {
+        this.fs = fs;
+    }
+
+    @Override
+    public int getType() {
+        return FSConstants.ALLOC_INDEXED;
+    }
+
+    @Override
+    public int getBlockNumber(Inode inode, int logicalBlock) throws IOException {
+        int[] cached = inode.getBlockMap();
+        if (cached != null && logicalBlock < cached.length) {
+            return cached[logicalBlock];
+        }
+
+        // Directos
+        if (logicalBlock < FSConstants.DIRECT_POINTERS) {
+            return inode.getDirectBlocks()[logicalBlock];
+        }
+
+        // Indirectos: se baja un nivel por cada bloque de punteros
+        long index = logicalBlock - FSConstants.DIRECT_POINTERS;
+        for (int level = 1; level <= 3; level++) {
+            long capacity = getCapacity(level);
+            if (index < capacity) {
+                int block = getRoot(inode, level);
+                for (int l = level; l > 0 && block != -1; l--) {
+                    long span = getCapacity(l - 1);
+                    block = fs.readBlockView(block).getInt((int) (index / span) * 4);
+                    index %= span;
+                }
+                return block;
+            }
+            index -= capacity;
+        }
+
+        return -1; // fuera del rango direccionable
+    }
+
+    @Override
+    public int[] mapBlocks(Inode inode, int blockCount) throws IOException {
+        int[] cached = inode.getBlockMap();
+        if (cached != null && cached.length == blockCount) {
+            return cached;
+        }
+
+        int[] blocks = new int[blockCount];
+        Arrays.fill(blocks, -1);
+
+        int direct = Math.min(blockCount, FSConstants.DIRECT_POINTERS);
+        System.arraycopy(inode.getDirectBlocks(), 0, blocks, 0, direct);
+
+        // Cada bloque de punteros se lee una sola vez
+        int position = direct;
+        for (int level = 1; level <= 3 && position < blockCount; level++) {
+            position = mapTree(getRoot(inode, level), level, blocks, position);
+        }
+
+        inode.setBlockMap(blocks);
+        return blocks;
+    }
+
+    @Override
+    public int[] mapRange(Inode inode, int firstLogicalBlock, int count) throws IOException {
+        int[] cached = inode.getBlockMap();
+        if (cached != null && firstLogicalBlock + count <= cached.length) {
+            return Arrays.copyOfRange(cached, firstLogicalBlock, firstLogicalBlock + count);
+        }
+
+        int[] blocks = new int[count];
+        Arrays.fill(blocks, -1);
+        long end = (long) firstLogicalBlock + count;
+
+        // Directos
+        for (int logical = firstLogicalBlock; logical < Math.min(end, FSConstants.DIRECT_POINTERS); logical++) {
+            blocks[logical - firstLogicalBlock] = inode.getDirectBlocks()[logical];
+        }
+
+        // Indirectos: solo los bloques de punteros que cubren el rango, cada
+        // uno leído una vez
+        long treeStart = FSConstants.DIRECT_POINTERS;
+        for (int level = 1; level <= 3 && treeStart < end; level++) {
+            long treeEnd = treeStart + getCapacity(level);
+            if (treeEnd > firstLogicalBlock) {
+                mapTreeRange(getRoot(inode, level), level, Math.max(firstLogicalBlock - treeStart, 0),
+                        Math.min(end, treeEnd) - treeStart, blocks, treeStart - firstLogicalBlock);
+            }
+            treeStart = treeEnd;
+        }
+        return blocks;
+    }
+
+    /**
+     * Llena en blocks los punteros [from, to) de un árbol de punteros (índices
+     * relativos al árbol); el bloque relativo p va en blocks[base + p]
+     */
+    private void mapTreeRange(int block, int level, long from, long to, int[] blocks, long base)
+            throws IOException {
+        if (block == -1) {
+            return; // árbol ausente: sus bloques quedan en -1
+        }
+
+        ByteBuffer pointers = fs.readBlockView(block);
+        long span = getCapacity(level - 1);
+        for (int slot = (int) (from / span); slot * span < to; slot++) {
+            int ptr = pointers.getInt(slot * 4);
+            long childStart = slot * span;
+            if (level == 1) {
+                blocks[(int) (base + childStart)] = ptr;
+            } else {
+                mapTreeRange(ptr, level - 1, Math.max(from - childStart, 0), Math.min(to - childStart, span),
+                        blocks, base + childStart);
+            }
+        }
+    }
+
+    /**
+     * Recorre un árbol de punteros de la profundidad indicada llenando blocks
+     * desde position
+     *
+     * @return la posición siguiente al último bloque que cubre el árbol
+     */
+    private int mapTree(int block, int level, int[] blocks, int position) throws IOException {
+        if (block == -1) {
+            // Árbol ausente: sus bloques quedan en -1
+            return (int) Math.min(blocks.length, position + getCapacity(level));
+        }
+
+        ByteBuffer pointers = fs.readBlockView(block);
+        int ptrsPerBlock = getPointersPerBlock();
+        for (int i = 0; i < ptrsPerBlock && position < blocks.length; i++) {
+            int ptr = pointers.getInt(i * 4);
+            if (level == 1) {
+                blocks[position++] = ptr;
+            } else {
+                position = mapTree(ptr, level - 1, blocks, position);
+            }
+        }
+        return position;
+    }
+
+    @Override
+    public void allocateBlocks(Inode inode, int firstLogicalBlock, int count) throws IOException {
+        inode.invalidateBlockMap();
+
+        long maxBlocks = getMaxBlocks();
+        if ((long) firstLogicalBlock + count > maxBlocks) {
+            throw new IOException("El archivo excede el máximo de " + maxBlocks + " bloques");
+        }
+
+        // Los bloques de punteros modificados se acumulan y se escriben una vez
+        Map<Integer, ByteBuffer> pending = new LinkedHashMap<>();
+
+        // Cada bloque se busca a continuación del anterior; el primero de un
+        // archivo, en el grupo de su inode
+        int previous = firstLogicalBlock > 0 ? getBlockNumber(inode, firstLogicalBlock - 1) : -1;
+        int goal = previous >= 0 ? previous + 1 : fs.getDataGoal(inode);
+
+        // Si falta lugar a mitad de camino se deshace todo: los bloques de
+        // punteros nuevos todavía no se escribieron y las raíces del inode
+        // apuntarían a basura
+        int[] directBlocks = inode.getDirectBlocks().clone();
+        int[] roots = {getRoot(inode, 1), getRoot(inode, 2), getRoot(inode, 3)};
+        List<Integer> allocated = new ArrayList<>();
+        try {
+            for (int logical = firstLogicalBlock; logical < firstLogicalBlock + count; logical++) {
+                int blockNum = fs.allocateDataBlock(goal);
+                allocated.add(blockNum);
+                goal = blockNum + 1;
+
+                if (logical < FSConstants.DIRECT_POINTERS) {
+                    inode.setDirectBlock(logical, blockNum);
+                } else {
+                    setIndirectPointer(inode, logical, blockNum, pending, allocated);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            for (int block : allocated) {
+                fs.freeDataBlock(block);
+            }
+            for (int i = 0; i < FSConstants.DIRECT_POINTERS; i++) {
+                inode.setDirectBlock(i, directBlocks[i]);
+            }
+            for (int level = 1; level <= 3; level++) {
+                setRoot(inode, level, roots[level - 1]);
+            }
+            inode.invalidateBlockMap();
+            throw e;
+        }
+
+        for (Map.Entry<Integer, ByteBuffer> entry : pending.entrySet()) {
+            fs.writeBlock(entry.getKey(), entry.getValue().array());
+        }
+        inode.invalidateBlockMap();
+    }
+
+    /**
+     * Guarda el puntero de un bloque lógico indirecto, creando los bloques de
+     * punteros intermedios que falten
+     */
+    private void setIndirectPointer(Inode inode, int logicalBlock, int physicalBlock,
+            Map<Integer, ByteBuffer> pending, List<Integer> allocated) throws IOException {
+        long index = logicalBlock - FSConstants.DIRECT_POINTERS;
+        int level = 1;
+        while (index >= getCapacity(level)) {
+            index -= getCapacity(level);
+            level++;
+        }
+
+        int block = getRoot(inode, level);
+        if (block == -1) {
+            block = newPointerBlock(physicalBlock + 1, pending, allocated);
+            setRoot(inode, level, block);
+        }
+
+        for (int l = level; l > 1; l--) {
+            long span = getCapacity(l - 1);
+            int slot = (int) (index / span);
+            ByteBuffer pointers = getPointerBlock(block, pending);
+            int child = pointers.getInt(slot * 4);
+            if (child == -1) {
+                child = newPointerBlock(physicalBlock + 1, pending, allocated);
+                pointers.putInt(slot * 4, child);
+            }
+            block = child;
+            index %= span;
+        }
+
+        getPointerBlock(block, pending).putInt((int) index * 4, physicalBlock);
+    }
+
+    /**
+     * Copia modificable de un bloque de punteros
+     */
+    private ByteBuffer getPointerBlock(int block, Map<Integer, ByteBuffer> pending) throws IOException {
+        ByteBuffer pointers = pending.get(block);
+        if (pointers == null) {
+            pointers = ByteBuffer.wrap(fs.readBlock(block));
+            pending.put(block, pointers);
+        }
+        return pointers;
+    }
+
+    /**
+     * Asigna un bloque de punteros nuevo, lleno de -1, cerca de goal
+     */
+    private int newPointerBlock(int goal, Map<Integer, ByteBuffer> pending, List<Integer> allocated)
+            throws IOException {
+        int block = fs.allocateDataBlock(goal);
+        allocated.add(block);
+        byte[] initData = new byte[fs.getSuperblock().getBlockSize()];
+        ByteBuffer buf = ByteBuffer.wrap(initData);
+        for (int j = 0; j < getPointersPerBlock(); j++) {
+            buf.putInt(-1);
+        }
+        pending.put(block, buf);
+        return block;
+    }
+
+    @Override
+    public void releaseBlocks(Inode inode) throws IOException {
+        inode.invalidateBlockMap();
+
+        // 1. Liberar bloques directos
+        for (int i = 0; i < FSConstants.DIRECT_POINTERS; i++) {
+            int blockNum = inode.getDirectBlocks()[i];
+            if (blockNum != -1) {
+                fs.freeDataBlock(blockNum);
+                inode.setDirectBlock(i, -1);
+            }
+        }
+
+        // 2. Liberar indirección simple, doble y triple
+        for (int level = 1; level <= 3; level++) {
+            int root = getRoot(inode, level);
+            if (root != -1) {
+                freeIndirectBlock(root, level - 1); // 0 indica punteros a datos
+                setRoot(inode, level, -1);
+            }
+        }
+    }
+
+    @Override
+    public void truncateBlocks(Inode inode, int keepBlocks) throws IOException {
+        if (keepBlocks == 0) {
+            releaseBlocks(inode);
+            return;
+        }
+        inode.invalidateBlockMap();
+
+        // 1. Bloques directos
+        for (int i = keepBlocks; i < FSConstants.DIRECT_POINTERS; i++) {
+            int blockNum = inode.getDirectBlocks()[i];
+            if (blockNum != -1) {
+                fs.freeDataBlock(blockNum);
+                inode.setDirectBlock(i, -1);
+            }
+        }
+
+        // 2. Árboles de punteros: completos si quedan después del corte, o
+        // recortados si el corte cae dentro
+        Map<Integer, ByteBuffer> pending = new LinkedHashMap<>();
+        long treeStart = FSConstants.DIRECT_POINTERS;
+        for (int level = 1; level <= 3; level++) {
+            int root = getRoot(inode, level);
+            if (root != -1) {
+                if (keepBlocks <= treeStart) {
+                    freeIndirectBlock(root, level - 1);
+                    setRoot(inode, level, -1);
+                } else if (keepBlocks < treeStart + getCapacity(level)) {
+                    truncateTree(root, level, keepBlocks - treeStart, pending);
+                }
+            }
+            treeStart += getCapacity(level);
+        }
+
+        for (Map.Entry<Integer, ByteBuffer> entry : pending.entrySet()) {
+            fs.writeBlock(entry.getKey(), entry.getValue().array());
+        }
+    }
+
+    /**
+     * Libera los punteros de un árbol desde el bloque relativo keep en adelante
+     */
+    private void truncateTree(int block, int level, long keep, Map<Integer, ByteBuffer> pending)
+            throws IOException {
+        long span = getCapacity(level - 1);
+        int ptrsPerBlock = getPointersPerBlock();
+        ByteBuffer pointers = null;
+
+        for (int slot = (int) (keep / span); slot < ptrsPerBlock; slot++) {
+            if (pointers == null) {
+                pointers = getPointerBlock(block, pending);
+            }
+            int ptr = pointers.getInt(slot * 4);
+            if (ptr == -1 || ptr == 0) {
+                continue;
+            }
+
+            long childStart = slot * span;
+            if (childStart >= keep) {
+                if (level == 1) {
+                    fs.freeDataBlock(ptr);
+                } else {
+                    freeIndirectBlock(ptr, level - 2);
+                }
+                pointers.putInt(slot * 4, -1);
+            } else {
+                truncateTree(ptr, level - 1, keep - childStart, pending);
+            }
+        }
+    }
+
+    /**
+     * Libera recursivamente bloques indirectos
+     */
+    private void freeIndirectBlock(int blockNum, int level) throws IOException {
+        ByteBuffer buffer = fs.readBlockView(blockNum);
+
+        int pointersPerBlock = getPointersPerBlock();
+        for (int i = 0; i < pointersPerBlock; i++) {
+            int ptr = buffer.getInt(i * 4);
+            if (ptr != -1 && ptr != 0) {
+                if (level == 0) {
+                    fs.freeDataBlock(ptr);
+                } else {
+                    freeIndirectBlock(ptr, level - 1);
+                }
+            }
+        }
+
+        // Liberar el bloque de punteros actual
+        fs.freeDataBlock(blockNum);
+    }
+
+    /**
+     * Bloque raíz del árbol de punteros de nivel 1 (simple), 2 (doble) o 3
+     * (triple)
+     */
+    private int getRoot(Inode inode, int level) {
+        switch (level) {
+            case 1:
+                return inode.getSingleIndirect();
+            case 2:
+                return inode.getDoubleIndirect();
+            default:
+                return inode.getTripleIndirect();
+        }
+    }
+
+    private void setRoot(Inode inode, int level, int block) {
+        switch (level) {
+            case 1:
+                inode.setSingleIndirect(block);
+                break;
+            case 2:
+                inode.setDoubleIndirect(block);
+                break;
+            default:
+                inode.setTripleIndirect(block);
+        }
+    }
+
+    /**
+     * Bloques de datos que cubre un árbol de punteros de la profundidad
+     * indicada (punteros por bloque elevado al nivel)
+     */
+    private long getCapacity(int level) {
+        long capacity = 1;
+        for (int i = 0; i < level; i++) {
+            capacity *= getPointersPerBlock();
+        }
+        return capacity;
+    }
+
+    /**
+     * Máximo de bloques de un archivo, limitado a lo que cabe en un índice int
+     */
+    private long getMaxBlocks() {
+        long max = FSConstants.DIRECT_POINTERS + getCapacity(1) + getCapacity(2) + getCapacity(3);
+        return Math.min(max, Integer.MAX_VALUE);
+    }
+
+    private int getPointersPerBlock() {
+        return fs.getSuperblock().getBlockSize() / 4;
+    }
+}
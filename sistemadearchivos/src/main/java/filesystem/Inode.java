@@ -1,7 +1,9 @@
 package filesystem;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 /**
  *
@@ -28,12 +30,19 @@ public class Inode {
     private int doubleIndirect;
     private int tripleIndirect;
 
+    // asignación contigua: rangos de bloques consecutivos
+    private List<Extent> extents;
+
+    // Mapa lógico -> físico ya resuelto; solo en memoria, no se serializa
+    private int[] blockMap;
+
     public Inode() {
         this.directBlocks = new int[FSConstants.DIRECT_POINTERS];
         Arrays.fill(directBlocks, -1);
         this.singleIndirect = -1;
         this.doubleIndirect = -1;
         this.tripleIndirect = -1;
+        this.extents = new ArrayList<>();
         this.fileType = FSConstants.TYPE_FREE;
         this.linkCount = 0;
         this.isOpen = 0;
@@ -157,6 +166,7 @@ public class Inode {
     public void setDirectBlock(int index, int blockNumber) {
         if (index >= 0 && index < FSConstants.DIRECT_POINTERS) {
             this.directBlocks[index] = blockNumber;
+            this.blockMap = null;
         }
     }
 
@@ -166,6 +176,7 @@ public class Inode {
 
     public void setSingleIndirect(int singleIndirect) {
         this.singleIndirect = singleIndirect;
+        this.blockMap = null;
     }
 
     public int getDoubleIndirect() {
@@ -174,6 +185,7 @@ public class Inode {
 
     public void setDoubleIndirect(int doubleIndirect) {
         this.doubleIndirect = doubleIndirect;
+        this.blockMap = null;
     }
 
     public int getTripleIndirect() {
@@ -182,6 +194,52 @@ public class Inode {
 
     public void setTripleIndirect(int tripleIndirect) {
         this.tripleIndirect = tripleIndirect;
+        this.blockMap = null;
+    }
+
+    public List<Extent> getExtents() {
+        return extents;
+    }
+
+    public void addExtent(Extent extent) {
+        if (extents.size() >= FSConstants.MAX_EXTENTS) {
+            throw new IllegalStateException("El inode ya tiene " + FSConstants.MAX_EXTENTS + " extents");
+        }
+        extents.add(extent);
+        blockMap = null;
+    }
+
+    public void clearExtents() {
+        extents.clear();
+        blockMap = null;
+    }
+
+    /**
+     * Mapa de bloques lógicos a físicos resuelto previamente, o null. Lo
+     * mantiene la estrategia de asignación y se descarta cuando cambian los
+     * bloques del inode.
+     * 
+     * @return
+     */
+    public int[] getBlockMap() {
+        return blockMap;
+    }
+
+    public void setBlockMap(int[] blockMap) {
+        this.blockMap = blockMap;
+    }
+
+    public void invalidateBlockMap() {
+        this.blockMap = null;
+    }
+
+    /**
+     * Verifica si los bloques del inode se describen con extents
+     * 
+     * @return
+     */
+    public boolean hasExtents() {
+        return !extents.isEmpty();
     }
 
     /**
@@ -257,6 +315,18 @@ public class Inode {
         buffer.putInt(doubleIndirect);
         buffer.putInt(tripleIndirect);
 
+        // Extents (en imágenes anteriores estos bytes son 0 = sin extents)
+        buffer.putInt(extents.size());
+        for (int i = 0; i < FSConstants.MAX_EXTENTS; i++) {
+            if (i < extents.size()) {
+                buffer.putInt(extents.get(i).getStart());
+                buffer.putInt(extents.get(i).getLength());
+            } else {
+                buffer.putInt(0);
+                buffer.putInt(0);
+            }
+        }
+
         return buffer.array();
     }
 
@@ -267,8 +337,17 @@ public class Inode {
      * @return
      */
     public static Inode fromBytes(byte[] data) {
-        ByteBuffer buffer = ByteBuffer.wrap(data);
+        return fromBuffer(ByteBuffer.wrap(data));
+    }
 
+    /**
+     * Deserializa un Inode leyendo desde la posición actual del buffer
+     * (por ejemplo, un slice de un disco mapeado en memoria)
+     * 
+     * @param buffer
+     * @return
+     */
+    public static Inode fromBuffer(ByteBuffer buffer) {
         Inode inode = new Inode();
         inode.inodeNumber = buffer.getInt();
         inode.fileType = buffer.getInt();
@@ -296,6 +375,16 @@ public class Inode {
         inode.doubleIndirect = buffer.getInt();
         inode.tripleIndirect = buffer.getInt();
 
+        // Extents
+        int extentCount = buffer.getInt();
+        for (int i = 0; i < FSConstants.MAX_EXTENTS; i++) {
+            int start = buffer.getInt();
+            int length = buffer.getInt();
+            if (i < extentCount) {
+                inode.extents.add(new Extent(start, length));
+            }
+        }
+
         return inode;
     }
 }
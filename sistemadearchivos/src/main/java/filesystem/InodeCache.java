@@ -0,0 +1,170 @@
+package filesystem;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Caché de inodes deserializados, indexado por número de inode. Todas las
+ * lecturas de un mismo inode devuelven la misma instancia compartida.
+ *
+ * Los inodes modificados quedan sucios hasta que el sistema de archivos los
+ * escribe en lote (agrupados por bloque de la tabla de inodes). Solo se
+ * desalojan inodes limpios. Los métodos están sincronizados para que varios
+ * hilos puedan leer inodes a la vez.
+ *
+ * Un inode desalojado que alguien todavía tiene en uso sigue siendo la
+ * instancia de ese número (se recuerda con una referencia débil): si se
+ * leyera otra vez del disco, dos hilos podrían modificar copias distintas.
+ *
+ * @author dylan y Gadyr
+ */
+public class InodeCache {
+
+    public static final int DEFAULT_CAPACITY = 4096; // inodes
+
+    private final int capacity;
+
+    // LinkedHashMap en orden de acceso: el primero es el menos usado
+    private final LinkedHashMap<Integer, Inode> inodes;
+    private final TreeSet<Integer> dirty;
+    private final Set<Integer> flushing; // escribiéndose, todavía no desalojables
+
+    // Inodes desalojados que pueden seguir en uso
+    private final Map<Integer, InodeReference> evicted;
+    private final ReferenceQueue<Inode> collected;
+
+    private static final class InodeReference extends WeakReference<Inode> {
+        final int inodeNumber;
+
+        InodeReference(Inode inode, ReferenceQueue<Inode> queue) {
+            super(inode, queue);
+            this.inodeNumber = inode.getInodeNumber();
+        }
+    }
+
+    public InodeCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("La capacidad del caché debe ser positiva");
+        }
+        this.capacity = capacity;
+        this.inodes = new LinkedHashMap<>(16, 0.75f, true);
+        this.dirty = new TreeSet<>();
+        this.flushing = new HashSet<>();
+        this.evicted = new HashMap<>();
+        this.collected = new ReferenceQueue<>();
+    }
+
+    /**
+     * Devuelve el inode cacheado o null si no está en memoria
+     */
+    public synchronized Inode get(int inodeNumber) {
+        Inode inode = inodes.get(inodeNumber);
+        if (inode != null) {
+            return inode;
+        }
+
+        // Si todavía está en uso, vuelve al caché
+        InodeReference reference = evicted.remove(inodeNumber);
+        inode = reference != null ? reference.get() : null;
+        if (inode != null) {
+            inodes.put(inodeNumber, inode);
+            evictIfNeeded();
+        }
+        return inode;
+    }
+
+    /**
+     * Agrega un inode leído del disco (limpio). Si ya hay una instancia de
+     * ese inode (otro hilo lo leyó antes o sigue en uso) se conserva esa.
+     *
+     * @return la instancia que queda en el caché
+     */
+    public synchronized Inode put(Inode inode) {
+        Inode existing = get(inode.getInodeNumber());
+        if (existing != null) {
+            return existing;
+        }
+        inodes.put(inode.getInodeNumber(), inode);
+        evictIfNeeded();
+        return inode;
+    }
+
+    /**
+     * Agrega o reemplaza un inode y lo marca como sucio
+     */
+    public synchronized void putDirty(Inode inode) {
+        inodes.put(inode.getInodeNumber(), inode);
+        evicted.remove(inode.getInodeNumber());
+        dirty.add(inode.getInodeNumber());
+        evictIfNeeded();
+    }
+
+    /**
+     * Inodes sucios en orden de número de inode. Quedan limpios, pero no se
+     * desalojan hasta endFlush(): si otro hilo los modifica mientras tanto,
+     * vuelven a quedar sucios.
+     */
+    public synchronized List<Inode> beginFlush() {
+        List<Inode> result = new ArrayList<>(dirty.size());
+        for (int inodeNumber : dirty) {
+            result.add(inodes.get(inodeNumber));
+        }
+        flushing.addAll(dirty);
+        dirty.clear();
+        return result;
+    }
+
+    /**
+     * Indica que los inodes de beginFlush() ya se escribieron
+     */
+    public synchronized void endFlush() {
+        flushing.clear();
+        evictIfNeeded();
+    }
+
+    public synchronized int dirtyCount() {
+        return dirty.size();
+    }
+
+    public synchronized int size() {
+        return inodes.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized void clear() {
+        inodes.clear();
+        dirty.clear();
+        flushing.clear();
+        evicted.clear();
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<Integer, Inode>> it = inodes.entrySet().iterator();
+        while (inodes.size() > capacity && it.hasNext()) {
+            Map.Entry<Integer, Inode> eldest = it.next();
+            if (!dirty.contains(eldest.getKey()) && !flushing.contains(eldest.getKey())) {
+                evicted.put(eldest.getKey(), new InodeReference(eldest.getValue(), collected));
+                it.remove();
+            }
+        }
+
+        // Olvidar los que ya nadie usa
+        Reference<? extends Inode> reference;
+        while ((reference = collected.poll()) != null) {
+            evicted.remove(((InodeReference) reference).inodeNumber, reference);
+        }
+    }
+}
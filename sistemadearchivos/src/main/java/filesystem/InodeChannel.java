@@ -0,0 +1,88 @@
+package filesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * Canal de solo lectura sobre el contenido de un inode, con cursor propio.
+ * No guarda copia del archivo: cada read() copia directo de los bloques al
+ * buffer del llamador, así que la memoria usada no depende del tamaño del
+ * archivo.
+ *
+ * @author dylan y Gadyr
+ */
+public class InodeChannel implements SeekableByteChannel {
+
+    private final FileSystem fs;
+    private final Inode inode;
+    private long position;
+    private boolean open;
+
+    public InodeChannel(FileSystem fs, Inode inode) {
+        this.fs = fs;
+        this.inode = inode;
+        this.position = 0;
+        this.open = true;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        ensureOpen();
+        int read = fs.read(inode, position, dst);
+        if (read > 0) {
+            position += read;
+        }
+        return read;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long position() throws IOException {
+        ensureOpen();
+        return position;
+    }
+
+    @Override
+    public SeekableByteChannel position(long newPosition) throws IOException {
+        ensureOpen();
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("Posición negativa: " + newPosition);
+        }
+        this.position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        ensureOpen();
+        return inode.getFileSize();
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package filesystem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Locks de lectura/escritura por inode. Cada inode tiene su propio lock, que
+ * se crea la primera vez que se pide: dos inodes nunca comparten lock, así que
+ * tomar el de un hijo con el del padre ya tomado no puede chocar con otra
+ * operación que use el mismo lock para otro inode. Los locks son reentrantes.
+ *
+ * Para no bloquearse entre operaciones, un directorio se toma antes que sus
+ * hijos, y varios inodes a la vez con lockAll(), que los toma siempre en el
+ * mismo orden.
+ *
+ * @author dylan y Gadyr
+ */
+public class InodeLocks {
+
+    // Un lock por inode usado; como mucho uno por inode del disco
+    private final ConcurrentHashMap<Integer, ReentrantReadWriteLock> locks;
+
+    public InodeLocks() {
+        this.locks = new ConcurrentHashMap<>();
+    }
+
+    public ReadWriteLock get(int inodeNumber) {
+        return locks.computeIfAbsent(inodeNumber, n -> new ReentrantReadWriteLock());
+    }
+
+    public Lock readLock(int inodeNumber) {
+        return get(inodeNumber).readLock();
+    }
+
+    public Lock writeLock(int inodeNumber) {
+        return get(inodeNumber).writeLock();
+    }
+
+    /**
+     * Toma los locks de escritura de varios inodes en orden de número de inode
+     *
+     * @return los locks tomados, para liberarlos con unlockAll()
+     */
+    public List<Lock> lockAll(int... inodeNumbers) {
+        TreeSet<Integer> order = new TreeSet<>();
+        for (int inodeNumber : inodeNumbers) {
+            order.add(inodeNumber);
+        }
+
+        List<Lock> locked = new ArrayList<>(order.size());
+        for (int inodeNumber : order) {
+            Lock lock = writeLock(inodeNumber);
+            lock.lock();
+            locked.add(lock);
+        }
+        return locked;
+    }
+
+    public static void unlockAll(List<Lock> locked) {
+        for (int i = locked.size() - 1; i >= 0; i--) {
+            locked.get(i).unlock();
+        }
+    }
+}
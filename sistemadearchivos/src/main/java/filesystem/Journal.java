@@ -0,0 +1,438 @@
+package filesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Journal de metadatos (write-ahead). Los bloques de metadatos que cambian
+ * durante una operación forman una transacción que se escribe primero en la
+ * región del journal; la copia a su lugar definitivo (checkpoint) se hace más
+ * tarde, cuando el journal se llena o en sync(). Varias transacciones
+ * comparten un mismo force() del dispositivo; un hilo de fondo lo hace cuando
+ * pasa GROUP_COMMIT_INTERVAL_MS sin que llegue otro commit.
+ *
+ * Todas las operaciones están sincronizadas: los hilos que escriben a la vez
+ * comparten la transacción en curso.
+ *
+ * Formato de la región: el bloque 0 es la cabecera, con la secuencia de la
+ * primera transacción a reaplicar. Luego cada transacción ocupa uno o más
+ * bloques descriptores (números de bloque), las copias de esos bloques y un
+ * bloque de commit con el checksum de todo lo anterior. Al montar se
+ * reaplican las transacciones con commit válido, en orden.
+ *
+ * @author dylan y Gadyr
+ */
+public class Journal {
+
+    public static final long GROUP_COMMIT_INTERVAL_MS = 5000; // máximo sin force()
+    public static final int GROUP_COMMIT_MAX = 64; // transacciones por force()
+
+    private static final int TYPE_HEADER = 0;
+    private static final int TYPE_DESCRIPTOR = 1;
+    private static final int TYPE_COMMIT = 2;
+    private static final int BLOCK_HEADER_SIZE = 16; // magic, tipo, secuencia
+
+    private final BlockDevice device;
+    private final int blockSize;
+    private final int start;
+    private final int length;
+
+    private long sequence; // secuencia de la próxima transacción
+    private int head; // próximo bloque libre de la región
+
+    // Transacción en curso y bloques ya escritos en el journal sin checkpoint
+    private final Map<Integer, byte[]> running;
+    private final Map<Integer, byte[]> logged;
+
+    private int unforced; // transacciones escritas desde el último force()
+    private long lastForce;
+    private ScheduledExecutorService forcer; // force() por tiempo, si está montado
+
+    // Estadísticas
+    private long commits;
+    private long forces;
+    private long checkpoints;
+
+    Journal(BlockDevice device, int blockSize, int start, int length) {
+        this.device = device;
+        this.blockSize = blockSize;
+        this.start = start;
+        this.length = length;
+        this.running = new LinkedHashMap<>();
+        this.logged = new HashMap<>();
+        this.head = 1;
+        this.lastForce = System.currentTimeMillis();
+    }
+
+    /**
+     * Inicializa una región de journal vacía (al formatear)
+     */
+    static void format(BlockDevice device, int blockSize, int start, int length) throws IOException {
+        Journal journal = new Journal(device, blockSize, start, length);
+        journal.sequence = 1;
+        journal.writeHeader();
+        // Sin restos de una imagen anterior donde empieza el registro
+        device.write(ByteBuffer.allocate(blockSize), journal.getOffset(1));
+        device.force();
+    }
+
+    /**
+     * Reaplica las transacciones completas que quedaron en el journal y lo
+     * deja vacío
+     *
+     * @return cantidad de transacciones reaplicadas
+     */
+    synchronized int recover() throws IOException {
+        ByteBuffer header = readJournalBlock(0);
+        if (header.getInt(0) != FSConstants.JOURNAL_MAGIC || header.getInt(4) != TYPE_HEADER) {
+            throw new IOException("Cabecera del journal inválida");
+        }
+
+        long seq = header.getLong(8);
+        int position = 1;
+        int recovered = 0;
+
+        while (true) {
+            Map<Integer, byte[]> blocks = new LinkedHashMap<>();
+            int next = readTransaction(position, seq, blocks);
+            if (next == -1) {
+                break;
+            }
+            writeHome(blocks);
+            position = next;
+            seq++;
+            recovered++;
+        }
+
+        if (recovered > 0) {
+            device.force();
+        }
+
+        // Las transacciones viejas que quedan en la región tienen secuencias
+        // menores que seq + length, así que nunca se confunden con las nuevas
+        sequence = seq + length;
+        head = 1;
+        writeHeader();
+        device.force();
+        return recovered;
+    }
+
+    /**
+     * Lee una transacción completa desde position
+     *
+     * @return posición siguiente a su commit, o -1 si no hay una transacción
+     *         válida con esa secuencia
+     */
+    private int readTransaction(int position, long seq, Map<Integer, byte[]> blocks) throws IOException {
+        CRC32 crc = new CRC32();
+
+        while (position < length) {
+            ByteBuffer block = readJournalBlock(position);
+            if (block.getInt(0) != FSConstants.JOURNAL_MAGIC || block.getLong(8) != seq) {
+                return -1;
+            }
+
+            int type = block.getInt(4);
+            if (type == TYPE_COMMIT) {
+                boolean valid = block.getInt(BLOCK_HEADER_SIZE) == blocks.size()
+                        && block.getLong(BLOCK_HEADER_SIZE + 4) == crc.getValue();
+                return valid ? position + 1 : -1;
+            }
+            if (type != TYPE_DESCRIPTOR) {
+                return -1;
+            }
+
+            int count = block.getInt(BLOCK_HEADER_SIZE);
+            if (count < 0 || count > getDescriptorCapacity() || position + 1 + count >= length) {
+                return -1;
+            }
+            crc.update(block.array());
+            for (int i = 0; i < count; i++) {
+                int blockNumber = block.getInt(BLOCK_HEADER_SIZE + 4 + i * 4);
+                byte[] data = readJournalBlock(position + 1 + i).array();
+                crc.update(data);
+                blocks.put(blockNumber, data);
+            }
+            position += 1 + count;
+        }
+        return -1;
+    }
+
+    /**
+     * Agrega un bloque modificado a la transacción en curso. El arreglo no
+     * debe reutilizarse después de la llamada.
+     */
+    synchronized void record(int blockNumber, byte[] data) {
+        running.put(blockNumber, data);
+    }
+
+    /**
+     * Versión más reciente de un bloque que todavía no llegó a su lugar
+     * definitivo, o null
+     */
+    synchronized byte[] lookup(int blockNumber) {
+        byte[] data = running.get(blockNumber);
+        return data != null ? data : logged.get(blockNumber);
+    }
+
+    synchronized boolean contains(int blockNumber) {
+        return running.containsKey(blockNumber) || logged.containsKey(blockNumber);
+    }
+
+    /**
+     * Indica si la transacción en curso ya ocupa la mitad del journal y
+     * conviene cerrarla
+     */
+    synchronized boolean isRunningFull() {
+        return running.size() >= (length - 1) / 2;
+    }
+
+    /**
+     * Indica si la transacción en curso, con blockNumber agregado, todavía
+     * cabe en el journal
+     */
+    synchronized boolean hasRoomFor(int blockNumber) {
+        int size = running.size() + (running.containsKey(blockNumber) ? 0 : 1);
+        int capacity = getDescriptorCapacity();
+        int needed = (size + capacity - 1) / capacity + size + 1;
+        return needed <= length - 1;
+    }
+
+    /**
+     * Descarta las versiones registradas de un bloque que pasa a usarse para
+     * datos. Si ya estaba escrito en el journal se hace checkpoint antes, para
+     * que ni el checkpoint ni una recuperación lo pisen después.
+     */
+    synchronized void revoke(int blockNumber) throws IOException {
+        running.remove(blockNumber);
+        if (logged.containsKey(blockNumber)) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Escribe la transacción en curso en el journal. El force() se comparte:
+     * se hace cada GROUP_COMMIT_MAX transacciones o cada
+     * GROUP_COMMIT_INTERVAL_MS (aunque no haya más commits, con start()).
+     */
+    synchronized void commit() throws IOException {
+        if (running.isEmpty()) {
+            forceIfDue();
+            return;
+        }
+
+        int capacity = getDescriptorCapacity();
+        int descriptors = (running.size() + capacity - 1) / capacity;
+        int needed = descriptors + running.size() + 1;
+        if (needed > length - 1) {
+            throw new IOException("La transacción no cabe en el journal (" + needed + " bloques)");
+        }
+        if (head + needed > length) {
+            checkpoint();
+        }
+
+        // Toda la transacción en una sola escritura secuencial
+        ByteBuffer log = ByteBuffer.allocate(needed * blockSize);
+        CRC32 crc = new CRC32();
+        List<Map.Entry<Integer, byte[]>> entries = new ArrayList<>(running.entrySet());
+
+        for (int from = 0; from < entries.size(); from += capacity) {
+            int count = Math.min(capacity, entries.size() - from);
+
+            ByteBuffer descriptor = newJournalBlock(TYPE_DESCRIPTOR);
+            descriptor.putInt(count);
+            for (int i = 0; i < count; i++) {
+                descriptor.putInt(entries.get(from + i).getKey());
+            }
+            crc.update(descriptor.array());
+            log.put(descriptor.array());
+
+            for (int i = 0; i < count; i++) {
+                byte[] data = entries.get(from + i).getValue();
+                crc.update(data);
+                log.put(data);
+            }
+        }
+
+        ByteBuffer commitBlock = newJournalBlock(TYPE_COMMIT);
+        commitBlock.putInt(entries.size());
+        commitBlock.putLong(crc.getValue());
+        log.put(commitBlock.array());
+
+        log.flip();
+        device.write(log, getOffset(head));
+
+        logged.putAll(running);
+        running.clear();
+        head += needed;
+        sequence++;
+        unforced++;
+        commits++;
+
+        forceIfDue();
+    }
+
+    /**
+     * Copia al lugar definitivo los bloques ya escritos en el journal y lo
+     * deja vacío
+     */
+    synchronized void checkpoint() throws IOException {
+        if (logged.isEmpty() && head == 1) {
+            return;
+        }
+
+        // El journal debe ser durable antes de tocar los lugares definitivos
+        force();
+        writeHome(logged);
+        device.force();
+
+        logged.clear();
+        head = 1;
+        writeHeader();
+        checkpoints++;
+    }
+
+    /**
+     * Fuerza al disco las transacciones escritas
+     */
+    synchronized void force() throws IOException {
+        device.force();
+        unforced = 0;
+        lastForce = System.currentTimeMillis();
+        forces++;
+    }
+
+    /**
+     * Arranca el hilo que fuerza las transacciones que llevan
+     * GROUP_COMMIT_INTERVAL_MS sin force(), para que una sesión inactiva no
+     * las deje pendientes
+     */
+    synchronized void start() {
+        if (forcer != null) {
+            return;
+        }
+        forcer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "journal-force");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, GROUP_COMMIT_INTERVAL_MS / 5);
+        forcer.scheduleAtFixedRate(() -> {
+            try {
+                synchronized (this) {
+                    forceIfDue();
+                }
+            } catch (IOException e) {
+                // El próximo commit o sync() vuelve a intentar y reporta el error
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Detiene el hilo de force() por tiempo (antes de cerrar el dispositivo)
+     */
+    void stop() throws IOException {
+        ScheduledExecutorService timer;
+        synchronized (this) {
+            timer = forcer;
+            forcer = null;
+        }
+        if (timer == null) {
+            return;
+        }
+        timer.shutdownNow();
+        try {
+            timer.awaitTermination(GROUP_COMMIT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrumpido al detener el journal", e);
+        }
+    }
+
+    private void forceIfDue() throws IOException {
+        if (unforced >= GROUP_COMMIT_MAX
+                || (unforced > 0 && System.currentTimeMillis() - lastForce >= GROUP_COMMIT_INTERVAL_MS)) {
+            force();
+        }
+    }
+
+    /**
+     * Escribe bloques en su lugar definitivo, en orden de número de bloque
+     */
+    private void writeHome(Map<Integer, byte[]> blocks) throws IOException {
+        for (Map.Entry<Integer, byte[]> entry : new TreeMap<>(blocks).entrySet()) {
+            device.write(ByteBuffer.wrap(entry.getValue()), (long) entry.getKey() * blockSize);
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(blockSize);
+        header.putInt(FSConstants.JOURNAL_MAGIC);
+        header.putInt(TYPE_HEADER);
+        header.putLong(sequence);
+        header.rewind();
+        device.write(header, getOffset(0));
+    }
+
+    private ByteBuffer newJournalBlock(int type) {
+        ByteBuffer block = ByteBuffer.allocate(blockSize);
+        block.putInt(FSConstants.JOURNAL_MAGIC);
+        block.putInt(type);
+        block.putLong(sequence);
+        return block;
+    }
+
+    private ByteBuffer readJournalBlock(int index) throws IOException {
+        ByteBuffer block = ByteBuffer.allocate(blockSize);
+        if (device.read(block, getOffset(index)) < blockSize) {
+            throw new IOException("Lectura fuera del final del disco en el journal");
+        }
+        return block;
+    }
+
+    private long getOffset(int index) {
+        return (long) (start + index) * blockSize;
+    }
+
+    /**
+     * Números de bloque que caben en un bloque descriptor
+     */
+    private int getDescriptorCapacity() {
+        return (blockSize - BLOCK_HEADER_SIZE - 4) / 4;
+    }
+
+    // Estadísticas
+    public int getLength() {
+        return length;
+    }
+
+    public synchronized int getUsedBlocks() {
+        return head - 1;
+    }
+
+    public synchronized int getPendingBlocks() {
+        return running.size() + logged.size();
+    }
+
+    public synchronized long getCommits() {
+        return commits;
+    }
+
+    public synchronized long getForces() {
+        return forces;
+    }
+
+    public synchronized long getCheckpoints() {
+        return checkpoints;
+    }
+}
@@ -0,0 +1,257 @@
+package filesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Asignación enlazada al estilo FAT: el inode guarda el primer bloque en el
+ * primer puntero directo y una tabla de siguientes, con una entrada por bloque
+ * de datos, encadena el resto. La tabla vive en memoria y se guarda en los
+ * bloques reservados para ella al formatear. Al montar no se lee: cada bloque
+ * de la tabla se carga la primera vez que se usa una de sus entradas.
+ *
+ * @author dylan y Gadyr
+ */
+class LinkedAllocation implements AllocationStrategy {
+
+    private static final int END_OF_CHAIN = -1;
+
+    private final FileSystem fs;
+    // Un arreglo por bloque de la tabla (null si todavía no se leyó); cada
+    // entrada es bloque de datos relativo -> siguiente bloque absoluto
+    private AtomicReferenceArray<int[]> pages;
+    private int entriesPerBlock;
+    private int dataBlocks;
+    private final BitSet dirtyBlocks; // bloques de la tabla modificados
+
+    LinkedAllocation(FileSystem fs) {
+        this.fs = fs;
+        this.dirtyBlocks = new BitSet();
+    }
+
+    @Override
+    public int getType() {
+        return FSConstants.ALLOC_LINKED;
+    }
+
+    @Override
+    public void initialize() throws IOException {
+        checkTable();
+        int fatBlocks = createPages();
+        for (int i = 0; i < fatBlocks; i++) {
+            int[] page = new int[entriesPerBlock];
+            Arrays.fill(page, END_OF_CHAIN);
+            pages.set(i, page);
+        }
+        dirtyBlocks.set(0, fatBlocks);
+    }
+
+    @Override
+    public void load() throws IOException {
+        checkTable();
+        createPages();
+        dirtyBlocks.clear();
+    }
+
+    private int createPages() {
+        Superblock superblock = fs.getSuperblock();
+        entriesPerBlock = superblock.getBlockSize() / 4;
+        dataBlocks = superblock.getTotalBlocks() - superblock.getDataBlocksStart();
+        pages = new AtomicReferenceArray<>(superblock.getFatBlocks());
+        return superblock.getFatBlocks();
+    }
+
+    /**
+     * Bloque i de la tabla, leyéndolo del disco si es la primera vez
+     */
+    private int[] page(int i) throws IOException {
+        int[] page = pages.get(i);
+        return page != null ? page : loadPage(i);
+    }
+
+    private synchronized int[] loadPage(int i) throws IOException {
+        int[] page = pages.get(i);
+        if (page == null) {
+            ByteBuffer block = fs.readBlockView(fs.getSuperblock().getFatStart() + i);
+            page = new int[entriesPerBlock];
+            block.asIntBuffer().get(page);
+            pages.set(i, page);
+        }
+        return page;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        Superblock superblock = fs.getSuperblock();
+        int blockSize = superblock.getBlockSize();
+        int entriesPerBlock = blockSize / 4;
+
+        for (int i = dirtyBlocks.nextSetBit(0); i >= 0; i = dirtyBlocks.nextSetBit(i + 1)) {
+            ByteBuffer block = ByteBuffer.allocate(blockSize);
+            int[] page = pages.get(i);
+            int count = Math.max(0, Math.min(entriesPerBlock, dataBlocks - i * entriesPerBlock));
+            block.asIntBuffer().put(page, 0, count);
+            fs.writeBlock(superblock.getFatStart() + i, block.array());
+        }
+        dirtyBlocks.clear();
+    }
+
+    @Override
+    public int getBlockNumber(Inode inode, int logicalBlock) throws IOException {
+        int[] cached = inode.getBlockMap();
+        if (cached != null && logicalBlock < cached.length) {
+            return cached[logicalBlock];
+        }
+
+        // Hay que recorrer la cadena desde el inicio
+        int block = inode.getDirectBlocks()[0];
+        for (int i = 0; i < logicalBlock && block != END_OF_CHAIN; i++) {
+            block = getNext(block);
+        }
+        return block;
+    }
+
+    @Override
+    public int[] mapBlocks(Inode inode, int blockCount) throws IOException {
+        int[] cached = inode.getBlockMap();
+        if (cached != null && cached.length == blockCount) {
+            return cached;
+        }
+
+        int[] blocks = new int[blockCount];
+        Arrays.fill(blocks, -1);
+
+        int block = inode.getDirectBlocks()[0];
+        for (int i = 0; i < blockCount && block != END_OF_CHAIN; i++) {
+            blocks[i] = block;
+            block = getNext(block);
+        }
+        inode.setBlockMap(blocks);
+        return blocks;
+    }
+
+    @Override
+    public int[] mapRange(Inode inode, int firstLogicalBlock, int count) throws IOException {
+        int[] cached = inode.getBlockMap();
+        if (cached != null && firstLogicalBlock + count <= cached.length) {
+            return Arrays.copyOfRange(cached, firstLogicalBlock, firstLogicalBlock + count);
+        }
+
+        // Un solo recorrido de la cadena en lugar de uno por bloque
+        int[] blocks = new int[count];
+        Arrays.fill(blocks, -1);
+        int block = getBlockNumber(inode, firstLogicalBlock);
+        for (int i = 0; i < count && block != END_OF_CHAIN; i++) {
+            blocks[i] = block;
+            block = getNext(block);
+        }
+        return blocks;
+    }
+
+    @Override
+    public void allocateBlocks(Inode inode, int firstLogicalBlock, int count) throws IOException {
+        int last = firstLogicalBlock > 0 ? getBlockNumber(inode, firstLogicalBlock - 1) : END_OF_CHAIN;
+        inode.invalidateBlockMap();
+
+        // La cadena se alarga a continuación del último bloque; una nueva
+        // empieza en el grupo del inode
+        int goal = last != END_OF_CHAIN ? last + 1 : fs.getDataGoal(inode);
+
+        int previousLast = last;
+        int first = END_OF_CHAIN;
+        try {
+            for (int i = 0; i < count; i++) {
+                int blockNum = fs.allocateDataBlock(goal);
+                goal = blockNum + 1;
+                setNext(blockNum, END_OF_CHAIN);
+                if (last == END_OF_CHAIN) {
+                    inode.setDirectBlock(0, blockNum);
+                } else {
+                    setNext(last, blockNum);
+                }
+                if (first == END_OF_CHAIN) {
+                    first = blockNum;
+                }
+                last = blockNum;
+            }
+        } catch (IOException | RuntimeException e) {
+            // Sin lugar a mitad de camino: se corta la cadena donde estaba y
+            // se liberan los bloques agregados en esta llamada
+            if (previousLast == END_OF_CHAIN) {
+                inode.setDirectBlock(0, -1);
+            } else {
+                setNext(previousLast, END_OF_CHAIN);
+            }
+            int block = first;
+            while (block != END_OF_CHAIN) {
+                int following = getNext(block);
+                setNext(block, END_OF_CHAIN);
+                fs.freeDataBlock(block);
+                block = following;
+            }
+            inode.invalidateBlockMap();
+            throw e;
+        }
+        inode.invalidateBlockMap();
+    }
+
+    @Override
+    public void releaseBlocks(Inode inode) throws IOException {
+        inode.invalidateBlockMap();
+        int block = inode.getDirectBlocks()[0];
+        while (block != END_OF_CHAIN) {
+            int following = getNext(block);
+            setNext(block, END_OF_CHAIN);
+            fs.freeDataBlock(block);
+            block = following;
+        }
+        inode.setDirectBlock(0, -1);
+    }
+
+    @Override
+    public void truncateBlocks(Inode inode, int keepBlocks) throws IOException {
+        if (keepBlocks == 0) {
+            releaseBlocks(inode);
+            return;
+        }
+
+        int last = getBlockNumber(inode, keepBlocks - 1);
+        inode.invalidateBlockMap();
+        if (last == END_OF_CHAIN) {
+            return;
+        }
+
+        // Cortar la cadena después del último bloque que se conserva
+        int block = getNext(last);
+        setNext(last, END_OF_CHAIN);
+        while (block != END_OF_CHAIN) {
+            int following = getNext(block);
+            setNext(block, END_OF_CHAIN);
+            fs.freeDataBlock(block);
+            block = following;
+        }
+    }
+
+    private int getNext(int absoluteBlock) throws IOException {
+        int relative = absoluteBlock - fs.getSuperblock().getDataBlocksStart();
+        return page(relative / entriesPerBlock)[relative % entriesPerBlock];
+    }
+
+    private void setNext(int absoluteBlock, int nextBlock) throws IOException {
+        int relative = absoluteBlock - fs.getSuperblock().getDataBlocksStart();
+        int[] page = page(relative / entriesPerBlock);
+        if (page[relative % entriesPerBlock] != nextBlock) {
+            page[relative % entriesPerBlock] = nextBlock;
+            dirtyBlocks.set(relative / entriesPerBlock);
+        }
+    }
+
+    private void checkTable() throws IOException {
+        if (fs.getSuperblock().getFatBlocks() == 0) {
+            throw new IOException("El volumen no tiene tabla de asignación enlazada");
+        }
+    }
+}
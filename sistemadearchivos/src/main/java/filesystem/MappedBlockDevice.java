@@ -0,0 +1,152 @@
+package filesystem;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Dispositivo de bloques que mapea la imagen completa en memoria con
+ * FileChannel.map. Como un MappedByteBuffer no puede superar 2 GB, la imagen
+ * se mapea en ventanas de tamaño fijo.
+ *
+ * Las lecturas se sirven como slices de la ventana (sin llamadas al sistema)
+ * y las escrituras se copian directamente al mapeo; force() las persiste.
+ * Cambiar el tamaño vuelve a mapear la imagen y close() suelta los mapeos.
+ * Los mapeos viejos no se liberan a la fuerza sino que los recolecta el GC:
+ * así una lectura concurrente o una vista que alguien todavía tenga nunca
+ * tocan memoria ya desmapeada.
+ *
+ * @author dylan y Gadyr
+ */
+public class MappedBlockDevice implements BlockDevice {
+
+    // 1 GB: potencia de dos, así un bloque de tamaño potencia de dos nunca
+    // queda partido entre dos ventanas
+    public static final long WINDOW_SIZE = 1L << 30;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    // Cada acceso toma el arreglo una vez y trabaja con esa versión
+    private volatile MappedByteBuffer[] windows;
+
+    public MappedBlockDevice(String path) throws IOException {
+        this.file = new RandomAccessFile(path, "rw");
+        this.channel = file.getChannel();
+        this.windows = new MappedByteBuffer[0];
+        try {
+            map(channel.size());
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Mapea los primeros newSize bytes de la imagen en ventanas
+     */
+    private void map(long newSize) throws IOException {
+        int windowCount = (int) ((newSize + WINDOW_SIZE - 1) / WINDOW_SIZE);
+        MappedByteBuffer[] mapped = new MappedByteBuffer[windowCount];
+        for (int i = 0; i < windowCount; i++) {
+            long start = i * WINDOW_SIZE;
+            long length = Math.min(WINDOW_SIZE, newSize - start);
+            mapped[i] = channel.map(FileChannel.MapMode.READ_WRITE, start, length);
+        }
+        windows = mapped;
+    }
+
+    /**
+     * Tamaño que cubren las ventanas
+     */
+    private static long sizeOf(MappedByteBuffer[] windows) {
+        if (windows.length == 0) {
+            return 0;
+        }
+        return (windows.length - 1) * WINDOW_SIZE + windows[windows.length - 1].capacity();
+    }
+
+    @Override
+    public int read(ByteBuffer dst, long position) throws IOException {
+        MappedByteBuffer[] current = windows;
+        long size = sizeOf(current);
+        int total = 0;
+        long pos = position;
+        while (dst.hasRemaining() && pos < size) {
+            MappedByteBuffer window = current[(int) (pos / WINDOW_SIZE)];
+            int offset = (int) (pos % WINDOW_SIZE);
+            int length = Math.min(dst.remaining(), window.capacity() - offset);
+
+            dst.put(window.slice(offset, length));
+            pos += length;
+            total += length;
+        }
+        return total;
+    }
+
+    @Override
+    public void write(ByteBuffer src, long position) throws IOException {
+        MappedByteBuffer[] current = windows;
+        if (position + src.remaining() > sizeOf(current)) {
+            throw new IOException("Escritura fuera del final del disco en la posición " + position);
+        }
+        long pos = position;
+        while (src.hasRemaining()) {
+            MappedByteBuffer window = current[(int) (pos / WINDOW_SIZE)];
+            int offset = (int) (pos % WINDOW_SIZE);
+            int length = Math.min(src.remaining(), window.capacity() - offset);
+
+            window.put(offset, src, src.position(), length);
+            src.position(src.position() + length);
+            pos += length;
+        }
+    }
+
+    @Override
+    public ByteBuffer view(long position, int length) throws IOException {
+        MappedByteBuffer[] current = windows;
+        int offset = (int) (position % WINDOW_SIZE);
+        int index = (int) (position / WINDOW_SIZE);
+        if (position + length > sizeOf(current) || offset + length > current[index].capacity()) {
+            // Fuera del disco o partido entre ventanas: se copia
+            return BlockDevice.super.view(position, length);
+        }
+        return current[index].slice(offset, length).asReadOnlyBuffer();
+    }
+
+    @Override
+    public long size() {
+        return sizeOf(windows);
+    }
+
+    /**
+     * Cambia el tamaño de la imagen y la vuelve a mapear. No debe haber
+     * lecturas ni escrituras en curso.
+     */
+    @Override
+    public synchronized void setSize(long newSize) throws IOException {
+        force();
+        windows = new MappedByteBuffer[0];
+        file.setLength(newSize);
+        map(newSize);
+    }
+
+    @Override
+    public void force() throws IOException {
+        for (MappedByteBuffer window : windows) {
+            if (window != null) {
+                window.force();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        // Sin ventanas las lecturas devuelven 0 bytes y las escrituras
+        // fallan; los mapeos siguen siendo válidos mientras alguien los use
+        windows = new MappedByteBuffer[0];
+        channel.close();
+        file.close();
+    }
+}
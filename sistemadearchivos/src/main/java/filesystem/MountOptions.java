@@ -0,0 +1,54 @@
+package filesystem;
+
+/**
+ * Opciones con las que se monta un sistema de archivos
+ *
+ * @author dylan y Gadyr
+ */
+public class MountOptions {
+
+    private boolean memoryMapped;
+    private int cacheBlocks; // 0 desactiva el caché de bloques
+    private int inodeCacheSize; // 0 desactiva el caché de inodes
+    private int dentryCacheSize; // 0 desactiva el caché de nombres
+
+    public MountOptions() {
+        this.memoryMapped = false;
+        this.cacheBlocks = BlockCache.DEFAULT_CAPACITY;
+        this.inodeCacheSize = InodeCache.DEFAULT_CAPACITY;
+        this.dentryCacheSize = DentryCache.DEFAULT_CAPACITY;
+    }
+
+    // Getters y Setters
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
+    public void setMemoryMapped(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+    }
+
+    public int getCacheBlocks() {
+        return cacheBlocks;
+    }
+
+    public void setCacheBlocks(int cacheBlocks) {
+        this.cacheBlocks = cacheBlocks;
+    }
+
+    public int getInodeCacheSize() {
+        return inodeCacheSize;
+    }
+
+    public void setInodeCacheSize(int inodeCacheSize) {
+        this.inodeCacheSize = inodeCacheSize;
+    }
+
+    public int getDentryCacheSize() {
+        return dentryCacheSize;
+    }
+
+    public void setDentryCacheSize(int dentryCacheSize) {
+        this.dentryCacheSize = dentryCacheSize;
+    }
+}
@@ -0,0 +1,378 @@
+package filesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Índice persistente de nombres: nombre -> (inode del directorio, inode) de
+ * cada entrada del volumen, sin contar "." y "..". Ocupa una zona reservada
+ * de bloques después del journal; cada bloque es un balde de la tabla hash y
+ * el hash del nombre elige el balde. Si un balde se llena, el registro va al
+ * siguiente con lugar y los baldes saltados quedan marcados como
+ * desbordados, así que una búsqueda lee el balde del nombre y sigue solo
+ * mientras encuentre esa marca.
+ *
+ * El sistema de archivos lo mantiene al agregar, cambiar o quitar entradas,
+ * y los bloques pasan por el journal junto con los del directorio. Si la zona
+ * se llena, el índice queda marcado como inválido hasta reconstruirlo.
+ *
+ * Bloque: marca de desborde (4 bytes), bytes usados (4) y registros con el
+ * inode del directorio (4), el inode (4), el largo del nombre (1) y el nombre
+ * en UTF-8.
+ *
+ * @author dylan y Gadyr
+ */
+class NameIndex {
+
+    private static final int HEADER_SIZE = 8; // desborde, bytes usados
+    private static final int RECORD_HEADER = 9; // directorio, inode, largo
+    private static final int OVERFLOW = 1;
+
+    private final FileSystem fs;
+    private final int start;
+    private final int blocks;
+
+    // Durante una reconstrucción: los cambios que llegan mientras se recorre
+    // el árbol, y después los baldes nuevos en memoria
+    private List<Change> pending;
+    private byte[][] image;
+
+    private static final class Change {
+        final boolean add;
+        final int parent;
+        final int inode;
+        final String name;
+
+        Change(boolean add, int parent, int inode, String name) {
+            this.add = add;
+            this.parent = parent;
+            this.inode = inode;
+            this.name = name;
+        }
+    }
+
+    NameIndex(FileSystem fs, int start, int blocks) {
+        this.fs = fs;
+        this.start = start;
+        this.blocks = blocks;
+    }
+
+    /**
+     * Bloques por inode que se reservan al formatear
+     */
+    static int blocksFor(int totalInodes, int blockSize) {
+        long bytes = (long) totalInodes * FSConstants.NAME_INDEX_BYTES_PER_INODE;
+        return (int) ((bytes + blockSize - 1) / blockSize);
+    }
+
+    /**
+     * Deja todos los baldes vacíos
+     */
+    synchronized void clear() throws IOException {
+        for (int b = 0; b < blocks; b++) {
+            write(b, newBucket());
+        }
+    }
+
+    /**
+     * Registra la entrada name del directorio parent. Si ya estaba, se
+     * actualiza su inode.
+     */
+    synchronized void put(int parent, String name, int inode) throws IOException {
+        if (pending != null) {
+            pending.add(new Change(true, parent, inode, name));
+        }
+        if (fs.getSuperblock().isNameIndexValid() && !insert(parent, name, inode)) {
+            fs.setNameIndexValid(false);
+        }
+    }
+
+    /**
+     * Quita la entrada name del directorio parent
+     */
+    synchronized void remove(int parent, String name) throws IOException {
+        if (pending != null) {
+            pending.add(new Change(false, parent, -1, name));
+        }
+        if (fs.getSuperblock().isNameIndexValid()) {
+            delete(parent, name);
+        }
+    }
+
+    /**
+     * Pares (inode del directorio, inode) registrados con ese nombre. Pueden
+     * sobrar pares si el índice quedó atrás; quien lo usa los verifica contra
+     * el directorio.
+     */
+    synchronized List<int[]> lookup(String name) throws IOException {
+        byte[] key = name.getBytes(StandardCharsets.UTF_8);
+        List<int[]> found = new ArrayList<>();
+
+        int b = home(key);
+        for (int probes = 0; probes < blocks; probes++, b = next(b)) {
+            ByteBuffer bucket = view(b);
+            int used = bucket.getInt(4);
+            for (int offset = HEADER_SIZE; offset < used; offset = nextRecord(bucket, offset)) {
+                if (nameEquals(bucket, offset, key)) {
+                    found.add(new int[] { bucket.getInt(offset), bucket.getInt(offset + 4) });
+                }
+            }
+            if ((bucket.getInt(0) & OVERFLOW) == 0) {
+                break;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Reconstruye el índice recorriendo el árbol desde la raíz. Los cambios
+     * que llegan durante el recorrido se vuelven a aplicar al final.
+     *
+     * @return cantidad de nombres registrados
+     */
+    int rebuild() throws IOException {
+        synchronized (this) {
+            if (pending != null) {
+                throw new IOException("Ya hay una reconstrucción del índice en curso");
+            }
+            pending = new ArrayList<>();
+        }
+
+        List<Change> records;
+        try {
+            // El recorrido toma los locks de los directorios; el del índice
+            // no, porque los cambios lo toman con el directorio ya bloqueado
+            records = collect();
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                pending = null;
+            }
+            throw e;
+        }
+
+        synchronized (this) {
+            try {
+                image = new byte[blocks][];
+                for (int b = 0; b < blocks; b++) {
+                    image[b] = newBucket();
+                }
+
+                boolean complete = true;
+                for (Change record : records) {
+                    complete &= insert(record.parent, record.name, record.inode);
+                }
+                for (Change change : pending) {
+                    if (change.add) {
+                        complete &= insert(change.parent, change.name, change.inode);
+                    } else {
+                        delete(change.parent, change.name);
+                    }
+                }
+
+                byte[][] built = image;
+                image = null;
+                for (int b = 0; b < blocks; b++) {
+                    write(b, built[b]);
+                }
+                fs.setNameIndexValid(complete);
+                return records.size();
+            } finally {
+                image = null;
+                pending = null;
+            }
+        }
+    }
+
+    /**
+     * Todas las entradas del árbol, en preorden
+     */
+    private List<Change> collect() throws IOException {
+        List<Change> records = new ArrayList<>();
+        Set<Integer> visited = new HashSet<>();
+        Deque<Integer> directories = new ArrayDeque<>();
+        directories.push(FSConstants.ROOT_INODE);
+        visited.add(FSConstants.ROOT_INODE);
+
+        while (!directories.isEmpty()) {
+            int parent = directories.pop();
+            Inode dirInode = fs.readInode(parent);
+            if (!dirInode.isDirectory()) {
+                continue;
+            }
+            for (DirectoryEntry entry : fs.readDirectoryEntries(dirInode)) {
+                if (entry.isFree() || isDotName(entry.getName())) {
+                    continue;
+                }
+                records.add(new Change(true, parent, entry.getInodeNumber(), entry.getName()));
+                if (entry.getEntryType() == FSConstants.TYPE_DIRECTORY
+                        && visited.add(entry.getInodeNumber())) {
+                    directories.push(entry.getInodeNumber());
+                }
+            }
+        }
+        return records;
+    }
+
+    static boolean isDotName(String name) {
+        return name.equals(".") || name.equals("..");
+    }
+
+    // Operaciones sobre los baldes (en disco, o en memoria al reconstruir)
+
+    /**
+     * @return false si no queda lugar en ningún balde
+     */
+    private boolean insert(int parent, String name, int inode) throws IOException {
+        byte[] key = name.getBytes(StandardCharsets.UTF_8);
+        int length = RECORD_HEADER + key.length;
+
+        // Si ya está, se actualiza; si no, va al primer balde de la cadena con
+        // lugar
+        int room = -1;
+        int b = home(key);
+        int probes = 0;
+        for (; probes < blocks; probes++, b = next(b)) {
+            ByteBuffer bucket = view(b);
+            int offset = find(bucket, parent, key);
+            if (offset != -1) {
+                if (bucket.getInt(offset + 4) != inode) {
+                    byte[] data = read(b);
+                    ByteBuffer.wrap(data).putInt(offset + 4, inode);
+                    write(b, data);
+                }
+                return true;
+            }
+            if (room == -1 && bucket.getInt(4) + length <= bucket.limit()) {
+                room = b;
+            }
+            if ((bucket.getInt(0) & OVERFLOW) == 0) {
+                break;
+            }
+        }
+        if (room != -1) {
+            append(room, parent, inode, key);
+            return true;
+        }
+
+        // La cadena está llena: se alarga marcando los baldes que se saltan
+        for (; probes < blocks; probes++, b = next(b)) {
+            byte[] data = read(b);
+            ByteBuffer bucket = ByteBuffer.wrap(data);
+            if (bucket.getInt(4) + length <= data.length) {
+                append(b, parent, inode, key);
+                return true;
+            }
+            if ((bucket.getInt(0) & OVERFLOW) == 0) {
+                bucket.putInt(0, bucket.getInt(0) | OVERFLOW);
+                write(b, data);
+            }
+        }
+        return false;
+    }
+
+    private void delete(int parent, String name) throws IOException {
+        byte[] key = name.getBytes(StandardCharsets.UTF_8);
+
+        int b = home(key);
+        for (int probes = 0; probes < blocks; probes++, b = next(b)) {
+            ByteBuffer view = view(b);
+            int offset = find(view, parent, key);
+            if (offset != -1) {
+                byte[] data = read(b);
+                ByteBuffer bucket = ByteBuffer.wrap(data);
+                int used = bucket.getInt(4);
+                int end = nextRecord(bucket, offset);
+                System.arraycopy(data, end, data, offset, used - end);
+                Arrays.fill(data, used - (end - offset), used, (byte) 0);
+                bucket.putInt(4, used - (end - offset));
+                write(b, data);
+                return;
+            }
+            if ((view.getInt(0) & OVERFLOW) == 0) {
+                return;
+            }
+        }
+    }
+
+    private void append(int b, int parent, int inode, byte[] key) throws IOException {
+        byte[] data = read(b);
+        ByteBuffer bucket = ByteBuffer.wrap(data);
+        int offset = bucket.getInt(4);
+        bucket.putInt(offset, parent);
+        bucket.putInt(offset + 4, inode);
+        bucket.put(offset + 8, (byte) key.length);
+        bucket.put(offset + RECORD_HEADER, key);
+        bucket.putInt(4, offset + RECORD_HEADER + key.length);
+        write(b, data);
+    }
+
+    private static int find(ByteBuffer bucket, int parent, byte[] key) {
+        int used = bucket.getInt(4);
+        for (int offset = HEADER_SIZE; offset < used; offset = nextRecord(bucket, offset)) {
+            if (bucket.getInt(offset) == parent && nameEquals(bucket, offset, key)) {
+                return offset;
+            }
+        }
+        return -1;
+    }
+
+    private static int nextRecord(ByteBuffer bucket, int offset) {
+        return offset + RECORD_HEADER + (bucket.get(offset + 8) & 0xFF);
+    }
+
+    private static boolean nameEquals(ByteBuffer bucket, int offset, byte[] key) {
+        if ((bucket.get(offset + 8) & 0xFF) != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (bucket.get(offset + RECORD_HEADER + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int home(byte[] key) {
+        return DirectoryIndex.hash(key) % blocks;
+    }
+
+    private int next(int b) {
+        return b + 1 == blocks ? 0 : b + 1;
+    }
+
+    private byte[] newBucket() {
+        byte[] data = new byte[fs.getSuperblock().getBlockSize()];
+        ByteBuffer.wrap(data).putInt(4, HEADER_SIZE);
+        return data;
+    }
+
+    private ByteBuffer view(int b) throws IOException {
+        if (image != null) {
+            return ByteBuffer.wrap(image[b]);
+        }
+        return fs.readBlockView(start + b);
+    }
+
+    private byte[] read(int b) throws IOException {
+        if (image != null) {
+            return image[b];
+        }
+        return fs.readBlock(start + b);
+    }
+
+    private void write(int b, byte[] data) throws IOException {
+        if (image != null) {
+            image[b] = data;
+            return;
+        }
+        fs.writeBlock(start + b, data);
+    }
+}
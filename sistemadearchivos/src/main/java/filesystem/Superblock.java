@@ -24,11 +24,24 @@ public class Superblock {
     private int dataBlocksStart;
     private long creationTime;
     private long lastMountTime;
+    private int fatStart; // tabla de siguientes (solo asignación enlazada)
+    private int fatBlocks; // 0 si el volumen no tiene tabla
+    private int journalStart; // journal de metadatos
+    private int journalBlocks; // 0 si el volumen no tiene journal
+    private int nameIndexStart; // índice de nombres (whereis)
+    private int nameIndexBlocks; // 0 si el volumen no tiene índice
+    private boolean nameIndexValid; // false si hay que reconstruirlo
+    private int groupCount; // grupos de bloques, 0 si el volumen no tiene
+    private int blocksPerGroup;
+    private int inodesPerGroup;
+    private int groupTableStart; // descriptores de los grupos
+    private int groupTableBlocks;
+    private boolean cleanUnmount; // false mientras está montado o si no se desmontó bien
 
     public Superblock() {
         this.magicNumber = FSConstants.MAGIC_NUMBER;
         this.fsName = "myFS";
-        this.fsVersion = 1;
+        this.fsVersion = FSConstants.FS_VERSION;
         this.blockSize = FSConstants.DEFAULT_BLOCK_SIZE;
         this.rootInode = FSConstants.ROOT_INODE;
         this.creationTime = System.currentTimeMillis();
@@ -163,6 +176,110 @@ public class Superblock {
         this.lastMountTime = lastMountTime;
     }
 
+    public int getFatStart() {
+        return fatStart;
+    }
+
+    public void setFatStart(int fatStart) {
+        this.fatStart = fatStart;
+    }
+
+    public int getFatBlocks() {
+        return fatBlocks;
+    }
+
+    public void setFatBlocks(int fatBlocks) {
+        this.fatBlocks = fatBlocks;
+    }
+
+    public int getJournalStart() {
+        return journalStart;
+    }
+
+    public void setJournalStart(int journalStart) {
+        this.journalStart = journalStart;
+    }
+
+    public int getJournalBlocks() {
+        return journalBlocks;
+    }
+
+    public void setJournalBlocks(int journalBlocks) {
+        this.journalBlocks = journalBlocks;
+    }
+
+    public int getNameIndexStart() {
+        return nameIndexStart;
+    }
+
+    public void setNameIndexStart(int nameIndexStart) {
+        this.nameIndexStart = nameIndexStart;
+    }
+
+    public int getNameIndexBlocks() {
+        return nameIndexBlocks;
+    }
+
+    public void setNameIndexBlocks(int nameIndexBlocks) {
+        this.nameIndexBlocks = nameIndexBlocks;
+    }
+
+    public boolean isNameIndexValid() {
+        return nameIndexValid;
+    }
+
+    public void setNameIndexValid(boolean nameIndexValid) {
+        this.nameIndexValid = nameIndexValid;
+    }
+
+    public int getGroupCount() {
+        return groupCount;
+    }
+
+    public void setGroupCount(int groupCount) {
+        this.groupCount = groupCount;
+    }
+
+    public int getBlocksPerGroup() {
+        return blocksPerGroup;
+    }
+
+    public void setBlocksPerGroup(int blocksPerGroup) {
+        this.blocksPerGroup = blocksPerGroup;
+    }
+
+    public int getInodesPerGroup() {
+        return inodesPerGroup;
+    }
+
+    public void setInodesPerGroup(int inodesPerGroup) {
+        this.inodesPerGroup = inodesPerGroup;
+    }
+
+    public int getGroupTableStart() {
+        return groupTableStart;
+    }
+
+    public void setGroupTableStart(int groupTableStart) {
+        this.groupTableStart = groupTableStart;
+    }
+
+    public int getGroupTableBlocks() {
+        return groupTableBlocks;
+    }
+
+    public void setGroupTableBlocks(int groupTableBlocks) {
+        this.groupTableBlocks = groupTableBlocks;
+    }
+
+    public boolean isCleanUnmount() {
+        return cleanUnmount;
+    }
+
+    public void setCleanUnmount(boolean cleanUnmount) {
+        this.cleanUnmount = cleanUnmount;
+    }
+
     /**
      * Serializa el Superblock a un array de bytes
      * 
@@ -193,6 +310,19 @@ public class Superblock {
         buffer.putInt(dataBlocksStart);
         buffer.putLong(creationTime);
         buffer.putLong(lastMountTime);
+        buffer.putInt(fatStart);
+        buffer.putInt(fatBlocks);
+        buffer.putInt(journalStart);
+        buffer.putInt(journalBlocks);
+        buffer.putInt(nameIndexStart);
+        buffer.putInt(nameIndexBlocks);
+        buffer.putInt(nameIndexValid ? 1 : 0);
+        buffer.putInt(groupCount);
+        buffer.putInt(blocksPerGroup);
+        buffer.putInt(inodesPerGroup);
+        buffer.putInt(groupTableStart);
+        buffer.putInt(groupTableBlocks);
+        buffer.putInt(cleanUnmount ? 1 : 0);
 
         return buffer.array();
     }
@@ -228,6 +358,19 @@ public class Superblock {
         sb.dataBlocksStart = buffer.getInt();
         sb.creationTime = buffer.getLong();
         sb.lastMountTime = buffer.getLong();
+        sb.fatStart = buffer.getInt();
+        sb.fatBlocks = buffer.getInt();
+        sb.journalStart = buffer.getInt();
+        sb.journalBlocks = buffer.getInt();
+        sb.nameIndexStart = buffer.getInt();
+        sb.nameIndexBlocks = buffer.getInt();
+        sb.nameIndexValid = buffer.getInt() == 1;
+        sb.groupCount = buffer.getInt();
+        sb.blocksPerGroup = buffer.getInt();
+        sb.inodesPerGroup = buffer.getInt();
+        sb.groupTableStart = buffer.getInt();
+        sb.groupTableBlocks = buffer.getInt();
+        sb.cleanUnmount = buffer.getInt() == 1;
 
         return sb;
     }
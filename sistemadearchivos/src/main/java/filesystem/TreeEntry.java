@@ -0,0 +1,47 @@
+package filesystem;
+
+/**
+ * Un elemento de un recorrido del árbol: la ruta completa de una entrada y su
+ * inode ya leído.
+ *
+ * @author dylan y Gadyr
+ */
+public class TreeEntry {
+
+    private final String path;
+    private final String name;
+    private final int depth; // 0 para la raíz del recorrido
+    private final Inode inode;
+
+    public TreeEntry(String path, String name, int depth, Inode inode) {
+        this.path = path;
+        this.name = name;
+        this.depth = depth;
+        this.inode = inode;
+    }
+
+    // Getters
+    public String getPath() {
+        return path;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public Inode getInode() {
+        return inode;
+    }
+
+    public int getInodeNumber() {
+        return inode.getInodeNumber();
+    }
+
+    public boolean isDirectory() {
+        return inode.isDirectory();
+    }
+}
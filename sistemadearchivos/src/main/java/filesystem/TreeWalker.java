@@ -0,0 +1,173 @@
+package filesystem;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator que recorre un subárbol en preorden. Cada entrada pendiente
+ * arrastra su subárbol, así que partir la cola de pendientes parte el árbol
+ * por directorios sin alterar el orden: la primera mitad se entrega a otro
+ * hilo y esta se queda con el resto. Si solo queda un directorio, se lee su
+ * contenido para poder partirlo.
+ *
+ * Los inodes se leen al entregar cada entrada, en el hilo que la procesa.
+ * Los errores de E/S salen como UncheckedIOException.
+ *
+ * @author dylan y Gadyr
+ */
+class TreeWalker implements Spliterator<TreeEntry> {
+
+    private final FileSystem fs;
+    private final Deque<Pending> pending;
+    private int unexpanded; // directorios pendientes sin leer
+
+    private static final class Pending {
+        final String path;
+        final String name;
+        final int depth;
+        final int inodeNumber;
+        final boolean directory;
+        Inode inode;
+        boolean expanded;
+
+        Pending(String path, String name, int depth, int inodeNumber, boolean directory) {
+            this.path = path;
+            this.name = name;
+            this.depth = depth;
+            this.inodeNumber = inodeNumber;
+            this.directory = directory;
+        }
+    }
+
+    TreeWalker(FileSystem fs, Inode root, String path) {
+        this.fs = fs;
+        this.pending = new ArrayDeque<>();
+
+        Pending first = new Pending(path, getName(path), 0, root.getInodeNumber(), root.isDirectory());
+        first.inode = root;
+        add(first);
+    }
+
+    private TreeWalker(FileSystem fs, Deque<Pending> pending) {
+        this.fs = fs;
+        this.pending = new ArrayDeque<>();
+        for (Pending p : pending) {
+            add(p);
+        }
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super TreeEntry> action) {
+        Pending next = pending.pollFirst();
+        if (next == null) {
+            return false;
+        }
+        if (next.directory && !next.expanded) {
+            unexpanded--;
+        }
+
+        try {
+            Inode inode = getInode(next);
+            if (next.directory && !next.expanded) {
+                // Los hijos van al frente, en orden, antes que los hermanos
+                List<Pending> children = readChildren(next, inode);
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    addFirst(children.get(i));
+                }
+            }
+            action.accept(new TreeEntry(next.path, next.name, next.depth, inode));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return true;
+    }
+
+    @Override
+    public Spliterator<TreeEntry> trySplit() {
+        if (pending.size() == 1 && unexpanded == 1) {
+            // Un único directorio: se lee para repartir sus hijos
+            Pending only = pending.peekFirst();
+            try {
+                List<Pending> children = readChildren(only, getInode(only));
+                only.expanded = true;
+                unexpanded--;
+                for (Pending child : children) {
+                    add(child);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        if (pending.size() < 2) {
+            return null;
+        }
+
+        Deque<Pending> prefix = new ArrayDeque<>();
+        for (int i = pending.size() / 2; i > 0; i--) {
+            Pending p = pending.pollFirst();
+            if (p.directory && !p.expanded) {
+                unexpanded--;
+            }
+            prefix.addLast(p);
+        }
+        return new TreeWalker(fs, prefix);
+    }
+
+    @Override
+    public long estimateSize() {
+        // Mientras queden directorios sin leer el tamaño es desconocido
+        return unexpanded > 0 ? Long.MAX_VALUE : pending.size();
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+
+    private List<Pending> readChildren(Pending dir, Inode inode) throws IOException {
+        List<Pending> children = new ArrayList<>();
+        for (DirectoryEntry entry : fs.readDirectoryEntries(inode)) {
+            String name = entry.getName();
+            if (name.equals(".") || name.equals("..")) {
+                continue;
+            }
+            String path = dir.path.equals("/") ? "/" + name : dir.path + "/" + name;
+            children.add(new Pending(path, name, dir.depth + 1, entry.getInodeNumber(),
+                    entry.getEntryType() == FSConstants.TYPE_DIRECTORY));
+        }
+        return children;
+    }
+
+    private Inode getInode(Pending p) throws IOException {
+        if (p.inode == null) {
+            p.inode = fs.readInode(p.inodeNumber);
+        }
+        return p.inode;
+    }
+
+    private void add(Pending p) {
+        pending.addLast(p);
+        if (p.directory && !p.expanded) {
+            unexpanded++;
+        }
+    }
+
+    private void addFirst(Pending p) {
+        pending.addFirst(p);
+        if (p.directory && !p.expanded) {
+            unexpanded++;
+        }
+    }
+
+    private static String getName(String path) {
+        int slash = path.lastIndexOf('/');
+        return slash < 0 || path.length() == 1 ? path : path.substring(slash + 1);
+    }
+}
@@ -3,6 +3,8 @@ package main;
 import commands.ShellCommands;
 import commands.FileSystemManager;
 import filesystem.FSConstants;
+import filesystem.FileSystem;
+import filesystem.MountOptions;
 import picocli.CommandLine;
 
 import java.io.File;
@@ -16,14 +18,34 @@ import java.util.Scanner;
 public class Main {
     public static void main(String[] args) {
         String fsFilePath = FSConstants.DEFAULT_FS_FILE;
+        MountOptions mountOptions = new MountOptions();
+        String serverAddress = null;
         
-        if (args.length > 0) {
-            fsFilePath = args[0];
+        for (String arg : args) {
+            if (arg.equals("--server")) {
+                serverAddress = String.valueOf(Server.DEFAULT_PORT);
+            } else if (arg.startsWith("--server=")) {
+                // Puerto TCP de localhost o ruta de un socket Unix
+                serverAddress = arg.substring("--server=".length());
+            } else if (arg.equals("--mmap")) {
+                mountOptions.setMemoryMapped(true);
+            } else if (arg.startsWith("--cache=")) {
+                // Tamaño del caché de bloques (0 lo desactiva)
+                mountOptions.setCacheBlocks(Integer.parseInt(arg.substring("--cache=".length())));
+            } else {
+                fsFilePath = arg;
+            }
+        }
+        
+        if (serverAddress != null) {
+            runServer(fsFilePath, mountOptions, serverAddress);
+            return;
         }
         
         System.out.println("=========== Sistema de archivos ===========");
         
         FileSystemManager fsManager = new FileSystemManager(fsFilePath);
+        fsManager.setMountOptions(mountOptions);
         
         File fsFile = new File(fsFilePath);
         boolean needsFormat = !fsFile.exists();
@@ -85,15 +107,8 @@ public class Main {
                 // Verificar comandos especiales que no requieren autenticación
                 String mainCommand = cmdArgs[0].toLowerCase();
                 
-                boolean requiresAuth = !mainCommand.equals("format") 
-                                    && !mainCommand.equals("su") 
-                                    && !mainCommand.equals("exit")
-                                    && !mainCommand.equals("help")
-                                    && !mainCommand.equals("clear")
-                                    && !mainCommand.equals("infofs");
-                
                 // Verificar si necesita autenticación y si hay sistema montado
-                if (requiresAuth) {
+                if (requiresAuth(mainCommand)) {
                     if (fsManager.getFileSystem() == null || !fsManager.getFileSystem().isMounted()) {
                         System.err.println("Error: Sistema de archivos no montado. Use 'format' o monte un FS existente.");
                         continue;
@@ -105,7 +120,24 @@ public class Main {
                     }
                 }
                 
-                int exitCode = cmd.execute(cmdArgs);
+                // El comando es una operación: el commit no la corta a la mitad
+                // (exit desmonta, y eso hace sync: va fuera de una operación)
+                FileSystem fs = fsManager.getFileSystem();
+                boolean inOperation = fs != null && fs.isMounted() && !mainCommand.equals("exit");
+                if (inOperation) {
+                    fs.beginOperation();
+                }
+                int exitCode;
+                try {
+                    exitCode = cmd.execute(cmdArgs);
+                } finally {
+                    if (inOperation) {
+                        fs.endOperation();
+                    }
+                }
+
+                // Cada comando es una transacción del journal
+                fsManager.commit();
                 
             } catch (Exception e) {
                 System.err.println("Error: " + e.getMessage());
@@ -116,11 +148,62 @@ public class Main {
         System.out.println("\n¡Hasta luego!");
     }
     
+    /**
+     * Monta el sistema de archivos y lo comparte entre varias sesiones
+     * conectadas por socket
+     */
+    private static void runServer(String fsFilePath, MountOptions mountOptions, String address) {
+        if (!new File(fsFilePath).exists()) {
+            System.err.println("Error: No se encontró el sistema de archivos " + fsFilePath);
+            System.err.println("Formatee el disco virtual antes de iniciar el servidor.");
+            System.exit(1);
+        }
+        
+        FileSystemManager fsManager = new FileSystemManager(fsFilePath);
+        fsManager.setMountOptions(mountOptions);
+        
+        try {
+            fsManager.mount();
+        } catch (IOException e) {
+            System.err.println("Error al montar el sistema de archivos: " + e.getMessage());
+            System.exit(1);
+        }
+        
+        // Al cerrar el proceso se desmonta, con lo que queda todo en disco
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                fsManager.shutdown();
+            } catch (IOException e) {
+                System.err.println("Error al desmontar: " + e.getMessage());
+            }
+        }));
+        
+        ThreadConsole.install();
+        try {
+            new Server(fsManager.getFileSystem(), address).run();
+        } catch (IOException e) {
+            System.err.println("Error en el servidor: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+    
+    /**
+     * Indica si el comando necesita un usuario autenticado
+     */
+    static boolean requiresAuth(String mainCommand) {
+        return !mainCommand.equals("format") 
+            && !mainCommand.equals("su") 
+            && !mainCommand.equals("exit")
+            && !mainCommand.equals("help")
+            && !mainCommand.equals("clear")
+            && !mainCommand.equals("infofs");
+    }
+    
     /**
      * Parsea el comando ingresado por el usuario
      * Maneja correctamente argumentos entre comillas
      */
-    private static String[] parseCommand(String input) {
+    static String[] parseCommand(String input) {
         java.util.List<String> tokens = new java.util.ArrayList<>();
         boolean inQuotes = false;
         StringBuilder currentToken = new StringBuilder();
@@ -0,0 +1,94 @@
+package main;
+
+import filesystem.FileSystem;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Modo servidor: atiende varias sesiones a la vez sobre un mismo sistema de
+ * archivos montado. Escucha en un puerto TCP de localhost o en un socket Unix.
+ *
+ * Cada sesión corre en su propio hilo. Con Java 21 o superior se usa un hilo
+ * virtual por sesión; en versiones anteriores, un pool de hilos que crece a
+ * demanda.
+ *
+ * @author dylan y Gadyr
+ */
+class Server {
+
+    public static final int DEFAULT_PORT = 7070;
+
+    private final FileSystem fs;
+    private final String address;
+
+    /**
+     * @param address número de puerto, o ruta del socket Unix
+     */
+    Server(FileSystem fs, String address) {
+        this.fs = fs;
+        this.address = address;
+    }
+
+    /**
+     * Acepta conexiones hasta que se cierre el proceso
+     */
+    void run() throws IOException {
+        ExecutorService sessions = newSessionExecutor();
+
+        try (ServerSocketChannel server = open()) {
+            ThreadConsole.console().println("Servidor escuchando en " + describe(server.getLocalAddress()));
+            while (true) {
+                SocketChannel channel = server.accept();
+                sessions.execute(new Session(channel, fs));
+            }
+        } finally {
+            sessions.shutdown();
+        }
+    }
+
+    private ServerSocketChannel open() throws IOException {
+        if (address.chars().allMatch(Character::isDigit)) {
+            int port = Integer.parseInt(address);
+            return ServerSocketChannel.open()
+                    .bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        }
+
+        // Un socket que quedó de una ejecución anterior impide el bind
+        Path socket = Path.of(address);
+        Files.deleteIfExists(socket);
+        return ServerSocketChannel.open(StandardProtocolFamily.UNIX)
+                .bind(UnixDomainSocketAddress.of(socket));
+    }
+
+    private static String describe(SocketAddress address) {
+        if (address instanceof UnixDomainSocketAddress) {
+            return "socket " + ((UnixDomainSocketAddress) address).getPath();
+        }
+        return address.toString();
+    }
+
+    /**
+     * Un hilo virtual por sesión si la JVM los tiene (Java 21+), o un pool de
+     * hilos normales si no
+     */
+    private static ExecutorService newSessionExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+}
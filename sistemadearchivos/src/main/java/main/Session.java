@@ -0,0 +1,134 @@
+package main;
+
+import commands.FileSystemManager;
+import commands.ShellCommands;
+import filesystem.FileSystem;
+import picocli.CommandLine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Una conexión del modo servidor: un shell con su propio usuario y directorio
+ * actual sobre el sistema de archivos compartido.
+ *
+ * @author dylan y Gadyr
+ */
+class Session implements Runnable {
+
+    private final SocketChannel channel;
+    private final FileSystem fs;
+
+    Session(SocketChannel channel, FileSystem fs) {
+        this.channel = channel;
+        this.fs = fs;
+    }
+
+    @Override
+    public void run() {
+        try (SocketChannel ch = channel) {
+            InputStream in = new BufferedInputStream(Channels.newInputStream(ch));
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(ch));
+            ThreadConsole.bind(in, out);
+            try {
+                serve(in, out);
+            } finally {
+                ThreadConsole.unbind();
+                out.flush();
+            }
+        } catch (IOException e) {
+            ThreadConsole.console().println("Sesión terminada: " + e.getMessage());
+        }
+    }
+
+    private void serve(InputStream in, OutputStream out) throws IOException {
+        PrintStream console = new PrintStream(out, false);
+        FileSystemManager fsManager = new FileSystemManager(fs);
+
+        CommandLine cmd = new CommandLine(new ShellCommands(fsManager));
+        cmd.setUsageHelpAutoWidth(true);
+        cmd.setOut(new PrintWriter(console, true));
+        cmd.setErr(new PrintWriter(console, true));
+        cmd.setExecutionExceptionHandler(new Main.CustomExceptionHandler());
+
+        console.println("=========== Sistema de archivos ===========");
+        console.println("Por favor autentíquese usando el comando: su <usuario>");
+        console.println();
+
+        while (true) {
+            console.print(fsManager.getPrompt());
+            console.flush();
+
+            String input = readLine(in);
+            if (input == null) {
+                break;
+            }
+            input = input.trim();
+            if (input.isEmpty()) {
+                continue;
+            }
+
+            try {
+                String[] cmdArgs = Main.parseCommand(input);
+                String mainCommand = cmdArgs[0].toLowerCase();
+
+                // Salir cierra sólo esta sesión; el servidor sigue montado
+                if (mainCommand.equals("exit")) {
+                    console.println("Cerrando la sesión...");
+                    break;
+                }
+                if (mainCommand.equals("format")) {
+                    console.println("Error: 'format' no está disponible en modo servidor");
+                    continue;
+                }
+                if (Main.requiresAuth(mainCommand) && fsManager.getCurrentUser() == null) {
+                    console.println("Error: Debe autenticarse primero. Use el comando 'su <usuario>'");
+                    continue;
+                }
+
+                fs.beginOperation();
+                try {
+                    cmd.execute(cmdArgs);
+                } finally {
+                    fs.endOperation();
+                }
+
+                // Cada comando es una transacción del journal
+                fsManager.commit();
+            } catch (Exception e) {
+                console.println("Error: " + e.getMessage());
+            } finally {
+                cmd.getOut().flush();
+                cmd.getErr().flush();
+                console.flush();
+            }
+        }
+        console.flush();
+    }
+
+    /**
+     * Lee una línea byte a byte, sin adelantarse: lo que sigue queda para los
+     * comandos que leen de System.in. Devuelve null al cerrarse la conexión.
+     */
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int c;
+        while ((c = in.read()) != -1 && c != '\n') {
+            if (c != '\r') {
+                line.write(c);
+            }
+        }
+        if (c == -1 && line.size() == 0) {
+            return null;
+        }
+        return line.toString();
+    }
+}
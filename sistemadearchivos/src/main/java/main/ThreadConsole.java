@@ -0,0 +1,152 @@
+package main;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Consola por hilo para el modo servidor. Los comandos escriben en System.out
+ * y leen de System.in; al instalarla, esos flujos pasan a ser los de la sesión
+ * que atiende el hilo actual. Los hilos sin sesión usan la consola original.
+ *
+ * La entrada devuelve como mucho una línea por lectura, para que un Scanner
+ * creado dentro de un comando no se quede con las líneas siguientes.
+ *
+ * @author dylan y Gadyr
+ */
+final class ThreadConsole {
+
+    private static final ThreadLocal<Streams> CURRENT = new ThreadLocal<>();
+
+    private static PrintStream originalOut;
+    private static PrintStream originalErr;
+    private static InputStream originalIn;
+
+    private static final class Streams {
+        final InputStream in;
+        final OutputStream out;
+
+        Streams(InputStream in, OutputStream out) {
+            this.in = in;
+            this.out = out;
+        }
+    }
+
+    private ThreadConsole() {
+    }
+
+    /**
+     * Reemplaza System.in, System.out y System.err por los flujos que
+     * redirigen a la sesión del hilo
+     */
+    static synchronized void install() {
+        if (originalOut != null) {
+            return;
+        }
+        originalOut = System.out;
+        originalErr = System.err;
+        originalIn = System.in;
+
+        System.setOut(new PrintStream(new RoutingOutput(originalOut), true));
+        System.setErr(new PrintStream(new RoutingOutput(originalErr), true));
+        System.setIn(new RoutingInput());
+    }
+
+    /**
+     * Asocia los flujos de una sesión al hilo actual
+     */
+    static void bind(InputStream in, OutputStream out) {
+        CURRENT.set(new Streams(in, out));
+    }
+
+    static void unbind() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Salida de la consola original (para los mensajes del servidor)
+     */
+    static PrintStream console() {
+        return originalOut != null ? originalOut : System.out;
+    }
+
+    private static final class RoutingOutput extends OutputStream {
+
+        private final OutputStream fallback;
+
+        RoutingOutput(OutputStream fallback) {
+            this.fallback = fallback;
+        }
+
+        private OutputStream target() {
+            Streams streams = CURRENT.get();
+            return streams == null ? fallback : streams.out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            target().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            target().write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            // La sesión vacía su salida al terminar cada comando o antes de
+            // esperar una línea; así no se escribe al socket con el lock del
+            // PrintStream compartido
+            if (CURRENT.get() == null) {
+                fallback.flush();
+            }
+        }
+    }
+
+    private static final class RoutingInput extends InputStream {
+
+        @Override
+        public int read() throws IOException {
+            Streams streams = CURRENT.get();
+            if (streams == null) {
+                return originalIn.read();
+            }
+            streams.out.flush();
+            return streams.in.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            Streams streams = CURRENT.get();
+            if (streams == null) {
+                return originalIn.read(b, off, len);
+            }
+            if (len == 0) {
+                return 0;
+            }
+
+            // El prompt del comando tiene que llegar antes de bloquear
+            streams.out.flush();
+
+            int count = 0;
+            while (count < len) {
+                int c = streams.in.read();
+                if (c == -1) {
+                    break;
+                }
+                b[off + count++] = (byte) c;
+                if (c == '\n') {
+                    break;
+                }
+            }
+            return count == 0 ? -1 : count;
+        }
+
+        @Override
+        public int available() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package tests;
+
+import filesystem.AllocationStrategy;
+import filesystem.FSConstants;
+import filesystem.FileSystem;
+import filesystem.Inode;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compara las tres estrategias de asignación sobre el mismo trabajo: lectura
+ * secuencial, lectura aleatoria de bloques, agregado de bloques al final de
+ * un archivo y borrado. Cada estrategia usa una imagen nueva.
+ *
+ * Uso: java tests.AllocationBenchmark [tamañoMB] [archivos] [KB por archivo]
+ */
+public class AllocationBenchmark {
+
+    private static final int[] STRATEGIES = {
+            FSConstants.ALLOC_CONTIGUOUS, FSConstants.ALLOC_LINKED, FSConstants.ALLOC_INDEXED };
+    private static final String[] NAMES = { "Contigua", "Enlazada", "Indexada" };
+
+    private static final int APPEND_BLOCKS = 1000;
+    private static final int RANDOM_READS = 20000;
+
+    public static void main(String[] args) throws IOException {
+        int sizeMB = args.length > 0 ? Integer.parseInt(args[0]) : 128;
+        int files = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int fileKB = args.length > 2 ? Integer.parseInt(args[2]) : 512;
+
+        System.out.println("=== Benchmark de estrategias de asignación ===");
+        System.out.println("Imagen: " + sizeMB + " MB, " + files + " archivos de " + fileKB + " KB");
+        System.out.printf("%-10s %-16s %-18s %-18s %s%n", "ESTRATEGIA", "SEC (MB/s)",
+                "ALEATORIA (op/s)", "AGREGAR (blq/s)", "BORRAR (ms)");
+
+        // La primera ronda solo calienta el JIT y no se muestra
+        for (int round = 0; round < 2; round++) {
+            for (int s = 0; s < STRATEGIES.length; s++) {
+                File image = File.createTempFile("alloc-bench", ".fs");
+                image.deleteOnExit();
+                try {
+                    run(NAMES[s], STRATEGIES[s], image.getPath(), sizeMB, files, fileKB, round == 1);
+                } finally {
+                    image.delete();
+                }
+            }
+        }
+    }
+
+    private static void run(String name, int strategy, String path, int sizeMB, int files, int fileKB,
+            boolean print) throws IOException {
+        FileSystem fs = new FileSystem(path);
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            fs.format(sizeMB, 4, strategy, "bench");
+        } finally {
+            System.setOut(out);
+        }
+
+        int blockSize = fs.getSuperblock().getBlockSize();
+        byte[] data = new byte[fileKB * 1024];
+        new Random(7).nextBytes(data);
+
+        // Crear los archivos
+        List<Inode> inodes = new ArrayList<>();
+        for (int i = 0; i < files; i++) {
+            Inode inode = new Inode(fs.allocateInode(), FSConstants.TYPE_FILE,
+                    FSConstants.DEFAULT_FILE_PERMS, FSConstants.ROOT_UID, FSConstants.ROOT_GID);
+            fs.writeFile(inode, data);
+            inodes.add(inode);
+        }
+        fs.sync();
+
+        // Lectura secuencial de todos los archivos
+        long start = System.nanoTime();
+        long bytes = 0;
+        for (Inode inode : inodes) {
+            bytes += fs.readFile(inode).length;
+        }
+        double sequential = (bytes / (1024.0 * 1024.0)) / seconds(start);
+
+        // Lectura aleatoria de bloques
+        Random random = new Random(11);
+        int blocksPerFile = (data.length + blockSize - 1) / blockSize;
+        start = System.nanoTime();
+        for (int i = 0; i < RANDOM_READS; i++) {
+            Inode inode = inodes.get(random.nextInt(inodes.size()));
+            fs.readFileBlock(inode, random.nextInt(blocksPerFile));
+        }
+        double randomOps = RANDOM_READS / seconds(start);
+
+        // Agregar bloques de a uno al final de un archivo nuevo
+        AllocationStrategy allocation = fs.getAllocationStrategy();
+        Inode growing = new Inode(fs.allocateInode(), FSConstants.TYPE_FILE,
+                FSConstants.DEFAULT_FILE_PERMS, FSConstants.ROOT_UID, FSConstants.ROOT_GID);
+        start = System.nanoTime();
+        for (int i = 0; i < APPEND_BLOCKS; i++) {
+            allocation.allocateBlocks(growing, i, 1);
+        }
+        double appendOps = APPEND_BLOCKS / seconds(start);
+        inodes.add(growing);
+
+        // Borrar todo
+        start = System.nanoTime();
+        for (Inode inode : inodes) {
+            fs.releaseInodeBlocks(inode);
+        }
+        double deleteMs = seconds(start) * 1000;
+
+        if (print) {
+            System.out.printf("%-10s %-16.1f %-18.0f %-18.0f %.1f%n", name, sequential, randomOps,
+                    appendOps, deleteMs);
+        }
+
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            fs.unmount();
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    private static double seconds(long startNanos) {
+        return Math.max(1, System.nanoTime() - startNanos) / 1e9;
+    }
+}
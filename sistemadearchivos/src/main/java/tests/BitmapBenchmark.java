@@ -0,0 +1,72 @@
+package tests;
+
+import filesystem.Bitmap;
+import java.util.Random;
+
+/**
+ * Mide el costo de asignar bloques en un bitmap grande con distintos niveles
+ * de ocupación, comparando la búsqueda bit a bit desde 0 (la implementación
+ * anterior) con la búsqueda por palabras con cursor next-fit.
+ *
+ * Uso: java tests.BitmapBenchmark [bits] [asignaciones]
+ */
+public class BitmapBenchmark {
+
+    public static void main(String[] args) {
+        // 8M bits = imagen de 32 GB con bloques de 4 KB
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 8 * 1024 * 1024;
+        int allocations = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+
+        System.out.println("=== Benchmark de Bitmap ===");
+        System.out.println("Bits: " + size + ", asignaciones por medición: " + allocations);
+        System.out.printf("%-8s %-22s %-22s %s%n", "LLENO", "BIT A BIT (ns/asig)",
+                "NEXT-FIT (ns/asig)", "MEJORA");
+
+        for (double fill : new double[] { 0.10, 0.50, 0.95 }) {
+            long oldNs = measure(size, fill, allocations, false);
+            long newNs = measure(size, fill, allocations, true);
+            System.out.printf("%-8s %-22d %-22d %.1fx%n",
+                    (int) (fill * 100) + "%", oldNs, newNs, (double) oldNs / Math.max(1, newNs));
+        }
+    }
+
+    /**
+     * Llena el bitmap hasta la fracción indicada (en orden, como lo deja un
+     * disco que se fue llenando, con algunos huecos dispersos) y mide el
+     * tiempo promedio por asignación
+     */
+    private static long measure(int size, double fill, int allocations, boolean wordLevel) {
+        Bitmap bitmap = new Bitmap(size);
+        Random random = new Random(42);
+        int filled = (int) (size * fill);
+        for (int i = 0; i < filled; i++) {
+            bitmap.allocate(i);
+        }
+        // Huecos dispersos dentro de la zona llena
+        for (int i = 0; i < allocations / 10; i++) {
+            bitmap.free(random.nextInt(Math.max(1, filled)));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < allocations; i++) {
+            int index = wordLevel ? bitmap.findNextFree() : findFirstFreeBitByBit(bitmap);
+            if (index == -1) {
+                break;
+            }
+            bitmap.allocate(index);
+        }
+        return (System.nanoTime() - start) / allocations;
+    }
+
+    /**
+     * Búsqueda original: recorre bit por bit desde el inicio
+     */
+    private static int findFirstFreeBitByBit(Bitmap bitmap) {
+        for (int i = 0; i < bitmap.getSize(); i++) {
+            if (!bitmap.isAllocated(i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -37,6 +37,46 @@ public class BitmapTest {
         compare("findFirstFree()", bitmap.findFirstFree(), loaded.findFirstFree());
         compare("countFree()", bitmap.countFree(), loaded.countFree());
 
+        System.out.println("\n--- Pruebas de next-fit y contador de libres ---");
+        Bitmap nextFit = new Bitmap(8);
+        nextFit.allocate(0);
+        nextFit.allocate(1);
+        compare("countFree() tras asignar 2", 6, nextFit.countFree());
+        compare("findNextFree() #1", 2, nextFit.findNextFree());
+        nextFit.allocate(2);
+        nextFit.free(0);
+        // El cursor sigue avanzando aunque se haya liberado el bit 0
+        compare("findNextFree() #2", 3, nextFit.findNextFree());
+        compare("findFirstFree()", 0, nextFit.findFirstFree());
+        nextFit.allocate(0); // repetir allocate no debe cambiar el contador
+        nextFit.allocate(0);
+        compare("countFree() tras asignación repetida", 5, nextFit.countFree());
+        for (int i = 3; i < 8; i++) {
+            nextFit.allocate(i);
+        }
+        compare("findNextFree() lleno", -1, nextFit.findNextFree());
+        nextFit.free(1);
+        // Al llegar al final da la vuelta
+        compare("findNextFree() con vuelta", 1, nextFit.findNextFree());
+
+        System.out.println("\n--- Pruebas de carga perezosa ---");
+        // Tres bloques de 1 byte (8 bits): el primero lleno, el segundo con
+        // el bit 9 ocupado y el tercero vacío
+        byte[][] disk = { { (byte) 0xFF }, { (byte) 0x02 }, { 0 } };
+        int[] reads = { 0 };
+        Bitmap lazy = Bitmap.lazy(24, 15, 1, b -> {
+            reads[0]++;
+            return disk[b].clone();
+        });
+        compare("bloques sin leer al crear", 3, lazy.getUnloadedBlocks());
+        compare("countFree() sin leer", 15, lazy.countFree());
+        compare("isAllocated(9)", true, lazy.isAllocated(9));
+        compare("lecturas tras isAllocated(9)", 1, reads[0]);
+        compare("findFreeFrom(0)", 8, lazy.findFreeFrom(0));
+        compare("findAllocatedFrom(10)", 24, lazy.findAllocatedFrom(10));
+        compare("bloques sin leer al final", 0, lazy.getUnloadedBlocks());
+        compare("lecturas totales", 3, reads[0]);
+
         System.out.println("\n=== Fin de pruebas ===");
     }
 
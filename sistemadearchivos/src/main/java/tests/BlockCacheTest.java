@@ -0,0 +1,140 @@
+package tests;
+
+import filesystem.BlockCache;
+import filesystem.BlockDevice;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Prueba que una falla del caché que lee el disco mientras otro hilo cambia
+ * el bloque no deje guardada la versión vieja
+ *
+ * @author dylan y Gadyr
+ */
+public class BlockCacheTest {
+
+    private static final int BLOCK_SIZE = 16;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("=== Prueba de caché de bloques ===");
+
+        System.out.println("\n--- write() y desalojo durante una falla ---");
+        compare("bloque 0 después de la carrera", 2, race(false));
+
+        System.out.println("\n--- update() (journal) y checkpoint durante una falla ---");
+        compare("bloque 0 después de la carrera", 2, race(true));
+
+        System.out.println("\n=== Fin de pruebas ===");
+    }
+
+    /**
+     * Un hilo falla en el bloque 0 y queda leyendo el disco; mientras tanto el
+     * bloque se cambia a 2, se desaloja y su versión nueva llega al disco
+     *
+     * @return el primer byte del bloque 0 leído después
+     */
+    private static int race(boolean journal) throws Exception {
+        SlowDevice device = new SlowDevice(4);
+        BlockCache cache = new BlockCache(device, BLOCK_SIZE, 2);
+
+        Thread reader = new Thread(() -> {
+            try {
+                cache.read(0);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        reader.start();
+        device.entered.await();
+
+        byte[] updated = new byte[BLOCK_SIZE];
+        updated[0] = 2;
+        if (journal) {
+            // El journal actualiza el caché y escribe el bloque en el checkpoint
+            cache.update(0, updated);
+        } else {
+            cache.write(0, updated);
+        }
+        cache.read(1);
+        cache.read(2); // desaloja el bloque 0
+        if (journal) {
+            device.write(ByteBuffer.wrap(updated.clone()), 0);
+        }
+
+        device.release.countDown();
+        reader.join();
+        return cache.read(0)[0];
+    }
+
+    /**
+     * Dispositivo en memoria cuya primera lectura del bloque 0 copia los datos
+     * y espera antes de volver
+     */
+    private static class SlowDevice implements BlockDevice {
+
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        private final byte[] data;
+        private boolean delayed;
+
+        SlowDevice(int blocks) {
+            this.data = new byte[blocks * BLOCK_SIZE];
+            data[0] = 1;
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            int length = dst.remaining();
+            boolean delay;
+            synchronized (this) {
+                dst.put(data, (int) position, length);
+                delay = position == 0 && !delayed;
+                delayed = true;
+            }
+            if (delay) {
+                entered.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            return length;
+        }
+
+        @Override
+        public synchronized void write(ByteBuffer src, long position) {
+            src.get(data, (int) position, src.remaining());
+        }
+
+        @Override
+        public long size() {
+            return data.length;
+        }
+
+        @Override
+        public void setSize(long newSize) {
+        }
+
+        @Override
+        public void force() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static void compare(String field, Object expected, Object actual) {
+        System.out.println("\n" + field);
+        System.out.println(" esperado : " + expected);
+        System.out.println(" obtenido : " + actual);
+        if ((expected == null && actual == null)
+                || (expected != null && expected.equals(actual))) {
+            System.out.println(" RESULTADO: OK");
+        } else {
+            System.out.println(" RESULTADO: ERROR");
+        }
+    }
+}
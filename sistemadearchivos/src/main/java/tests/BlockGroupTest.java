@@ -0,0 +1,113 @@
+package tests;
+
+import filesystem.FSConstants;
+import filesystem.FileSystem;
+import filesystem.Inode;
+import filesystem.Superblock;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Prueba la ubicación por grupos de bloques: los directorios que cuelgan de la
+ * raíz se reparten entre grupos, los archivos y subdirectorios se quedan en el
+ * grupo de su directorio, y los datos de un archivo van a la zona de datos del
+ * grupo de su inode.
+ *
+ * @author dylan y Gadyr
+ */
+public class BlockGroupTest {
+
+    public static void main(String[] args) throws IOException {
+        System.out.println("=== Prueba de grupos de bloques ===");
+
+        File image = File.createTempFile("blockgroup-test", ".fs");
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            // Con bloques de 2 KB un grupo abarca 16384 bloques (32 MB)
+            FileSystem fs = new FileSystem(image.getPath());
+            fs.format(128, 2, FSConstants.ALLOC_INDEXED, "test");
+            Superblock superblock = fs.getSuperblock();
+            int groupCount = superblock.getGroupCount();
+
+            // Directorios de primer nivel: uno por grupo que no sea el de la
+            // raíz, que ya tiene los directorios del formateo
+            Set<Integer> topGroups = new HashSet<>();
+            int[] topDirs = new int[groupCount - 1];
+            for (int i = 0; i < topDirs.length; i++) {
+                topDirs[i] = fs.allocateInode(FSConstants.ROOT_INODE, true);
+                topGroups.add(groupOfInode(superblock, topDirs[i]));
+            }
+            // El primero va a un grupo completo (el último puede ser más
+            // chico y quedar bajo el promedio de bloques libres)
+            int dir = topDirs[0];
+            int dirGroup = groupOfInode(superblock, dir);
+
+            // Un archivo y un subdirectorio se quedan en el grupo del padre
+            int fileNumber = fs.allocateInode(dir, false);
+            int subdir = fs.allocateInode(dir, true);
+
+            // Los datos del archivo van al grupo de su inode; con los
+            // punteros directos no hay bloques de índice en el medio
+            Inode file = new Inode(fileNumber, FSConstants.TYPE_FILE, FSConstants.DEFAULT_FILE_PERMS,
+                    FSConstants.ROOT_UID, FSConstants.ROOT_GID);
+            file.setLinkCount(1);
+            fs.writeFile(file, new byte[FSConstants.DIRECT_POINTERS * superblock.getBlockSize()]);
+            List<Integer> blocks = fs.getAllocatedBlocks(file);
+            boolean dataInGroup = !blocks.isEmpty();
+            boolean dataContiguous = true;
+            for (int i = 0; i < blocks.size(); i++) {
+                dataInGroup &= groupOfBlock(superblock, blocks.get(i)) == dirGroup;
+                if (i > 0 && blocks.get(i) != blocks.get(i - 1) + 1) {
+                    dataContiguous = false;
+                }
+            }
+            int goalGroup = groupOfBlock(superblock, fs.getDataGoal(file));
+
+            fs.unmount();
+
+            System.setOut(out);
+            System.out.println("\nGrupos: " + groupCount);
+            compare("más de un grupo", true, groupCount > 1);
+            compare("directorios de primer nivel en grupos distintos", topDirs.length, topGroups.size());
+            compare("ninguno en el grupo de la raíz", false,
+                    topGroups.contains(groupOfInode(superblock, FSConstants.ROOT_INODE)));
+            compare("archivo en el grupo de su directorio", dirGroup, groupOfInode(superblock, fileNumber));
+            compare("subdirectorio en el grupo de su directorio", dirGroup, groupOfInode(superblock, subdir));
+            compare("meta de datos en el grupo del inode", dirGroup, goalGroup);
+            compare("bloques del archivo en el grupo del inode", true, dataInGroup);
+            compare("bloques del archivo seguidos", true, dataContiguous);
+        } finally {
+            System.setOut(out);
+            image.delete();
+        }
+
+        System.out.println("\n=== Fin de pruebas ===");
+    }
+
+    private static int groupOfInode(Superblock superblock, int inodeNumber) {
+        return Math.min(inodeNumber / superblock.getInodesPerGroup(), superblock.getGroupCount() - 1);
+    }
+
+    private static int groupOfBlock(Superblock superblock, int blockNumber) {
+        int relative = blockNumber - superblock.getDataBlocksStart();
+        return Math.min(relative / superblock.getBlocksPerGroup(), superblock.getGroupCount() - 1);
+    }
+
+    private static void compare(String field, Object expected, Object actual) {
+        System.out.println("\n" + field);
+        System.out.println(" esperado : " + expected);
+        System.out.println(" obtenido : " + actual);
+        if ((expected == null && actual == null)
+                || (expected != null && expected.equals(actual))) {
+            System.out.println(" RESULTADO: OK");
+        } else {
+            System.out.println(" RESULTADO: ERROR");
+        }
+    }
+}
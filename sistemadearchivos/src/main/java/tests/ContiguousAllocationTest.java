@@ -0,0 +1,126 @@
+package tests;
+
+import filesystem.AllocationStrategy;
+import filesystem.FSConstants;
+import filesystem.FileSystem;
+import filesystem.Inode;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Prueba el límite de extents de la asignación contigua: un archivo que crece
+ * de a un bloque con el bloque vecino siempre ocupado no puede pasar de
+ * MAX_EXTENTS, y el bloque que no entra vuelve a quedar libre. Un directorio
+ * que crece igual reserva bloques por adelantado y sigue creciendo.
+ *
+ * @author dylan y Gadyr
+ */
+public class ContiguousAllocationTest {
+
+    private static final int DIRECTORY_BLOCKS = 300;
+
+    public static void main(String[] args) throws IOException {
+        System.out.println("=== Prueba de límite de extents (asignación contigua) ===");
+
+        File image = File.createTempFile("contiguous-test", ".fs");
+        image.deleteOnExit();
+        FileSystem fs = new FileSystem(image.getPath());
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            fs.format(16, 4, FSConstants.ALLOC_CONTIGUOUS, "test");
+        } finally {
+            System.setOut(out);
+        }
+
+        AllocationStrategy allocation = fs.getAllocationStrategy();
+        Inode growing = newFile(fs);
+        Inode blocker = newFile(fs);
+        int freeBefore = fs.getSuperblock().getFreeBlocks();
+
+        // Cada bloque de growing queda seguido por uno de blocker, así que
+        // cada agregado necesita un extent nuevo
+        int growingBlocks = 0;
+        int blockerBlocks = 0;
+        String error = null;
+        for (int i = 0; i <= FSConstants.MAX_EXTENTS; i++) {
+            try {
+                allocation.allocateBlocks(growing, growingBlocks, 1);
+                growingBlocks++;
+            } catch (IOException e) {
+                error = e.getMessage();
+                break;
+            }
+            allocation.allocateBlocks(blocker, blockerBlocks++, 1);
+        }
+
+        compare("extents del archivo", FSConstants.MAX_EXTENTS, growing.getExtents().size());
+        compare("bloques asignados", FSConstants.MAX_EXTENTS, growingBlocks);
+        compare("IOException al pasar el límite", true, error != null);
+        compare("bloques libres", freeBefore - growingBlocks - blockerBlocks,
+                fs.getSuperblock().getFreeBlocks());
+        compare("bitmap y superblock coinciden", fs.getSuperblock().getFreeBlocks(),
+                fs.getDataBlockBitmap().countFree());
+
+        // Un directorio con el bloque siguiente a su último extent siempre
+        // ocupado: sin reservar se quedaría en 12 + MAX_EXTENTS bloques
+        Inode dir = new Inode(fs.allocateInode(), FSConstants.TYPE_DIRECTORY, FSConstants.DEFAULT_DIR_PERMS,
+                FSConstants.ROOT_UID, FSConstants.ROOT_GID);
+        int dirBlocks = 0;
+        error = null;
+        while (dirBlocks < DIRECTORY_BLOCKS) {
+            try {
+                allocation.allocateBlocks(dir, dirBlocks, 1);
+                dirBlocks++;
+            } catch (IOException e) {
+                error = e.getMessage();
+                break;
+            }
+            if (!dir.getExtents().isEmpty()) {
+                fs.allocateDataBlock(dir.getExtents().get(dir.getExtents().size() - 1).getEnd());
+            }
+        }
+        Set<Integer> distinct = new HashSet<>();
+        for (int block : allocation.mapBlocks(dir, dirBlocks)) {
+            distinct.add(block);
+        }
+
+        compare("bloques del directorio", DIRECTORY_BLOCKS, dirBlocks);
+        compare("error al crecer el directorio", null, error);
+        compare("extents del directorio dentro del límite", true,
+                dir.getExtents().size() <= FSConstants.MAX_EXTENTS);
+        compare("bloques del directorio distintos y asignados", true,
+                distinct.size() == dirBlocks && !distinct.contains(-1));
+
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            fs.unmount();
+        } finally {
+            System.setOut(out);
+            image.delete();
+        }
+
+        System.out.println("\n=== Fin de pruebas ===");
+    }
+
+    private static Inode newFile(FileSystem fs) throws IOException {
+        return new Inode(fs.allocateInode(), FSConstants.TYPE_FILE, FSConstants.DEFAULT_FILE_PERMS,
+                FSConstants.ROOT_UID, FSConstants.ROOT_GID);
+    }
+
+    private static void compare(String field, Object expected, Object actual) {
+        System.out.println("\n" + field);
+        System.out.println(" esperado : " + expected);
+        System.out.println(" obtenido : " + actual);
+        if ((expected == null && actual == null)
+                || (expected != null && expected.equals(actual))) {
+            System.out.println(" RESULTADO: OK");
+        } else {
+            System.out.println(" RESULTADO: ERROR");
+        }
+    }
+}
@@ -2,11 +2,18 @@ package tests;
 
 import filesystem.DirectoryEntry;
 import filesystem.FSConstants;
+import filesystem.FileSystem;
+import filesystem.Inode;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
 import java.util.Arrays;
+import java.util.List;
 
 public class DirectoryEntryTest {
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
 
         DirectoryEntry original = new DirectoryEntry(
                 42, // inodeNumber
@@ -28,14 +35,95 @@ public class DirectoryEntryTest {
         compare("entryType", original.getEntryType(), deserialized.getEntryType());
         compare("nameLength", original.getNameLength(), deserialized.getNameLength());
         compare("name", original.getName(), deserialized.getName());
+        compare("recordLength", original.getRecordLength(), serialized.length);
 
         // Verificación de isFree()
         System.out.println("\nisFree() original: " + original.isFree());
         System.out.println("isFree() deserializado: " + deserialized.isFree());
 
+        testPacking();
+
         System.out.println("\n=== Fin ===");
     }
 
+    /**
+     * Llena un bloque de directorio de 4 KB con entradas de largo variable:
+     * cuántas entran, que al borrar dos seguidas su espacio se junte para una
+     * entrada más larga, y que lo que no entra pase al índice sin perder nada
+     */
+    private static void testPacking() throws IOException {
+        System.out.println("\n=== Empaquetado de entradas en un bloque ===");
+
+        File image = File.createTempFile("direntry-test", ".fs");
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            FileSystem fs = new FileSystem(image.getPath());
+            fs.format(16, 4, FSConstants.ALLOC_INDEXED, "test");
+            int blockSize = fs.getSuperblock().getBlockSize();
+
+            int dirNumber = fs.allocateInode();
+            Inode dir = new Inode(dirNumber, FSConstants.TYPE_DIRECTORY, FSConstants.DEFAULT_DIR_PERMS,
+                    FSConstants.ROOT_UID, FSConstants.ROOT_GID);
+            dir.setLinkCount(2);
+            dir.setFileSize(blockSize);
+            dir.setDirectBlock(0, fs.allocateDataBlock());
+            fs.writeInode(dir);
+            fs.writeDirectoryEntries(dir, List.of(
+                    new DirectoryEntry(dirNumber, FSConstants.TYPE_DIRECTORY, "."),
+                    new DirectoryEntry(FSConstants.ROOT_INODE, FSConstants.TYPE_DIRECTORY, "..")));
+
+            // "." y ".." ocupan 12 bytes cada uno, igual que un nombre de 4
+            int recordLength = new DirectoryEntry(0, FSConstants.TYPE_FILE, "e000").getRecordLength();
+            int fit = (blockSize - 2 * recordLength) / recordLength;
+            for (int i = 0; i < fit; i++) {
+                fs.addEntry(dir, new DirectoryEntry(1000 + i, FSConstants.TYPE_FILE, name(i)));
+            }
+            long fullSize = dir.getFileSize();
+            int fullCount = fs.readDirectoryEntries(dir).size();
+
+            // Dos registros seguidos se suman al anterior: entra un nombre
+            // de 12 bytes (registro de 20) en el mismo bloque
+            fs.removeEntry(dir, name(100));
+            fs.removeEntry(dir, name(101));
+            fs.addEntry(dir, new DirectoryEntry(5000, FSConstants.TYPE_FILE, "nombre_largo"));
+            long reusedSize = dir.getFileSize();
+            int reusedInode = fs.lookupInodeNumber(dir, "nombre_largo");
+
+            // Quedan 4 bytes sueltos en dos lugares: la entrada siguiente ya
+            // no entra y el directorio pasa a usar el índice
+            fs.addEntry(dir, new DirectoryEntry(1100, FSConstants.TYPE_FILE, name(100)));
+            long grownSize = dir.getFileSize();
+            List<DirectoryEntry> entries = fs.readDirectoryEntries(dir);
+            boolean allFound = true;
+            for (int i = 0; i < fit; i++) {
+                int expected = i == 101 ? -1 : 1000 + i;
+                if (fs.lookupInodeNumber(dir, name(i)) != expected) {
+                    allFound = false;
+                }
+            }
+
+            fs.unmount();
+
+            System.setOut(out);
+            compare("entradas de 4 bytes en un bloque", 339, fit);
+            compare("bloque lleno: tamaño del directorio", (long) blockSize, fullSize);
+            compare("bloque lleno: entradas leídas", fit + 2, fullCount);
+            compare("espacio de dos entradas borradas reusado", (long) blockSize, reusedSize);
+            compare("inode de la entrada larga", 5000, reusedInode);
+            compare("directorio crece al no haber lugar", true, grownSize > blockSize);
+            compare("entradas después de crecer", fit + 2, entries.size());
+            compare("todas las entradas se encuentran", true, allFound);
+        } finally {
+            System.setOut(out);
+            image.delete();
+        }
+    }
+
+    private static String name(int i) {
+        return String.format("e%03d", i);
+    }
+
     /* ---------------- UTILIDADES DE DEPURACIÓN ---------------- */
     private static void compare(String field, Object expected, Object actual) {
         System.out.println("\n--- " + field + " ---");
@@ -0,0 +1,159 @@
+package tests;
+
+import filesystem.DirectoryEntry;
+import filesystem.FSConstants;
+import filesystem.FileSystem;
+import filesystem.Inode;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Prueba el índice hash de directorios: un directorio que crece pasa de lista
+ * lineal a índice, sus hojas se dividen, la raíz llena pasa su tabla a un nodo
+ * y el nodo lleno se divide en dos. En cada etapa todas las entradas se tienen
+ * que seguir encontrando.
+ *
+ * @author dylan y Gadyr
+ */
+public class DirectoryIndexTest {
+
+    // Posiciones en el bloque raíz: después de "." y ".." (12 bytes cada uno)
+    // va la tabla con magic, niveles y cantidad de pares
+    private static final int ROOT_TABLE = 24;
+    private static final int LIMIT = 20000;
+
+    public static void main(String[] args) throws IOException {
+        System.out.println("=== Prueba del índice de directorios ===");
+
+        File image = File.createTempFile("dirindex-test", ".fs");
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            // Bloques de 2 KB y nombres largos, para llegar a dividir un nodo
+            // con pocos miles de entradas
+            FileSystem fs = new FileSystem(image.getPath());
+            fs.format(32, 2, FSConstants.ALLOC_INDEXED, "test");
+            int blockSize = fs.getSuperblock().getBlockSize();
+
+            int dirNumber = fs.allocateInode();
+            Inode dir = new Inode(dirNumber, FSConstants.TYPE_DIRECTORY, FSConstants.DEFAULT_DIR_PERMS,
+                    FSConstants.ROOT_UID, FSConstants.ROOT_GID);
+            dir.setLinkCount(2);
+            dir.setFileSize(blockSize);
+            dir.setDirectBlock(0, fs.allocateDataBlock());
+            fs.writeInode(dir);
+            fs.writeDirectoryEntries(dir, List.of(
+                    new DirectoryEntry(dirNumber, FSConstants.TYPE_DIRECTORY, "."),
+                    new DirectoryEntry(FSConstants.ROOT_INODE, FSConstants.TYPE_DIRECTORY, "..")));
+
+            // 1. Mientras entra en un bloque sigue siendo lineal
+            int count = 0;
+            while (dir.getFileSize() == blockSize) {
+                add(fs, dir, count++);
+            }
+            int linearCount = count - 1;
+            ByteBuffer root = ByteBuffer.wrap(fs.readFileBlock(dir, 0));
+            boolean converted = root.getInt(ROOT_TABLE) == FSConstants.DIR_INDEX_MAGIC;
+            int levelsAfterConvert = root.getInt(ROOT_TABLE + 4);
+            boolean foundAfterConvert = allFound(fs, dir, count);
+
+            // 2. Las hojas llenas se dividen: la raíz gana pares
+            while (count < LIMIT && getPairs(fs, dir) < 3) {
+                add(fs, dir, count++);
+            }
+            int pairsAfterLeafSplit = getPairs(fs, dir);
+            boolean foundAfterLeafSplit = allFound(fs, dir, count);
+
+            // 3. Con la raíz llena, su tabla pasa a un nodo (un nivel más)
+            while (count < LIMIT && getLevels(fs, dir) == 0) {
+                add(fs, dir, count++);
+            }
+            int levels = getLevels(fs, dir);
+            int pairsAfterNode = getPairs(fs, dir);
+            boolean foundAfterNode = allFound(fs, dir, count);
+
+            // 4. Con el nodo lleno, se divide y la raíz apunta a los dos
+            while (count < LIMIT && getPairs(fs, dir) < 2) {
+                add(fs, dir, count++);
+            }
+            int pairsAfterNodeSplit = getPairs(fs, dir);
+            boolean foundAfterNodeSplit = allFound(fs, dir, count);
+            int listed = fs.readDirectoryEntries(dir).size();
+
+            // 5. Quitar la mitad y buscar de nuevo
+            for (int i = 0; i < count; i += 2) {
+                fs.removeEntry(dir, name(i));
+            }
+            boolean removedOk = true;
+            for (int i = 0; i < count; i++) {
+                int expected = i % 2 == 0 ? -1 : 10000 + i;
+                if (fs.lookupInodeNumber(dir, name(i)) != expected) {
+                    removedOk = false;
+                }
+            }
+
+            fs.unmount();
+
+            System.setOut(out);
+            System.out.println("\nEntradas agregadas: " + count + " (" + linearCount + " en la lista lineal)");
+            compare("convertido a índice al llenar el bloque", true, converted);
+            compare("niveles al convertir", 0, levelsAfterConvert);
+            compare("entradas encontradas al convertir", true, foundAfterConvert);
+            compare("pares en la raíz tras dividir hojas", 3, pairsAfterLeafSplit);
+            compare("entradas encontradas tras dividir hojas", true, foundAfterLeafSplit);
+            compare("niveles con la raíz llena", 1, levels);
+            compare("pares en la raíz al pasar a un nodo", 1, pairsAfterNode);
+            compare("entradas encontradas con un nodo", true, foundAfterNode);
+            compare("pares en la raíz tras dividir el nodo", 2, pairsAfterNodeSplit);
+            compare("entradas encontradas tras dividir el nodo", true, foundAfterNodeSplit);
+            compare("entradas listadas", count + 2, listed);
+            compare("búsquedas después de quitar la mitad", true, removedOk);
+        } finally {
+            System.setOut(out);
+            image.delete();
+        }
+
+        System.out.println("\n=== Fin de pruebas ===");
+    }
+
+    private static void add(FileSystem fs, Inode dir, int i) throws IOException {
+        fs.addEntry(dir, new DirectoryEntry(10000 + i, FSConstants.TYPE_FILE, name(i)));
+    }
+
+    private static String name(int i) {
+        return String.format("archivo-con-un-nombre-bastante-largo-%05d", i);
+    }
+
+    private static boolean allFound(FileSystem fs, Inode dir, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            if (fs.lookupInodeNumber(dir, name(i)) != 10000 + i) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int getLevels(FileSystem fs, Inode dir) throws IOException {
+        return ByteBuffer.wrap(fs.readFileBlock(dir, 0)).getInt(ROOT_TABLE + 4);
+    }
+
+    private static int getPairs(FileSystem fs, Inode dir) throws IOException {
+        return ByteBuffer.wrap(fs.readFileBlock(dir, 0)).getInt(ROOT_TABLE + 8);
+    }
+
+    private static void compare(String field, Object expected, Object actual) {
+        System.out.println("\n" + field);
+        System.out.println(" esperado : " + expected);
+        System.out.println(" obtenido : " + actual);
+        if ((expected == null && actual == null)
+                || (expected != null && expected.equals(actual))) {
+            System.out.println(" RESULTADO: OK");
+        } else {
+            System.out.println(" RESULTADO: ERROR");
+        }
+    }
+}
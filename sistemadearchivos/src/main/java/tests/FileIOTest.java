@@ -0,0 +1,204 @@
+package tests;
+
+import filesystem.FSConstants;
+import filesystem.FileSystem;
+import filesystem.Inode;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Prueba la escritura y lectura de archivos con las tres estrategias:
+ * sobrescritura en el lugar, agregados que cruzan bloques (también después de
+ * los 12 directos y de la indirección simple), huecos, truncado y un disco
+ * lleno. Después de cada paso el contenido se compara byte a byte con
+ * readFile(), con lecturas posicionales y con openInputStream().
+ *
+ * @author dylan y Gadyr
+ */
+public class FileIOTest {
+
+    private static final int BLOCK_SIZE = 2048;
+    // 12 directos + 512 punteros de la indirección simple con bloques de 2 KB
+    private static final int SINGLE_INDIRECT_END = (FSConstants.DIRECT_POINTERS + BLOCK_SIZE / 4) * BLOCK_SIZE;
+
+    public static void main(String[] args) throws IOException {
+        System.out.println("=== Prueba de escritura y lectura de archivos ===");
+
+        test(FSConstants.ALLOC_CONTIGUOUS, "contigua");
+        test(FSConstants.ALLOC_LINKED, "enlazada");
+        test(FSConstants.ALLOC_INDEXED, "indexada");
+
+        System.out.println("\n=== Fin de pruebas ===");
+    }
+
+    private static void test(int strategy, String name) throws IOException {
+        System.out.println("\n--- Asignación " + name + " ---");
+
+        File image = File.createTempFile("fileio-test", ".fs");
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            FileSystem fs = new FileSystem(image.getPath());
+            fs.format(16, BLOCK_SIZE / 1024, strategy, "test");
+            Random random = new Random(strategy);
+
+            Inode file = new Inode(fs.allocateInode(), FSConstants.TYPE_FILE, FSConstants.DEFAULT_FILE_PERMS,
+                    FSConstants.ROOT_UID, FSConstants.ROOT_GID);
+            file.setLinkCount(1);
+            byte[] expected = randomBytes(random, 5000);
+            fs.writeFile(file, expected);
+            int freeSmall = fs.getSuperblock().getFreeBlocks();
+            boolean written = matches(fs, file, expected, random);
+
+            // Sobrescritura en el lugar: mismos bloques, contenido nuevo
+            List<Integer> blocksBefore = fs.getAllocatedBlocks(file);
+            byte[] patch = randomBytes(random, 3000);
+            fs.write(file, 1500, ByteBuffer.wrap(patch));
+            System.arraycopy(patch, 0, expected, 1500, patch.length);
+            boolean sameBlocks = blocksBefore.equals(fs.getAllocatedBlocks(file));
+            boolean overwritten = matches(fs, file, expected, random);
+
+            // Agregado que cruza el final del bloque 4
+            expected = append(fs, file, expected, randomBytes(random, 300));
+            boolean crossed = matches(fs, file, expected, random);
+
+            // Agregado que pasa los 12 bloques directos
+            expected = append(fs, file, expected, randomBytes(random, 20 * BLOCK_SIZE + 17 - expected.length));
+            boolean pastDirect = matches(fs, file, expected, random);
+
+            // Agregado que pasa la indirección simple
+            expected = append(fs, file, expected,
+                    randomBytes(random, SINGLE_INDIRECT_END + 40 * BLOCK_SIZE + 5 - expected.length));
+            boolean pastSingle = matches(fs, file, expected, random);
+
+            // Escritura después del final: el hueco se lee como ceros
+            byte[] tail = randomBytes(random, 100);
+            int holeEnd = expected.length + 3000;
+            fs.write(file, holeEnd, ByteBuffer.wrap(tail));
+            expected = Arrays.copyOf(expected, holeEnd + tail.length);
+            System.arraycopy(tail, 0, expected, holeEnd, tail.length);
+            boolean hole = matches(fs, file, expected, random);
+
+            // Truncar al tamaño del principio devuelve todos los bloques
+            fs.truncate(file, 5000);
+            expected = Arrays.copyOf(expected, 5000);
+            int freeTruncated = fs.getSuperblock().getFreeBlocks();
+            boolean truncated = matches(fs, file, expected, random);
+
+            // Al volver a crecer, lo que había después del corte no reaparece
+            fs.truncate(file, 8000);
+            expected = Arrays.copyOf(expected, 8000);
+            boolean regrown = matches(fs, file, expected, random);
+
+            // Disco lleno: el agregado falla sin perder bloques ni contenido
+            int freeFull = fs.getSuperblock().getFreeBlocks();
+            String error = null;
+            try {
+                fs.append(file, ByteBuffer.wrap(new byte[(freeFull + 10) * BLOCK_SIZE]));
+            } catch (IOException e) {
+                error = e.getMessage();
+            }
+            int freeAfterError = fs.getSuperblock().getFreeBlocks();
+            boolean intactAfterError = matches(fs, file, expected, random);
+            int bitmapFree = fs.getDataBlockBitmap().countFree();
+
+            fs.unmount();
+
+            // Y todo sigue igual al volver a montar
+            fs = new FileSystem(image.getPath());
+            fs.mount();
+            boolean remounted = matches(fs, fs.readInode(file.getInodeNumber()), expected, random);
+            fs.unmount();
+
+            System.setOut(out);
+            compare("escritura inicial", true, written);
+            compare("sobrescritura usa los mismos bloques", true, sameBlocks);
+            compare("sobrescritura en el lugar", true, overwritten);
+            compare("agregado que cruza un bloque", true, crossed);
+            compare("agregado después de los bloques directos", true, pastDirect);
+            compare("agregado después de la indirección simple", true, pastSingle);
+            compare("hueco leído como ceros", true, hole);
+            compare("bloques libres después de truncar", freeSmall, freeTruncated);
+            compare("contenido después de truncar", true, truncated);
+            compare("cola en ceros al volver a crecer", true, regrown);
+            compare("IOException con el disco lleno", true, error != null);
+            compare("bloques libres después del error", freeFull, freeAfterError);
+            compare("bitmap y superblock coinciden", freeAfterError, bitmapFree);
+            compare("contenido después del error", true, intactAfterError);
+            compare("contenido después de montar", true, remounted);
+        } finally {
+            System.setOut(out);
+            image.delete();
+        }
+    }
+
+    private static byte[] append(FileSystem fs, Inode file, byte[] expected, byte[] data) throws IOException {
+        fs.append(file, ByteBuffer.wrap(data));
+        byte[] result = Arrays.copyOf(expected, expected.length + data.length);
+        System.arraycopy(data, 0, result, expected.length, data.length);
+        return result;
+    }
+
+    /**
+     * Compara el archivo con expected leyéndolo entero, con lecturas
+     * posicionales de largos y posiciones al azar, y con un InputStream en
+     * pedazos que no coinciden con los bloques
+     */
+    private static boolean matches(FileSystem fs, Inode file, byte[] expected, Random random) throws IOException {
+        if (file.getFileSize() != expected.length || !Arrays.equals(fs.readFile(file), expected)) {
+            return false;
+        }
+
+        for (int i = 0; i < 50; i++) {
+            int position = random.nextInt(expected.length);
+            int length = 1 + random.nextInt(Math.min(expected.length, 40 * BLOCK_SIZE));
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            int read = fs.read(file, position, buffer);
+            int available = Math.min(length, expected.length - position);
+            if (read != available
+                    || !Arrays.equals(buffer.array(), 0, read, expected, position, position + read)) {
+                return false;
+            }
+        }
+
+        byte[] streamed = new byte[expected.length];
+        int total = 0;
+        try (InputStream in = fs.openInputStream(file)) {
+            byte[] chunk = new byte[777];
+            int n;
+            while ((n = in.read(chunk)) != -1) {
+                if (total + n > streamed.length) {
+                    return false;
+                }
+                System.arraycopy(chunk, 0, streamed, total, n);
+                total += n;
+            }
+        }
+        return total == expected.length && Arrays.equals(streamed, expected);
+    }
+
+    private static byte[] randomBytes(Random random, int length) {
+        byte[] data = new byte[length];
+        random.nextBytes(data);
+        return data;
+    }
+
+    private static void compare(String field, Object expected, Object actual) {
+        System.out.println("\n" + field);
+        System.out.println(" esperado : " + expected);
+        System.out.println(" obtenido : " + actual);
+        if ((expected == null && actual == null)
+                || (expected != null && expected.equals(actual))) {
+            System.out.println(" RESULTADO: OK");
+        } else {
+            System.out.println(" RESULTADO: ERROR");
+        }
+    }
+}
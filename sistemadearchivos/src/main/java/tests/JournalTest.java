@@ -0,0 +1,123 @@
+package tests;
+
+import filesystem.DirectoryEntry;
+import filesystem.FSConstants;
+import filesystem.FileSystem;
+import filesystem.Inode;
+import filesystem.InodeLocks;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Prueba la recuperación del journal: una transacción confirmada que no llegó
+ * a su lugar (sin checkpoint) se reaplica al montar una copia de la imagen
+ * tomada en ese momento, como después de un corte; si uno de sus bloques quedó
+ * a medio escribir, el checksum del commit no coincide y se descarta entera.
+ *
+ * @author dylan y Gadyr
+ */
+public class JournalTest {
+
+    private static final String NAME = "recuperado";
+
+    public static void main(String[] args) throws IOException {
+        System.out.println("=== Prueba de recuperación del journal ===");
+
+        File image = File.createTempFile("journal-test", ".fs");
+        File crashed = File.createTempFile("journal-test-corte", ".fs");
+        File torn = File.createTempFile("journal-test-roto", ".fs");
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            FileSystem fs = new FileSystem(image.getPath());
+            fs.format(16, 4, FSConstants.ALLOC_INDEXED, "test");
+            fs.unmount();
+            fs = new FileSystem(image.getPath());
+            fs.mount();
+
+            // Una entrada nueva en la raíz, confirmada en el journal
+            Inode root = fs.readInode(FSConstants.ROOT_INODE);
+            int inodeNumber;
+            fs.beginOperation();
+            List<Lock> locked = fs.getInodeLocks().lockAll(root.getInodeNumber());
+            try {
+                inodeNumber = fs.allocateInode();
+                Inode file = new Inode(inodeNumber, FSConstants.TYPE_FILE, FSConstants.DEFAULT_FILE_PERMS,
+                        FSConstants.ROOT_UID, FSConstants.ROOT_GID);
+                file.setLinkCount(1);
+                fs.writeInode(file);
+                fs.addEntry(root, new DirectoryEntry(inodeNumber, FSConstants.TYPE_FILE, NAME));
+            } finally {
+                InodeLocks.unlockAll(locked);
+                fs.endOperation();
+            }
+            fs.commit();
+            int checkpoints = (int) fs.getJournal().getCheckpoints();
+            int journalStart = fs.getSuperblock().getJournalStart();
+            int usedBlocks = fs.getJournal().getUsedBlocks();
+            int blockSize = fs.getSuperblock().getBlockSize();
+
+            // Copias de la imagen con la transacción solo en el journal
+            Files.copy(image.toPath(), crashed.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Files.copy(image.toPath(), torn.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            fs.unmount();
+
+            // En la segunda, el último bloque de datos de la transacción
+            // (el anterior a su commit) queda a medio escribir
+            try (RandomAccessFile raf = new RandomAccessFile(torn, "rw")) {
+                long offset = (long) (journalStart + usedBlocks - 1) * blockSize + blockSize / 2;
+                raf.seek(offset);
+                int value = raf.read();
+                raf.seek(offset);
+                raf.write(value ^ 0xFF);
+            }
+
+            boolean recovered = hasEntry(crashed);
+            boolean tornRecovered = hasEntry(torn);
+
+            System.setOut(out);
+            compare("sin checkpoint antes del corte", 0, checkpoints);
+            compare("entrada reaplicada al montar", true, recovered);
+            compare("transacción con checksum inválido descartada", false, tornRecovered);
+        } finally {
+            System.setOut(out);
+            image.delete();
+            crashed.delete();
+            torn.delete();
+        }
+
+        System.out.println("\n=== Fin de pruebas ===");
+    }
+
+    /**
+     * Monta la imagen (recuperando el journal) y busca la entrada en la raíz
+     */
+    private static boolean hasEntry(File image) throws IOException {
+        FileSystem fs = new FileSystem(image.getPath());
+        fs.mount();
+        try {
+            return fs.lookupInodeNumber(fs.readInode(FSConstants.ROOT_INODE), NAME) != -1;
+        } finally {
+            fs.unmount();
+        }
+    }
+
+    private static void compare(String field, Object expected, Object actual) {
+        System.out.println("\n" + field);
+        System.out.println(" esperado : " + expected);
+        System.out.println(" obtenido : " + actual);
+        if ((expected == null && actual == null)
+                || (expected != null && expected.equals(actual))) {
+            System.out.println(" RESULTADO: OK");
+        } else {
+            System.out.println(" RESULTADO: ERROR");
+        }
+    }
+}
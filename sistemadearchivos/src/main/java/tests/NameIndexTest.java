@@ -0,0 +1,165 @@
+package tests;
+
+import filesystem.DirectoryEntry;
+import filesystem.FSConstants;
+import filesystem.FileSystem;
+import filesystem.Inode;
+import filesystem.TreeEntry;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+/**
+ * Prueba el índice persistente de nombres: con los baldes casi llenos los
+ * registros desbordan al balde siguiente y las búsquedas tienen que seguir la
+ * cadena, también después de quitar entradas; y un índice borrado se vuelve a
+ * armar con reindex recorriendo el árbol.
+ *
+ * @author dylan y Gadyr
+ */
+public class NameIndexTest {
+
+    private static final int NAME_LENGTH = 200;
+
+    public static void main(String[] args) throws IOException {
+        System.out.println("=== Prueba del índice de nombres ===");
+
+        File image = File.createTempFile("nameindex-test", ".fs");
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            FileSystem fs = new FileSystem(image.getPath());
+            fs.format(16, 4, FSConstants.ALLOC_INDEXED, "test");
+            int blockSize = fs.getSuperblock().getBlockSize();
+            int indexStart = fs.getSuperblock().getNameIndexStart();
+            int indexBlocks = fs.getSuperblock().getNameIndexBlocks();
+
+            // Nombres largos para llenar los baldes con pocas entradas: el 90%
+            // de lo que entra en toda la zona
+            int perBucket = (blockSize - 8) / (9 + NAME_LENGTH);
+            int count = indexBlocks * perBucket * 9 / 10;
+
+            Inode root = fs.readInode(FSConstants.ROOT_INODE);
+            Inode dir = mkdir(fs, root, "d");
+            for (int i = 0; i < count; i++) {
+                fs.addEntry(dir, new DirectoryEntry(dir.getInodeNumber(), FSConstants.TYPE_FILE, name(i)));
+            }
+            boolean validAfterFill = fs.getSuperblock().isNameIndexValid();
+            boolean foundAfterFill = allFound(fs, count, -1);
+
+            // Quitar entradas no corta las cadenas de las que quedan
+            for (int i = 0; i < count; i += 3) {
+                fs.removeEntry(dir, name(i));
+            }
+            boolean foundAfterRemove = allFound(fs, count, 3);
+            fs.unmount();
+
+            int overflowed = countOverflowed(image, blockSize, indexStart, indexBlocks);
+
+            // Borrar la zona del índice y reconstruirlo
+            try (RandomAccessFile raf = new RandomAccessFile(image, "rw")) {
+                raf.seek((long) indexStart * blockSize);
+                raf.write(new byte[indexBlocks * blockSize]);
+                // Baldes vacíos: 8 bytes usados por la cabecera
+                for (int b = 0; b < indexBlocks; b++) {
+                    raf.seek((long) (indexStart + b) * blockSize + 4);
+                    raf.writeInt(8);
+                }
+            }
+            fs = new FileSystem(image.getPath());
+            fs.mount();
+            List<TreeEntry> lostBeforeRebuild = fs.findByName(name(1));
+            int rebuilt = fs.rebuildNameIndex();
+            long inTree = fs.walk(fs.readInode(FSConstants.ROOT_INODE), "/").count() - 1;
+            boolean foundAfterRebuild = allFound(fs, count, 3);
+            boolean validAfterRebuild = fs.getSuperblock().isNameIndexValid();
+            fs.unmount();
+
+            System.setOut(out);
+            System.out.println("\nBaldes: " + indexBlocks + ", entradas: " + count);
+            compare("índice válido con los baldes al 90%", true, validAfterFill);
+            compare("baldes con desborde", true, overflowed > 0);
+            compare("búsquedas siguiendo las cadenas", true, foundAfterFill);
+            compare("búsquedas después de quitar entradas", true, foundAfterRemove);
+            compare("índice borrado no encuentra nada", 0, lostBeforeRebuild.size());
+            compare("nombres registrados al reconstruir", inTree, (long) rebuilt);
+            compare("búsquedas después de reconstruir", true, foundAfterRebuild);
+            compare("índice válido después de reconstruir", true, validAfterRebuild);
+        } finally {
+            System.setOut(out);
+            image.delete();
+        }
+
+        System.out.println("\n=== Fin de pruebas ===");
+    }
+
+    private static Inode mkdir(FileSystem fs, Inode parent, String name) throws IOException {
+        int blockSize = fs.getSuperblock().getBlockSize();
+        int number = fs.allocateInode();
+        Inode dir = new Inode(number, FSConstants.TYPE_DIRECTORY, FSConstants.DEFAULT_DIR_PERMS,
+                FSConstants.ROOT_UID, FSConstants.ROOT_GID);
+        dir.setLinkCount(2);
+        dir.setFileSize(blockSize);
+        dir.setDirectBlock(0, fs.allocateDataBlock());
+        fs.writeInode(dir);
+        fs.writeDirectoryEntries(dir, List.of(
+                new DirectoryEntry(number, FSConstants.TYPE_DIRECTORY, "."),
+                new DirectoryEntry(parent.getInodeNumber(), FSConstants.TYPE_DIRECTORY, "..")));
+        fs.addEntry(parent, new DirectoryEntry(number, FSConstants.TYPE_DIRECTORY, name));
+        return dir;
+    }
+
+    private static String name(int i) {
+        StringBuilder name = new StringBuilder("n" + i + "-");
+        while (name.length() < NAME_LENGTH) {
+            name.append('x');
+        }
+        return name.toString();
+    }
+
+    /**
+     * Verifica que cada nombre aparezca una vez en /d, salvo los múltiplos de
+     * removedEvery, que no deben aparecer
+     */
+    private static boolean allFound(FileSystem fs, int count, int removedEvery) throws IOException {
+        for (int i = 0; i < count; i++) {
+            List<TreeEntry> found = fs.findByName(name(i));
+            boolean removed = removedEvery > 0 && i % removedEvery == 0;
+            if (found == null || found.size() != (removed ? 0 : 1)) {
+                return false;
+            }
+            if (!removed && !found.get(0).getPath().equals("/d/" + name(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int countOverflowed(File image, int blockSize, int start, int blocks) throws IOException {
+        int overflowed = 0;
+        try (RandomAccessFile raf = new RandomAccessFile(image, "r")) {
+            for (int b = 0; b < blocks; b++) {
+                raf.seek((long) (start + b) * blockSize);
+                if ((raf.readInt() & 1) != 0) {
+                    overflowed++;
+                }
+            }
+        }
+        return overflowed;
+    }
+
+    private static void compare(String field, Object expected, Object actual) {
+        System.out.println("\n" + field);
+        System.out.println(" esperado : " + expected);
+        System.out.println(" obtenido : " + actual);
+        if ((expected == null && actual == null)
+                || (expected != null && expected.equals(actual))) {
+            System.out.println(" RESULTADO: OK");
+        } else {
+            System.out.println(" RESULTADO: ERROR");
+        }
+    }
+}
@@ -24,6 +24,11 @@ public class SuperblockTest {
         original.setDataBlocksStart(100);
         original.setCreationTime(1234567890L);
         original.setLastMountTime(9876543210L);
+        original.setFatStart(60);
+        original.setFatBlocks(40);
+        original.setJournalStart(70);
+        original.setJournalBlocks(30);
+        original.setCleanUnmount(true);
 
         System.out.println("=== Superblock: Serialización / Deserialización ===");
 
@@ -47,6 +52,11 @@ public class SuperblockTest {
         compare("dataBlocksStart", original.getDataBlocksStart(), deserialized.getDataBlocksStart());
         compare("creationTime", original.getCreationTime(), deserialized.getCreationTime());
         compare("lastMountTime", original.getLastMountTime(), deserialized.getLastMountTime());
+        compare("fatStart", original.getFatStart(), deserialized.getFatStart());
+        compare("fatBlocks", original.getFatBlocks(), deserialized.getFatBlocks());
+        compare("journalStart", original.getJournalStart(), deserialized.getJournalStart());
+        compare("journalBlocks", original.getJournalBlocks(), deserialized.getJournalBlocks());
+        compare("cleanUnmount", original.isCleanUnmount(), deserialized.isCleanUnmount());
 
         System.out.println("\nSuperblock válido: " + deserialized.isValid());
         System.out.println("=== Fin ===");